@@ -0,0 +1,327 @@
+package com.example.rag.cache;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.ai.document.Document;
+import org.springframework.ai.embedding.Embedding;
+import org.springframework.ai.embedding.EmbeddingModel;
+import org.springframework.ai.embedding.EmbeddingOptions;
+import org.springframework.ai.embedding.EmbeddingRequest;
+import org.springframework.ai.embedding.EmbeddingResponse;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.nio.file.attribute.FileTime;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.text.Normalizer;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HexFormat;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.regex.Pattern;
+import java.util.stream.Stream;
+
+/**
+ * 带缓存的 EmbeddingModel 装饰器
+ * 以 (模型名, 向量维度, 规范化文本) 的哈希为 key，模型名和维度优先取请求中的 EmbeddingOptions；
+ * 内存层按向量占用字节数做 LRU 淘汰，可选的磁盘层在重启后继续生效，超过上限时按最近访问时间淘汰最旧的文件
+ */
+@Slf4j
+public class CachingEmbeddingModel implements EmbeddingModel {
+
+    private static final Pattern WHITESPACE = Pattern.compile("\\s+");
+
+    private final EmbeddingModel delegate;
+    private final String modelName;
+    private final long maxWeightBytes;
+    private final Path diskDirectory;
+    private final long maxDiskBytes;
+
+    // 访问顺序的 LinkedHashMap 实现 LRU
+    private final LinkedHashMap<String, float[]> memoryCache = new LinkedHashMap<>(1024, 0.75f, true);
+    private long weightBytes;
+
+    // 磁盘层占用字节数，淘汰时按实际扫描结果校正
+    private final AtomicLong diskBytes = new AtomicLong();
+    private final AtomicBoolean evicting = new AtomicBoolean();
+
+    private final AtomicLong memoryHits = new AtomicLong();
+    private final AtomicLong diskHits = new AtomicLong();
+    private final AtomicLong misses = new AtomicLong();
+
+    /**
+     * @param delegate 实际的向量模型
+     * @param modelName 模型名，参与缓存 key 计算，换模型后缓存自动失效
+     * @param maxWeightBytes 内存层最大占用字节数
+     * @param diskDirectory 磁盘层目录，为 null 时不启用
+     * @param maxDiskBytes 磁盘层最大占用字节数，0 表示不限制
+     */
+    public CachingEmbeddingModel(EmbeddingModel delegate, String modelName, long maxWeightBytes,
+                                 Path diskDirectory, long maxDiskBytes) {
+        this.delegate = delegate;
+        this.modelName = modelName;
+        this.maxWeightBytes = maxWeightBytes;
+        this.diskDirectory = diskDirectory;
+        this.maxDiskBytes = maxDiskBytes;
+        if (diskDirectory != null) {
+            try {
+                Files.createDirectories(diskDirectory);
+                diskBytes.set(listDiskEntries().stream().mapToLong(DiskEntry::size).sum());
+            } catch (IOException e) {
+                throw new IllegalStateException("Cannot create embedding cache directory: " + diskDirectory, e);
+            }
+            evictDiskIfNeeded();
+        }
+    }
+
+    @Override
+    public EmbeddingResponse call(EmbeddingRequest request) {
+        List<String> texts = request.getInstructions();
+        float[][] vectors = new float[texts.size()][];
+        String[] keys = new String[texts.size()];
+        String keyPrefix = keyPrefix(request.getOptions());
+
+        List<Integer> missIndexes = new ArrayList<>();
+        List<String> missTexts = new ArrayList<>();
+        for (int i = 0; i < texts.size(); i++) {
+            keys[i] = cacheKey(keyPrefix, texts.get(i));
+            vectors[i] = lookup(keys[i]);
+            if (vectors[i] == null) {
+                missIndexes.add(i);
+                missTexts.add(texts.get(i));
+            }
+        }
+
+        // 只把未命中的文本合并成一次远程调用
+        EmbeddingResponse response = null;
+        if (!missTexts.isEmpty()) {
+            misses.addAndGet(missTexts.size());
+            response = delegate.call(new EmbeddingRequest(missTexts, request.getOptions()));
+            List<Embedding> results = response.getResults();
+            for (int j = 0; j < results.size(); j++) {
+                Embedding embedding = results.get(j);
+                int position = embedding.getIndex() != null ? embedding.getIndex() : j;
+                int original = missIndexes.get(position);
+                vectors[original] = embedding.getOutput();
+                store(keys[original], embedding.getOutput());
+            }
+        }
+
+        List<Embedding> embeddings = new ArrayList<>(vectors.length);
+        for (int i = 0; i < vectors.length; i++) {
+            embeddings.add(new Embedding(vectors[i], i));
+        }
+        // 透传远程调用的元数据（模型、usage）；全部命中缓存时没有远程调用，元数据为空
+        return response != null
+                ? new EmbeddingResponse(embeddings, response.getMetadata())
+                : new EmbeddingResponse(embeddings);
+    }
+
+    @Override
+    public float[] embed(Document document) {
+        return embed(document.getContent());
+    }
+
+    @Override
+    public int dimensions() {
+        return delegate.dimensions();
+    }
+
+    /**
+     * 获取缓存统计
+     */
+    public CacheStats getStats() {
+        long entries;
+        long weight;
+        synchronized (memoryCache) {
+            entries = memoryCache.size();
+            weight = weightBytes;
+        }
+        long memory = memoryHits.get();
+        long disk = diskHits.get();
+        long miss = misses.get();
+        long total = memory + disk + miss;
+        return new CacheStats(memory, disk, miss, total == 0 ? 0.0 : (double) (memory + disk) / total, entries, weight,
+                diskBytes.get());
+    }
+
+    /**
+     * 清空内存层（磁盘层保留）
+     */
+    public void clearMemory() {
+        synchronized (memoryCache) {
+            memoryCache.clear();
+            weightBytes = 0;
+        }
+    }
+
+    private float[] lookup(String key) {
+        synchronized (memoryCache) {
+            float[] vector = memoryCache.get(key);
+            if (vector != null) {
+                memoryHits.incrementAndGet();
+                return vector;
+            }
+        }
+
+        float[] vector = readFromDisk(key);
+        if (vector != null) {
+            diskHits.incrementAndGet();
+            putInMemory(key, vector);
+        }
+        return vector;
+    }
+
+    private void store(String key, float[] vector) {
+        putInMemory(key, vector);
+        writeToDisk(key, vector);
+    }
+
+    private void putInMemory(String key, float[] vector) {
+        synchronized (memoryCache) {
+            float[] previous = memoryCache.put(key, vector);
+            if (previous != null) {
+                weightBytes -= weightOf(previous);
+            }
+            weightBytes += weightOf(vector);
+
+            var iterator = memoryCache.entrySet().iterator();
+            while (weightBytes > maxWeightBytes && iterator.hasNext()) {
+                Map.Entry<String, float[]> eldest = iterator.next();
+                weightBytes -= weightOf(eldest.getValue());
+                iterator.remove();
+            }
+        }
+    }
+
+    private float[] readFromDisk(String key) {
+        if (diskDirectory == null) {
+            return null;
+        }
+        Path file = diskPath(key);
+        if (!Files.exists(file)) {
+            return null;
+        }
+        try {
+            ByteBuffer buffer = ByteBuffer.wrap(Files.readAllBytes(file));
+            float[] vector = new float[buffer.remaining() / Float.BYTES];
+            buffer.asFloatBuffer().get(vector);
+            // 修改时间作为最近访问时间，磁盘淘汰时保留常用的条目
+            Files.setLastModifiedTime(file, FileTime.fromMillis(System.currentTimeMillis()));
+            return vector;
+        } catch (IOException e) {
+            log.warn("Failed to read embedding cache entry {}: {}", file, e.getMessage());
+            return null;
+        }
+    }
+
+    private void writeToDisk(String key, float[] vector) {
+        if (diskDirectory == null) {
+            return;
+        }
+        Path file = diskPath(key);
+        try {
+            Files.createDirectories(file.getParent());
+            ByteBuffer buffer = ByteBuffer.allocate(vector.length * Float.BYTES);
+            buffer.asFloatBuffer().put(vector);
+            // 先写临时文件再原子替换，避免并发读到半个文件
+            Path temp = Files.createTempFile(file.getParent(), key, ".tmp");
+            Files.write(temp, buffer.array());
+            Files.move(temp, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+            diskBytes.addAndGet(buffer.capacity());
+        } catch (IOException e) {
+            log.warn("Failed to write embedding cache entry {}: {}", file, e.getMessage());
+        }
+        evictDiskIfNeeded();
+    }
+
+    /**
+     * 磁盘层超过上限时删除最久未访问的文件，降到上限的 90% 以下，避免每次写入都扫描目录
+     */
+    private void evictDiskIfNeeded() {
+        if (maxDiskBytes <= 0 || diskBytes.get() <= maxDiskBytes || !evicting.compareAndSet(false, true)) {
+            return;
+        }
+        try {
+            List<DiskEntry> entries = listDiskEntries();
+            long total = entries.stream().mapToLong(DiskEntry::size).sum();
+            long target = maxDiskBytes / 10 * 9;
+            entries.sort(Comparator.comparing(DiskEntry::lastAccess));
+            int removed = 0;
+            for (DiskEntry entry : entries) {
+                if (total <= target) {
+                    break;
+                }
+                if (Files.deleteIfExists(entry.path())) {
+                    total -= entry.size();
+                    removed++;
+                }
+            }
+            diskBytes.set(total);
+            log.info("Embedding disk cache evicted {} entries, {} bytes remaining", removed, total);
+        } catch (IOException | UncheckedIOException e) {
+            log.warn("Failed to evict embedding disk cache: {}", e.getMessage());
+        } finally {
+            evicting.set(false);
+        }
+    }
+
+    private List<DiskEntry> listDiskEntries() throws IOException {
+        List<DiskEntry> entries = new ArrayList<>();
+        try (Stream<Path> files = Files.walk(diskDirectory)) {
+            for (Path file : (Iterable<Path>) files.filter(path -> path.toString().endsWith(".bin"))::iterator) {
+                BasicFileAttributes attributes = Files.readAttributes(file, BasicFileAttributes.class);
+                entries.add(new DiskEntry(file, attributes.size(), attributes.lastModifiedTime()));
+            }
+        }
+        return entries;
+    }
+
+    private Path diskPath(String key) {
+        return diskDirectory.resolve(key.substring(0, 2)).resolve(key + ".bin");
+    }
+
+    /**
+     * 请求级别的模型和维度覆盖默认值，不同模型或维度的向量不会互相命中
+     */
+    private String keyPrefix(EmbeddingOptions options) {
+        String model = options != null && options.getModel() != null ? options.getModel() : modelName;
+        Integer dimensions = options != null ? options.getDimensions() : null;
+        return dimensions != null ? model + "\0" + dimensions : model;
+    }
+
+    private String cacheKey(String keyPrefix, String text) {
+        String normalized = WHITESPACE.matcher(Normalizer.normalize(text, Normalizer.Form.NFC)).replaceAll(" ").strip();
+        try {
+            MessageDigest digest = MessageDigest.getInstance("SHA-256");
+            digest.update(keyPrefix.getBytes(StandardCharsets.UTF_8));
+            digest.update((byte) 0);
+            digest.update(normalized.getBytes(StandardCharsets.UTF_8));
+            return HexFormat.of().formatHex(digest.digest());
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    private static long weightOf(float[] vector) {
+        return (long) vector.length * Float.BYTES;
+    }
+
+    private record DiskEntry(Path path, long size, FileTime lastAccess) {}
+
+    /**
+     * 缓存统计
+     */
+    public record CacheStats(long memoryHits, long diskHits, long misses, double hitRate,
+                             long entries, long weightBytes, long diskBytes) {}
+}
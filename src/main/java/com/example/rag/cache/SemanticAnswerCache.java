@@ -0,0 +1,192 @@
+package com.example.rag.cache;
+
+import com.example.rag.util.VectorMath;
+import lombok.Getter;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Optional;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * RAG 语义回答缓存
+ * 以问题向量为索引保存已回答的问题；新问题与缓存问题的余弦相似度超过阈值，
+ * 且本次检索到的文档集合与当时完全一致时，直接复用缓存的回答
+ * <p>
+ * 查找时暴力扫描全部条目，没有建向量索引：条目数受 max-entries 限制，
+ * 扫描开销远小于一次大模型调用。条目按访问顺序保存在加锁的 LinkedHashMap 中，
+ * 过期清理、容量检查和写入在同一把锁内完成，并发写入不会超过上限
+ */
+@Slf4j
+@Component
+public class SemanticAnswerCache {
+
+    @Value("${rag.answer-cache.enabled:true}")
+    private boolean enabled;
+
+    @Value("${rag.answer-cache.similarity-threshold:0.95}")
+    private double similarityThreshold;
+
+    @Value("${rag.answer-cache.ttl:10m}")
+    private Duration ttl;
+
+    @Value("${rag.answer-cache.max-entries:1000}")
+    private int maxEntries;
+
+    // 访问顺序的 LinkedHashMap 实现 LRU，所有访问都在 synchronized (entries) 内
+    private final LinkedHashMap<String, CachedAnswer> entries = new LinkedHashMap<>(256, 0.75f, true);
+
+    private final AtomicLong hits = new AtomicLong();
+    private final AtomicLong misses = new AtomicLong();
+
+    /**
+     * 查找可复用的回答
+     *
+     * @param questionVector 问题向量
+     * @param sourceIds 本次检索到的分块ID（按排序）
+     */
+    public Optional<String> lookup(float[] questionVector, List<String> sourceIds) {
+        if (!enabled) {
+            return Optional.empty();
+        }
+
+        float[] normalized = VectorMath.normalize(questionVector);
+        Instant now = Instant.now();
+        CachedAnswer best = null;
+        double bestScore = similarityThreshold;
+
+        synchronized (entries) {
+            Iterator<CachedAnswer> iterator = entries.values().iterator();
+            while (iterator.hasNext()) {
+                CachedAnswer entry = iterator.next();
+                if (entry.isExpired(now, ttl)) {
+                    iterator.remove();
+                    continue;
+                }
+                double score = VectorMath.dot(normalized, entry.getVector());
+                if (score >= bestScore && entry.getSourceIds().equals(sourceIds)) {
+                    best = entry;
+                    bestScore = score;
+                }
+            }
+            if (best != null) {
+                // get 把命中的条目移到访问顺序末尾
+                entries.get(best.getId());
+            }
+        }
+
+        if (best == null) {
+            misses.incrementAndGet();
+            return Optional.empty();
+        }
+
+        hits.incrementAndGet();
+        log.debug("Semantic answer cache hit (similarity {}): {}", bestScore, best.getQuestion());
+        return Optional.of(best.getAnswer());
+    }
+
+    /**
+     * 缓存回答
+     *
+     * @param sourceIds 检索到的分块ID（按排序）
+     * @param parentIds 分块所属的文档ID，用于文档删除时失效
+     */
+    public void put(String question, float[] questionVector, String answer, List<String> sourceIds,
+                    Set<String> parentIds) {
+        if (!enabled || answer == null || answer.isBlank()) {
+            return;
+        }
+
+        Instant now = Instant.now();
+        String id = UUID.randomUUID().toString();
+        CachedAnswer answerEntry = new CachedAnswer(id, question, VectorMath.normalize(questionVector), answer,
+                List.copyOf(sourceIds), Set.copyOf(parentIds), now);
+        synchronized (entries) {
+            entries.values().removeIf(entry -> entry.isExpired(now, ttl));
+            Iterator<CachedAnswer> eldest = entries.values().iterator();
+            while (entries.size() >= maxEntries && eldest.hasNext()) {
+                eldest.next();
+                eldest.remove();
+            }
+            entries.put(id, answerEntry);
+        }
+    }
+
+    /**
+     * 使引用了指定文档的缓存失效
+     */
+    public void invalidateSource(String documentId) {
+        int removed;
+        synchronized (entries) {
+            int before = entries.size();
+            entries.values().removeIf(entry -> entry.getParentIds().contains(documentId)
+                    || entry.getSourceIds().contains(documentId));
+            removed = before - entries.size();
+        }
+        if (removed > 0) {
+            log.info("Invalidated {} cached answers referencing document {}", removed, documentId);
+        }
+    }
+
+    /**
+     * 清空缓存
+     */
+    public void clear() {
+        synchronized (entries) {
+            entries.clear();
+        }
+    }
+
+    /**
+     * 获取缓存统计
+     */
+    public CacheStats getStats() {
+        long hit = hits.get();
+        long miss = misses.get();
+        long total = hit + miss;
+        int size;
+        synchronized (entries) {
+            size = entries.size();
+        }
+        return new CacheStats(hit, miss, total == 0 ? 0.0 : (double) hit / total, size);
+    }
+
+    @Getter
+    private static final class CachedAnswer {
+        private final String id;
+        private final String question;
+        private final float[] vector;
+        private final String answer;
+        private final List<String> sourceIds;
+        private final Set<String> parentIds;
+        private final Instant createdAt;
+
+        CachedAnswer(String id, String question, float[] vector, String answer, List<String> sourceIds,
+                     Set<String> parentIds, Instant createdAt) {
+            this.id = id;
+            this.question = question;
+            this.vector = vector;
+            this.answer = answer;
+            this.sourceIds = sourceIds;
+            this.parentIds = parentIds;
+            this.createdAt = createdAt;
+        }
+
+        boolean isExpired(Instant now, Duration ttl) {
+            return createdAt.plus(ttl).isBefore(now);
+        }
+    }
+
+    /**
+     * 缓存统计
+     */
+    public record CacheStats(long hits, long misses, double hitRate, int entries) {}
+}
@@ -0,0 +1,54 @@
+package com.example.rag.chunking;
+
+import jakarta.annotation.PostConstruct;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import java.util.Iterator;
+
+/**
+ * 文档分块服务
+ */
+@Slf4j
+@Service
+public class ChunkingService {
+
+    @Value("${rag.chunking.strategy:recursive}")
+    private String strategy;
+
+    @Value("${rag.chunking.chunk-tokens:512}")
+    private int chunkTokens;
+
+    @Value("${rag.chunking.overlap-tokens:64}")
+    private int overlapTokens;
+
+    private TextSplitter splitter;
+
+    @PostConstruct
+    void init() {
+        splitter = createSplitter(strategy, chunkTokens, overlapTokens);
+        log.info("Chunking strategy: {} (chunkTokens={}, overlapTokens={})", strategy, chunkTokens, overlapTokens);
+    }
+
+    /**
+     * 使用配置的策略惰性切分文本
+     */
+    public Iterator<TextChunk> split(CharSequence text) {
+        return splitter.split(text);
+    }
+
+    /**
+     * 创建分块器
+     *
+     * @param strategy fixed / sentence / recursive
+     */
+    public static TextSplitter createSplitter(String strategy, int chunkTokens, int overlapTokens) {
+        return switch (strategy.toLowerCase()) {
+            case "fixed" -> new FixedTokenSplitter(chunkTokens, overlapTokens);
+            case "sentence" -> new SentenceSplitter(chunkTokens, overlapTokens);
+            case "recursive" -> new RecursiveSplitter(chunkTokens, overlapTokens);
+            default -> throw new IllegalArgumentException("Unknown chunking strategy: " + strategy);
+        };
+    }
+}
@@ -0,0 +1,42 @@
+package com.example.rag.chunking;
+
+import java.util.Iterator;
+
+/**
+ * 固定 token 数分块器
+ * 不考虑语义边界，按 chunkTokens 切分，相邻分块重叠 overlapTokens 个 token
+ */
+public class FixedTokenSplitter implements TextSplitter {
+
+    private final int chunkTokens;
+    private final int overlapTokens;
+
+    public FixedTokenSplitter(int chunkTokens, int overlapTokens) {
+        if (chunkTokens <= 0 || overlapTokens < 0 || overlapTokens >= chunkTokens) {
+            throw new IllegalArgumentException("Invalid chunk settings: chunkTokens=" + chunkTokens
+                    + ", overlapTokens=" + overlapTokens);
+        }
+        this.chunkTokens = chunkTokens;
+        this.overlapTokens = overlapTokens;
+    }
+
+    @Override
+    public Iterator<TextChunk> split(CharSequence text) {
+        TokenWindowIterator windows = new TokenWindowIterator(text, 0, text.length(), chunkTokens, overlapTokens);
+        return new Iterator<>() {
+            private int index;
+
+            @Override
+            public boolean hasNext() {
+                return windows.hasNext();
+            }
+
+            @Override
+            public TextChunk next() {
+                int[] window = windows.next();
+                return new TextChunk(index++, window[0], window[1],
+                        text.subSequence(window[0], window[1]).toString());
+            }
+        };
+    }
+}
@@ -0,0 +1,107 @@
+package com.example.rag.chunking;
+
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+
+/**
+ * 合并型分块器基类
+ * 子类负责把原文切成不超过 chunkTokens 的片段（句子、段落等），
+ * 这里把相邻片段合并到 chunkTokens 以内，并在相邻分块之间保留不超过 overlapTokens 的片段作为重叠
+ */
+abstract class MergingTextSplitter implements TextSplitter {
+
+    protected final int chunkTokens;
+    protected final int overlapTokens;
+
+    protected MergingTextSplitter(int chunkTokens, int overlapTokens) {
+        if (chunkTokens <= 0 || overlapTokens < 0 || overlapTokens >= chunkTokens) {
+            throw new IllegalArgumentException("Invalid chunk settings: chunkTokens=" + chunkTokens
+                    + ", overlapTokens=" + overlapTokens);
+        }
+        this.chunkTokens = chunkTokens;
+        this.overlapTokens = overlapTokens;
+    }
+
+    /**
+     * 惰性产出片段偏移 {start, end}，每个片段不超过 chunkTokens
+     */
+    protected abstract Iterator<int[]> pieces(CharSequence text);
+
+    /**
+     * 把超长区间按固定窗口切开
+     */
+    protected Iterator<int[]> windows(CharSequence text, int start, int end) {
+        return new TokenWindowIterator(text, start, end, chunkTokens, 0);
+    }
+
+    @Override
+    public Iterator<TextChunk> split(CharSequence text) {
+        return new Iterator<>() {
+            private final Iterator<int[]> pieces = pieces(text);
+            // 当前分块内的片段 {start, end, tokens}
+            private final Deque<int[]> window = new ArrayDeque<>();
+            private int windowTokens;
+            private int index;
+            private TextChunk next;
+
+            @Override
+            public boolean hasNext() {
+                if (next == null) {
+                    next = advance();
+                }
+                return next != null;
+            }
+
+            @Override
+            public TextChunk next() {
+                if (!hasNext()) {
+                    throw new NoSuchElementException();
+                }
+                TextChunk chunk = next;
+                next = null;
+                return chunk;
+            }
+
+            private TextChunk advance() {
+                while (pieces.hasNext()) {
+                    int[] piece = pieces.next();
+                    int tokens = TokenEstimates.count(text, piece[0], piece[1]);
+                    if (tokens == 0) {
+                        continue;
+                    }
+
+                    if (!window.isEmpty() && windowTokens + tokens > chunkTokens) {
+                        TextChunk chunk = emit();
+                        // 保留尾部片段作为重叠，同时为新片段腾出空间
+                        while (!window.isEmpty()
+                                && (windowTokens > overlapTokens || windowTokens + tokens > chunkTokens)) {
+                            windowTokens -= window.removeFirst()[2];
+                        }
+                        window.addLast(new int[]{piece[0], piece[1], tokens});
+                        windowTokens += tokens;
+                        return chunk;
+                    }
+
+                    window.addLast(new int[]{piece[0], piece[1], tokens});
+                    windowTokens += tokens;
+                }
+
+                if (window.isEmpty()) {
+                    return null;
+                }
+                TextChunk chunk = emit();
+                window.clear();
+                windowTokens = 0;
+                return chunk;
+            }
+
+            private TextChunk emit() {
+                int start = window.getFirst()[0];
+                int end = window.getLast()[1];
+                return new TextChunk(index++, start, end, text.subSequence(start, end).toString());
+            }
+        };
+    }
+}
@@ -0,0 +1,116 @@
+package com.example.rag.chunking;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.Iterator;
+import java.util.List;
+import java.util.NoSuchElementException;
+
+/**
+ * 递归分块器
+ * 依次尝试段落、换行、句末标点、空格作为分隔符，只对超过 chunkTokens 的区间继续用更细的分隔符切分，
+ * 所有分隔符都无法切小时按固定窗口切开。切分过程只记录偏移，不复制原文
+ */
+public class RecursiveSplitter extends MergingTextSplitter {
+
+    private static final String[] SEPARATORS = {"\n\n", "\n", "。", "！", "？", ". ", "! ", "? ", "；", "; ", " "};
+
+    public RecursiveSplitter(int chunkTokens, int overlapTokens) {
+        super(chunkTokens, overlapTokens);
+    }
+
+    @Override
+    protected Iterator<int[]> pieces(CharSequence text) {
+        return new Iterator<>() {
+            // 待处理区间 {start, end, separatorLevel}，深度优先保证片段按原文顺序产出
+            private final Deque<int[]> pending = new ArrayDeque<>();
+            private int[] next;
+
+            {
+                pending.push(new int[]{0, text.length(), 0});
+            }
+
+            @Override
+            public boolean hasNext() {
+                if (next == null) {
+                    next = advance();
+                }
+                return next != null;
+            }
+
+            @Override
+            public int[] next() {
+                if (!hasNext()) {
+                    throw new NoSuchElementException();
+                }
+                int[] piece = next;
+                next = null;
+                return piece;
+            }
+
+            private int[] advance() {
+                while (!pending.isEmpty()) {
+                    int[] range = pending.pop();
+                    int start = range[0];
+                    int end = range[1];
+                    int level = range[2];
+
+                    if (level > SEPARATORS.length || TokenEstimates.count(text, start, end) <= chunkTokens) {
+                        return new int[]{start, end};
+                    }
+
+                    List<int[]> parts = level == SEPARATORS.length
+                            ? collect(windows(text, start, end))
+                            : splitBy(text, start, end, SEPARATORS[level]);
+
+                    // 逆序压栈，保证按原文顺序出栈
+                    for (int i = parts.size() - 1; i >= 0; i--) {
+                        int[] part = parts.get(i);
+                        pending.push(new int[]{part[0], part[1], level + 1});
+                    }
+                }
+                return null;
+            }
+        };
+    }
+
+    private static List<int[]> collect(Iterator<int[]> ranges) {
+        List<int[]> parts = new ArrayList<>();
+        ranges.forEachRemaining(parts::add);
+        return parts;
+    }
+
+    /**
+     * 按分隔符切分区间，分隔符保留在前一段末尾
+     */
+    private static List<int[]> splitBy(CharSequence text, int start, int end, String separator) {
+        List<int[]> parts = new ArrayList<>();
+        int partStart = start;
+        int i = indexOf(text, separator, start, end);
+        while (i >= 0) {
+            int partEnd = i + separator.length();
+            parts.add(new int[]{partStart, partEnd});
+            partStart = partEnd;
+            i = indexOf(text, separator, partStart, end);
+        }
+        if (partStart < end) {
+            parts.add(new int[]{partStart, end});
+        }
+        return parts;
+    }
+
+    private static int indexOf(CharSequence text, String separator, int from, int to) {
+        int last = to - separator.length();
+        outer:
+        for (int i = from; i <= last; i++) {
+            for (int j = 0; j < separator.length(); j++) {
+                if (text.charAt(i + j) != separator.charAt(j)) {
+                    continue outer;
+                }
+            }
+            return i;
+        }
+        return -1;
+    }
+}
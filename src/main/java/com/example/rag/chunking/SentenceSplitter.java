@@ -0,0 +1,85 @@
+package com.example.rag.chunking;
+
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+
+/**
+ * 句子/段落感知分块器
+ * 在句末标点和换行处断句，再把相邻句子合并成分块；超长句子按固定窗口切开
+ */
+public class SentenceSplitter extends MergingTextSplitter {
+
+    public SentenceSplitter(int chunkTokens, int overlapTokens) {
+        super(chunkTokens, overlapTokens);
+    }
+
+    @Override
+    protected Iterator<int[]> pieces(CharSequence text) {
+        return new Iterator<>() {
+            private int position;
+            private Iterator<int[]> oversized = Collections.emptyIterator();
+
+            @Override
+            public boolean hasNext() {
+                if (oversized.hasNext()) {
+                    return true;
+                }
+                while (position < text.length() && Character.isWhitespace(text.charAt(position))) {
+                    position++;
+                }
+                return position < text.length();
+            }
+
+            @Override
+            public int[] next() {
+                if (!hasNext()) {
+                    throw new NoSuchElementException();
+                }
+                if (oversized.hasNext()) {
+                    return oversized.next();
+                }
+
+                int start = position;
+                int end = sentenceEnd(text, start);
+                position = end;
+                if (TokenEstimates.count(text, start, end) > chunkTokens) {
+                    oversized = windows(text, start, end);
+                    return oversized.next();
+                }
+                return new int[]{start, end};
+            }
+        };
+    }
+
+    /**
+     * 查找从 start 开始的句子结束位置（不包含）
+     */
+    static int sentenceEnd(CharSequence text, int start) {
+        int length = text.length();
+        for (int i = start; i < length; i++) {
+            char c = text.charAt(i);
+            if (c == '\n') {
+                return i + 1;
+            }
+            if (c == '。' || c == '！' || c == '？' || c == '；' || c == '…') {
+                return closingEnd(text, i + 1);
+            }
+            if ((c == '.' || c == '!' || c == '?' || c == ';')
+                    && (i + 1 == length || Character.isWhitespace(text.charAt(i + 1)))) {
+                return closingEnd(text, i + 1);
+            }
+        }
+        return length;
+    }
+
+    /**
+     * 把紧跟句末标点的引号、括号并入当前句子
+     */
+    private static int closingEnd(CharSequence text, int i) {
+        while (i < text.length() && "\"'”’）)】」』".indexOf(text.charAt(i)) >= 0) {
+            i++;
+        }
+        return i;
+    }
+}
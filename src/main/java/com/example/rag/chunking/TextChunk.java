@@ -0,0 +1,11 @@
+package com.example.rag.chunking;
+
+/**
+ * 文本分块
+ *
+ * @param index 分块序号（从0开始）
+ * @param startOffset 在原文中的起始偏移（包含）
+ * @param endOffset 在原文中的结束偏移（不包含）
+ * @param text 分块文本
+ */
+public record TextChunk(int index, int startOffset, int endOffset, String text) {}
@@ -0,0 +1,28 @@
+package com.example.rag.chunking;
+
+import java.util.Iterator;
+import java.util.Spliterator;
+import java.util.Spliterators;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
+
+/**
+ * 文本分块器
+ * 实现按偏移量增量扫描原文，只在产出分块时复制该分块的文本
+ */
+public interface TextSplitter {
+
+    /**
+     * 惰性切分文本
+     */
+    Iterator<TextChunk> split(CharSequence text);
+
+    /**
+     * 以流的形式惰性切分文本
+     */
+    default Stream<TextChunk> stream(CharSequence text) {
+        return StreamSupport.stream(
+                Spliterators.spliteratorUnknownSize(split(text), Spliterator.ORDERED | Spliterator.NONNULL),
+                false);
+    }
+}
@@ -0,0 +1,58 @@
+package com.example.rag.chunking;
+
+/**
+ * 轻量 token 估算
+ * 分块时需要在原文上反复估算区间 token 数，使用按字符类别计数的近似算法，
+ * 避免对大文本整体做 BPE 编码：
+ * 连续的字母数字按每4个字符1个token，CJK 字符每个1个token，其他标点每个1个token，空白不计
+ */
+final class TokenEstimates {
+
+    private static final int CHARS_PER_WORD_TOKEN = 4;
+
+    private TokenEstimates() {
+    }
+
+    /**
+     * 估算区间 [start, end) 的 token 数
+     */
+    static int count(CharSequence text, int start, int end) {
+        int tokens = 0;
+        int wordLength = 0;
+        for (int i = start; i < end; i++) {
+            char c = text.charAt(i);
+            if (isWordChar(c)) {
+                wordLength++;
+                continue;
+            }
+            tokens += wordTokens(wordLength);
+            wordLength = 0;
+            if (!Character.isWhitespace(c)) {
+                tokens++;
+            }
+        }
+        return tokens + wordTokens(wordLength);
+    }
+
+    /**
+     * 判断位置 i 是否开始一个新 token，用于逐字符扫描时的 token 边界定位
+     */
+    static boolean startsToken(CharSequence text, int i, int wordRunLength) {
+        char c = text.charAt(i);
+        if (Character.isWhitespace(c)) {
+            return false;
+        }
+        if (isWordChar(c)) {
+            return wordRunLength % CHARS_PER_WORD_TOKEN == 0;
+        }
+        return true;
+    }
+
+    static boolean isWordChar(char c) {
+        return c < 0x2E80 && Character.isLetterOrDigit(c);
+    }
+
+    private static int wordTokens(int wordLength) {
+        return (wordLength + CHARS_PER_WORD_TOKEN - 1) / CHARS_PER_WORD_TOKEN;
+    }
+}
@@ -0,0 +1,72 @@
+package com.example.rag.chunking;
+
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+
+/**
+ * 按固定 token 数在区间上滑动的窗口迭代器，产出 {start, end} 偏移对
+ */
+final class TokenWindowIterator implements Iterator<int[]> {
+
+    private final CharSequence text;
+    private final int end;
+    private final int windowTokens;
+    private final int overlapTokens;
+
+    // 当前窗口内每个 token 的起始偏移，用于定位下一个窗口的重叠起点
+    private final int[] tokenStarts;
+    private int position;
+
+    TokenWindowIterator(CharSequence text, int start, int end, int windowTokens, int overlapTokens) {
+        this.text = text;
+        this.end = end;
+        this.windowTokens = windowTokens;
+        this.overlapTokens = overlapTokens;
+        this.tokenStarts = new int[windowTokens];
+        this.position = start;
+    }
+
+    @Override
+    public boolean hasNext() {
+        while (position < end && Character.isWhitespace(text.charAt(position))) {
+            position++;
+        }
+        return position < end;
+    }
+
+    @Override
+    public int[] next() {
+        if (!hasNext()) {
+            throw new NoSuchElementException();
+        }
+
+        int start = position;
+        int count = 0;
+        int wordRun = 0;
+        int i = start;
+        for (; i < end; i++) {
+            char c = text.charAt(i);
+            if (TokenEstimates.startsToken(text, i, wordRun)) {
+                if (count == windowTokens) {
+                    break;
+                }
+                tokenStarts[count++] = i;
+            }
+            wordRun = TokenEstimates.isWordChar(c) ? wordRun + 1 : 0;
+        }
+
+        int windowEnd = i;
+        if (windowEnd >= end) {
+            position = end;
+        } else if (overlapTokens == 0) {
+            position = windowEnd;
+        } else {
+            // 回退 overlapTokens 个 token 作为下一个窗口的起点，至少前进一个 token
+            position = tokenStarts[Math.max(count - overlapTokens, 1)];
+        }
+        while (windowEnd > start && Character.isWhitespace(text.charAt(windowEnd - 1))) {
+            windowEnd--;
+        }
+        return new int[]{start, windowEnd};
+    }
+}
@@ -1,12 +1,15 @@
 package com.example.rag.config;
 
+import com.example.rag.cache.CachingEmbeddingModel;
 import org.springframework.ai.chat.client.ChatClient;
-import org.springframework.ai.embedding.EmbeddingModel;
 import org.springframework.ai.openai.OpenAiEmbeddingModel;
 import org.springframework.ai.openai.api.OpenAiApi;
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
+import org.springframework.util.StringUtils;
+
+import java.nio.file.Path;
 
 @Configuration
 public class AiConfig {
@@ -17,14 +20,32 @@ public class AiConfig {
     @Value("${spring.ai.openai.base-url:https://api.deepseek.com}")
     private String baseUrl;
 
+    @Value("${spring.ai.openai.embedding.options.model:text-embedding-ada-002}")
+    private String embeddingModelName;
+
+    @Value("${rag.embedding-cache.max-memory-mb:64}")
+    private long embeddingCacheMaxMemoryMb;
+
+    @Value("${rag.embedding-cache.disk-path:}")
+    private String embeddingCacheDiskPath;
+
+    @Value("${rag.embedding-cache.max-disk-mb:1024}")
+    private long embeddingCacheMaxDiskMb;
+
     @Bean
     public ChatClient chatClient(ChatClient.Builder builder) {
         return builder.build();
     }
 
     @Bean
-    public EmbeddingModel embeddingModel() {
+    public CachingEmbeddingModel embeddingModel() {
         OpenAiApi openAiApi = new OpenAiApi(baseUrl, apiKey);
-        return new OpenAiEmbeddingModel(openAiApi);
+        return new CachingEmbeddingModel(
+                new OpenAiEmbeddingModel(openAiApi),
+                embeddingModelName,
+                embeddingCacheMaxMemoryMb * 1024 * 1024,
+                StringUtils.hasText(embeddingCacheDiskPath) ? Path.of(embeddingCacheDiskPath) : null,
+                embeddingCacheMaxDiskMb * 1024 * 1024
+        );
     }
 }
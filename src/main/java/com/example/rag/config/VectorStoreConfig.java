@@ -0,0 +1,79 @@
+package com.example.rag.config;
+
+import com.example.rag.vectorstore.HnswVectorStore;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.ai.embedding.EmbeddingModel;
+import org.springframework.ai.vectorstore.ElasticsearchVectorStore;
+import org.springframework.ai.vectorstore.VectorStore;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.context.annotation.Primary;
+import org.springframework.util.StringUtils;
+
+import java.nio.file.Path;
+
+/**
+ * 向量存储配置
+ * 文档库和表结构库可分别选择 Elasticsearch 或进程内 HNSW 索引
+ */
+@Slf4j
+@Configuration
+public class VectorStoreConfig {
+
+    public static final String TYPE_ELASTICSEARCH = "elasticsearch";
+    public static final String TYPE_HNSW = "hnsw";
+
+    @Value("${rag.vectorstore.hnsw.m:16}")
+    private int hnswM;
+
+    @Value("${rag.vectorstore.hnsw.ef-construction:200}")
+    private int hnswEfConstruction;
+
+    @Value("${rag.vectorstore.hnsw.ef-search:64}")
+    private int hnswEfSearch;
+
+    @Value("${rag.vectorstore.hnsw.flush-interval-seconds:30}")
+    private long hnswFlushIntervalSeconds;
+
+    @Value("${rag.vectorstore.hnsw.compact-tombstone-ratio:0.2}")
+    private double hnswCompactTombstoneRatio;
+
+    /**
+     * RAG 文档向量库
+     */
+    @Bean
+    @Primary
+    public VectorStore documentVectorStore(@Value("${rag.vectorstore.type:elasticsearch}") String type,
+                                           @Value("${rag.vectorstore.hnsw.path:./data/hnsw/documents}") String path,
+                                           EmbeddingModel embeddingModel,
+                                           ObjectProvider<ElasticsearchVectorStore> elasticsearchVectorStore) {
+        return create("documents", type, path, embeddingModel, elasticsearchVectorStore);
+    }
+
+    /**
+     * NL2SQL 表结构向量库
+     */
+    @Bean
+    public VectorStore schemaVectorStore(@Value("${nl2sql.vectorstore.type:elasticsearch}") String type,
+                                         @Value("${nl2sql.vectorstore.hnsw.path:./data/hnsw/schemas}") String path,
+                                         EmbeddingModel embeddingModel,
+                                         ObjectProvider<ElasticsearchVectorStore> elasticsearchVectorStore) {
+        return create("schemas", type, path, embeddingModel, elasticsearchVectorStore);
+    }
+
+    private VectorStore create(String name, String type, String path, EmbeddingModel embeddingModel,
+                               ObjectProvider<ElasticsearchVectorStore> elasticsearchVectorStore) {
+        if (TYPE_HNSW.equalsIgnoreCase(type)) {
+            log.info("Using in-process HNSW vector store for {}: {}", name, path);
+            return new HnswVectorStore(embeddingModel, hnswM, hnswEfConstruction, hnswEfSearch,
+                    StringUtils.hasText(path) ? Path.of(path) : null, hnswFlushIntervalSeconds,
+                    hnswCompactTombstoneRatio);
+        }
+        if (TYPE_ELASTICSEARCH.equalsIgnoreCase(type)) {
+            return elasticsearchVectorStore.getObject();
+        }
+        throw new IllegalArgumentException("Unknown vector store type for " + name + ": " + type);
+    }
+}
@@ -0,0 +1,192 @@
+package com.example.rag.context;
+
+import com.example.rag.util.TermAnalyzer;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.ai.document.Document;
+import org.springframework.ai.tokenizer.JTokkitTokenCountEstimator;
+import org.springframework.ai.tokenizer.TokenCountEstimator;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.core.env.Environment;
+import org.springframework.stereotype.Component;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * 按 token 预算组装 RAG 上下文
+ * 按检索排序依次放入分块，跳过与已放入分块近似重复的段落；
+ * 放不下完整分块时，剩余预算足够则在句子边界截断放入并结束，否则跳过该分块继续尝试后面更短的分块，直到预算用完
+ */
+@Slf4j
+@Component
+@RequiredArgsConstructor
+public class ContextBuilder {
+
+    private static final String EMPTY_CONTEXT = "无相关文档";
+
+    private final Environment environment;
+
+    private final TokenCountEstimator tokenCountEstimator = new JTokkitTokenCountEstimator();
+
+    @Value("${rag.context.max-tokens:3000}")
+    private int defaultMaxTokens;
+
+    @Value("${rag.context.min-trimmed-tokens:64}")
+    private int minTrimmedTokens;
+
+    @Value("${rag.context.duplicate-threshold:0.9}")
+    private double duplicateThreshold;
+
+    @Value("${spring.ai.openai.chat.options.model:}")
+    private String chatModel;
+
+    /**
+     * 解析本次请求的 token 预算
+     * 优先使用请求指定的预算，其次是 rag.context.model-budgets.&lt;模型名&gt;，最后是 rag.context.max-tokens
+     */
+    public int resolveBudget(Integer requestedTokens) {
+        if (requestedTokens != null) {
+            if (requestedTokens <= 0) {
+                throw new IllegalArgumentException("maxContextTokens must be positive: " + requestedTokens);
+            }
+            return requestedTokens;
+        }
+        return environment.getProperty("rag.context.model-budgets." + chatModel, Integer.class, defaultMaxTokens);
+    }
+
+    /**
+     * 组装上下文
+     *
+     * @param documents 按相关性排序的分块
+     * @param budgetTokens 上下文 token 上限
+     */
+    public BuiltContext build(List<Document> documents, int budgetTokens) {
+        if (documents.isEmpty()) {
+            return new BuiltContext(EMPTY_CONTEXT, List.of(), tokenCountEstimator.estimate(EMPTY_CONTEXT), 0, 0);
+        }
+
+        StringBuilder context = new StringBuilder();
+        List<Document> included = new ArrayList<>();
+        List<Set<String>> includedTerms = new ArrayList<>();
+        int usedTokens = 0;
+        int duplicates = 0;
+        int truncated = 0;
+
+        for (Document document : documents) {
+            if (usedTokens >= budgetTokens) {
+                break;
+            }
+            String content = document.getContent() != null ? document.getContent().strip() : "";
+            if (content.isEmpty()) {
+                continue;
+            }
+
+            Set<String> terms = new HashSet<>(TermAnalyzer.analyze(content));
+            if (isDuplicate(terms, includedTerms)) {
+                duplicates++;
+                continue;
+            }
+
+            String header = "[文档" + (included.size() + 1) + "]\n";
+            int headerTokens = tokenCountEstimator.estimate(header);
+            int contentTokens = tokenCountEstimator.estimate(content);
+            int remaining = budgetTokens - usedTokens - headerTokens;
+
+            if (contentTokens > remaining) {
+                // 预算不足：剩余空间足够时截断到句子边界并结束，否则跳过该分块，继续尝试后面的分块
+                String trimmed = remaining >= minTrimmedTokens ? trimToSentences(content, remaining) : "";
+                if (trimmed.isEmpty()) {
+                    continue;
+                }
+                context.append(header).append(trimmed).append("\n\n");
+                usedTokens += headerTokens + tokenCountEstimator.estimate(trimmed);
+                included.add(document);
+                truncated++;
+                break;
+            }
+
+            context.append(header).append(content).append("\n\n");
+            usedTokens += headerTokens + contentTokens;
+            included.add(document);
+            includedTerms.add(terms);
+        }
+
+        if (included.isEmpty()) {
+            return new BuiltContext(EMPTY_CONTEXT, List.of(), tokenCountEstimator.estimate(EMPTY_CONTEXT),
+                    duplicates, truncated);
+        }
+
+        log.debug("Context built: {}/{} documents, {} tokens (budget {}), {} duplicates, {} truncated",
+                included.size(), documents.size(), usedTokens, budgetTokens, duplicates, truncated);
+        return new BuiltContext(context.toString(), included, usedTokens, duplicates, truncated);
+    }
+
+    /**
+     * Jaccard 相似度超过阈值视为近似重复
+     */
+    private boolean isDuplicate(Set<String> terms, List<Set<String>> includedTerms) {
+        if (terms.isEmpty()) {
+            return false;
+        }
+        for (Set<String> other : includedTerms) {
+            int intersection = 0;
+            for (String term : terms) {
+                if (other.contains(term)) {
+                    intersection++;
+                }
+            }
+            int union = terms.size() + other.size() - intersection;
+            if ((double) intersection / union >= duplicateThreshold) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * 截取不超过 maxTokens 的最长句子前缀，没有完整句子可放时返回空串
+     */
+    private String trimToSentences(String content, int maxTokens) {
+        List<Integer> boundaries = sentenceBoundaries(content);
+        int low = 0;
+        int high = boundaries.size() - 1;
+        int best = -1;
+        while (low <= high) {
+            int mid = (low + high) >>> 1;
+            if (tokenCountEstimator.estimate(content.substring(0, boundaries.get(mid))) <= maxTokens) {
+                best = mid;
+                low = mid + 1;
+            } else {
+                high = mid - 1;
+            }
+        }
+        return best < 0 ? "" : content.substring(0, boundaries.get(best)).strip();
+    }
+
+    private static List<Integer> sentenceBoundaries(String content) {
+        List<Integer> boundaries = new ArrayList<>();
+        for (int i = 0; i < content.length(); i++) {
+            char c = content.charAt(i);
+            boolean end = c == '。' || c == '！' || c == '？' || c == '；' || c == '\n'
+                    || ((c == '.' || c == '!' || c == '?' || c == ';')
+                    && (i + 1 == content.length() || Character.isWhitespace(content.charAt(i + 1))));
+            if (end) {
+                boundaries.add(i + 1);
+            }
+        }
+        return boundaries;
+    }
+
+    /**
+     * 组装结果
+     *
+     * @param documents 实际放入上下文的分块
+     * @param tokens 上下文 token 数
+     * @param duplicates 因近似重复被跳过的分块数
+     * @param truncated 被截断的分块数
+     */
+    public record BuiltContext(String text, List<Document> documents, int tokens, int duplicates, int truncated) {}
+}
@@ -0,0 +1,90 @@
+package com.example.rag.controller;
+
+import com.example.rag.cache.CachingEmbeddingModel;
+import com.example.rag.cache.SemanticAnswerCache;
+import com.example.rag.nl2sql.service.SqlCacheService;
+import com.example.rag.prompt.PromptCacheMetrics;
+import lombok.RequiredArgsConstructor;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.*;
+
+import java.util.Map;
+
+@RestController
+@RequestMapping("/api/cache")
+@RequiredArgsConstructor
+public class CacheController {
+
+    private final CachingEmbeddingModel embeddingModel;
+    private final SemanticAnswerCache answerCache;
+    private final SqlCacheService sqlCacheService;
+    private final PromptCacheMetrics promptCacheMetrics;
+
+    /**
+     * 向量缓存命中统计
+     */
+    @GetMapping("/embedding/stats")
+    public ResponseEntity<CachingEmbeddingModel.CacheStats> embeddingStats() {
+        return ResponseEntity.ok(embeddingModel.getStats());
+    }
+
+    /**
+     * 清空向量缓存内存层
+     */
+    @DeleteMapping("/embedding")
+    public ResponseEntity<Void> clearEmbeddingCache() {
+        embeddingModel.clearMemory();
+        return ResponseEntity.noContent().build();
+    }
+
+    /**
+     * 语义回答缓存命中统计
+     */
+    @GetMapping("/answer/stats")
+    public ResponseEntity<SemanticAnswerCache.CacheStats> answerStats() {
+        return ResponseEntity.ok(answerCache.getStats());
+    }
+
+    /**
+     * 清空语义回答缓存
+     */
+    @DeleteMapping("/answer")
+    public ResponseEntity<Void> clearAnswerCache() {
+        answerCache.clear();
+        return ResponseEntity.noContent().build();
+    }
+
+    /**
+     * NL2SQL 生成SQL缓存命中统计
+     */
+    @GetMapping("/sql/stats")
+    public ResponseEntity<SqlCacheService.CacheStats> sqlStats() {
+        return ResponseEntity.ok(sqlCacheService.getStats());
+    }
+
+    /**
+     * 清空 NL2SQL 生成SQL缓存
+     */
+    @DeleteMapping("/sql")
+    public ResponseEntity<Void> clearSqlCache() {
+        sqlCacheService.clear();
+        return ResponseEntity.noContent().build();
+    }
+
+    /**
+     * 模型服务提示词前缀缓存命中统计，按调用方（rag、field-extractor、sql-generator）分别统计
+     */
+    @GetMapping("/prompt/stats")
+    public ResponseEntity<Map<String, PromptCacheMetrics.CallerStats>> promptStats() {
+        return ResponseEntity.ok(promptCacheMetrics.getStats());
+    }
+
+    /**
+     * 重置提示词前缀缓存统计
+     */
+    @DeleteMapping("/prompt/stats")
+    public ResponseEntity<Void> resetPromptStats() {
+        promptCacheMetrics.reset();
+        return ResponseEntity.noContent().build();
+    }
+}
@@ -1,13 +1,25 @@
 package com.example.rag.controller;
 
 import com.example.rag.entity.Document;
+import com.example.rag.ingestion.IngestionJob;
+import com.example.rag.ingestion.IngestionJobService;
+import com.example.rag.ingestion.IngestionQueueFullException;
 import com.example.rag.service.DocumentService;
 import com.example.rag.service.RagService;
+import com.example.rag.service.RetrievalMode;
 import lombok.AllArgsConstructor;
 import lombok.Data;
 import lombok.RequiredArgsConstructor;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
+import org.springframework.http.codec.ServerSentEvent;
 import org.springframework.web.bind.annotation.*;
+import reactor.core.publisher.Flux;
+
+import java.util.List;
+import java.util.Map;
 
 @RestController
 @RequestMapping("/api")
@@ -16,6 +28,7 @@ public class RagController {
 
     private final DocumentService documentService;
     private final RagService ragService;
+    private final IngestionJobService ingestionJobService;
 
     /**
      * 上传文档
@@ -30,13 +43,108 @@ public class RagController {
         return ResponseEntity.ok(document);
     }
 
+    /**
+     * 批量上传文档
+     * total/indexed/failed 按文档统计，一篇文档只要有分块写入失败即计为失败，并在 failedIds 中列出
+     */
+    @PostMapping("/documents/bulk")
+    public ResponseEntity<BulkDocumentResponse> uploadDocuments(@RequestBody List<DocumentRequest> requests) {
+        List<Document> documents = requests.stream()
+                .map(request -> Document.builder()
+                        .title(request.getTitle())
+                        .content(request.getContent())
+                        .source(request.getSource())
+                        .build())
+                .toList();
+        DocumentService.BulkSaveResult result = documentService.saveDocuments(documents);
+        Map<String, Integer> failedByDocument = result.indexResult().failedByDocument();
+        List<String> ids = result.documents().stream().map(Document::getId).toList();
+        List<String> failedIds = ids.stream().filter(failedByDocument::containsKey).toList();
+        return ResponseEntity.ok(new BulkDocumentResponse(
+                ids.size(),
+                ids.size() - failedIds.size(),
+                failedIds.size(),
+                result.indexResult().total(),
+                result.indexResult().failed(),
+                result.indexResult().elapsedMs(),
+                ids,
+                failedIds
+        ));
+    }
+
+    /**
+     * 异步上传文档
+     * 文档进入导入队列后立即返回 202 和任务ID，队列满时返回 429
+     */
+    @PostMapping("/documents/async")
+    public ResponseEntity<IngestionJob> uploadDocumentAsync(@RequestBody DocumentRequest request) {
+        try {
+            IngestionJob job = ingestionJobService.submit(
+                    request.getTitle(),
+                    request.getContent(),
+                    request.getSource()
+            );
+            return ResponseEntity.accepted().body(job);
+        } catch (IngestionQueueFullException e) {
+            return ResponseEntity.status(HttpStatus.TOO_MANY_REQUESTS)
+                    .header(HttpHeaders.RETRY_AFTER, "5")
+                    .build();
+        }
+    }
+
+    /**
+     * 查询异步导入任务状态
+     */
+    @GetMapping("/ingestion/jobs/{jobId}")
+    public ResponseEntity<IngestionJob> getIngestionJob(@PathVariable String jobId) {
+        return ingestionJobService.getJob(jobId)
+                .map(ResponseEntity::ok)
+                .orElse(ResponseEntity.notFound().build());
+    }
+
     /**
      * RAG 问答
      */
     @PostMapping("/rag/query")
     public ResponseEntity<RagResponse> query(@RequestBody QueryRequest request) {
-        String answer = ragService.query(request.getQuestion(), request.getTopK() != null ? request.getTopK() : 3);
-        return ResponseEntity.ok(new RagResponse(answer));
+        RagService.RagAnswer answer = ragService.query(
+                request.getQuestion(),
+                request.getTopK() != null ? request.getTopK() : 3,
+                RetrievalMode.from(request.getRetrievalMode(), null),
+                request.getMaxContextTokens()
+        );
+        return ResponseEntity.ok(new RagResponse(answer.answer(), answer.contextTokens()));
+    }
+
+    /**
+     * RAG 流式问答（SSE）
+     * 事件顺序: sources -> context -> token... -> done，出错时发送 error 事件
+     */
+    @PostMapping(value = "/rag/query/stream", produces = MediaType.TEXT_EVENT_STREAM_VALUE)
+    public Flux<ServerSentEvent<Object>> queryStream(@RequestBody QueryRequest request) {
+        RagService.StreamingAnswer answer = ragService.queryStream(
+                request.getQuestion(),
+                request.getTopK() != null ? request.getTopK() : 3,
+                RetrievalMode.from(request.getRetrievalMode(), null),
+                request.getMaxContextTokens()
+        );
+
+        List<SourceDocument> sources = answer.sources().stream()
+                .map(SourceDocument::from)
+                .toList();
+
+        Flux<ServerSentEvent<Object>> sourcesEvent = Flux.just(
+                ServerSentEvent.<Object>builder().event("sources").data(sources).build(),
+                ServerSentEvent.<Object>builder().event("context")
+                        .data(Map.of("contextTokens", answer.contextTokens())).build());
+        Flux<ServerSentEvent<Object>> tokenEvents = answer.tokens()
+                .map(token -> ServerSentEvent.<Object>builder().event("token").data(token).build());
+        Flux<ServerSentEvent<Object>> doneEvent = Flux.just(
+                ServerSentEvent.<Object>builder().event("done").data("[DONE]").build());
+
+        return Flux.concat(sourcesEvent, tokenEvents, doneEvent)
+                .onErrorResume(e -> Flux.just(
+                        ServerSentEvent.<Object>builder().event("error").data(e.getMessage()).build()));
     }
 
     @Data
@@ -50,11 +158,52 @@ public class RagController {
     public static class QueryRequest {
         private String question;
         private Integer topK;
+        /**
+         * 检索模式: vector / keyword / hybrid，为空时使用默认配置
+         */
+        private String retrievalMode;
+        /**
+         * 上下文 token 预算，为空时按模型配置
+         */
+        private Integer maxContextTokens;
     }
 
     @Data
     @AllArgsConstructor
     public static class RagResponse {
         private String answer;
+        private int contextTokens;
+    }
+
+    @Data
+    @AllArgsConstructor
+    public static class BulkDocumentResponse {
+        private int total;
+        private int indexed;
+        private int failed;
+        private int totalChunks;
+        private int failedChunks;
+        private long elapsedMs;
+        private List<String> ids;
+        private List<String> failedIds;
+    }
+
+    @Data
+    @AllArgsConstructor
+    public static class SourceDocument {
+        private String id;
+        private String title;
+        private String source;
+        private Object distance;
+
+        static SourceDocument from(org.springframework.ai.document.Document document) {
+            Map<String, Object> metadata = document.getMetadata();
+            return new SourceDocument(
+                    document.getId(),
+                    (String) metadata.get("title"),
+                    (String) metadata.get("source"),
+                    metadata.get("distance")
+            );
+        }
     }
 }
@@ -0,0 +1,55 @@
+package com.example.rag.ingestion;
+
+import com.example.rag.entity.Document;
+import com.fasterxml.jackson.annotation.JsonIgnore;
+import lombok.Getter;
+
+import java.time.Instant;
+
+/**
+ * 异步导入任务
+ */
+@Getter
+public class IngestionJob {
+
+    private final String id;
+    private final String documentId;
+    private final String title;
+    private final Instant createdAt;
+    private volatile IngestionStatus status = IngestionStatus.QUEUED;
+    private volatile String error;
+    private volatile Instant updatedAt;
+
+    // 待导入的文档，处理完成后释放
+    @JsonIgnore
+    private volatile Document document;
+
+    IngestionJob(String id, Document document) {
+        this.id = id;
+        this.documentId = document.getId();
+        this.title = document.getTitle();
+        this.document = document;
+        this.createdAt = Instant.now();
+        this.updatedAt = createdAt;
+    }
+
+    void markEmbedding() {
+        update(IngestionStatus.EMBEDDING);
+    }
+
+    void markIndexed() {
+        this.document = null;
+        update(IngestionStatus.INDEXED);
+    }
+
+    void markFailed(String error) {
+        this.error = error;
+        this.document = null;
+        update(IngestionStatus.FAILED);
+    }
+
+    private void update(IngestionStatus status) {
+        this.status = status;
+        this.updatedAt = Instant.now();
+    }
+}
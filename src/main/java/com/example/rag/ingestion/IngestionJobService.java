@@ -0,0 +1,161 @@
+package com.example.rag.ingestion;
+
+import com.example.rag.entity.Document;
+import com.example.rag.service.DocumentService;
+import com.example.rag.service.EmbeddingService;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.concurrent.CustomizableThreadFactory;
+import org.springframework.stereotype.Service;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.UUID;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 异步文档导入
+ * 文档先进入有界队列，由后台工作线程批量取出做分块、embedding 和写入；
+ * 队列满时直接拒绝，由调用方稍后重试，避免请求线程被慢速的 embedding 服务占住
+ */
+@Slf4j
+@Service
+@RequiredArgsConstructor
+public class IngestionJobService {
+
+    private final DocumentService documentService;
+
+    @Value("${rag.ingestion.async.queue-capacity:1000}")
+    private int queueCapacity;
+
+    @Value("${rag.ingestion.async.workers:2}")
+    private int workers;
+
+    @Value("${rag.ingestion.async.batch-documents:32}")
+    private int batchDocuments;
+
+    @Value("${rag.ingestion.async.job-retention:1h}")
+    private Duration jobRetention;
+
+    private final Map<String, IngestionJob> jobs = new ConcurrentHashMap<>();
+
+    private BlockingQueue<IngestionJob> queue;
+    private ExecutorService workerPool;
+    private volatile boolean running;
+
+    @PostConstruct
+    void start() {
+        queue = new ArrayBlockingQueue<>(queueCapacity);
+        workerPool = Executors.newFixedThreadPool(workers, new CustomizableThreadFactory("ingest-worker-"));
+        running = true;
+        for (int i = 0; i < workers; i++) {
+            workerPool.submit(this::runWorker);
+        }
+    }
+
+    @PreDestroy
+    void stop() throws InterruptedException {
+        running = false;
+        workerPool.shutdownNow();
+        workerPool.awaitTermination(10, TimeUnit.SECONDS);
+    }
+
+    /**
+     * 提交导入任务
+     *
+     * @throws IngestionQueueFullException 队列已满
+     */
+    public IngestionJob submit(String title, String content, String source) {
+        evictFinishedJobs();
+
+        Document document = Document.builder()
+                .id(UUID.randomUUID().toString())
+                .title(title)
+                .content(content)
+                .source(source)
+                .build();
+        IngestionJob job = new IngestionJob(UUID.randomUUID().toString(), document);
+
+        jobs.put(job.getId(), job);
+        if (!queue.offer(job)) {
+            jobs.remove(job.getId());
+            throw new IngestionQueueFullException(queueCapacity);
+        }
+        log.debug("Ingestion job queued: {} (document {})", job.getId(), job.getDocumentId());
+        return job;
+    }
+
+    /**
+     * 查询任务状态
+     */
+    public Optional<IngestionJob> getJob(String jobId) {
+        return Optional.ofNullable(jobs.get(jobId));
+    }
+
+    /**
+     * 当前排队中的任务数
+     */
+    public int getQueueSize() {
+        return queue.size();
+    }
+
+    private void runWorker() {
+        List<IngestionJob> batch = new ArrayList<>(batchDocuments);
+        while (running) {
+            try {
+                // 阻塞等待第一个任务，再顺带取走已排队的任务凑成一批
+                batch.add(queue.take());
+                queue.drainTo(batch, batchDocuments - 1);
+                process(batch);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return;
+            } finally {
+                batch.clear();
+            }
+        }
+    }
+
+    private void process(List<IngestionJob> batch) {
+        batch.forEach(IngestionJob::markEmbedding);
+        try {
+            DocumentService.BulkSaveResult result = documentService.saveDocuments(
+                    batch.stream().map(IngestionJob::getDocument).toList());
+            EmbeddingService.BulkIndexResult indexResult = result.indexResult();
+            // 按各自文档的写入结果标记任务，同批其他文档失败不影响本任务
+            for (IngestionJob job : batch) {
+                Integer failedChunks = indexResult.failedByDocument().get(job.getDocumentId());
+                if (failedChunks != null) {
+                    job.markFailed(failedChunks + " chunks failed to index");
+                } else {
+                    job.markIndexed();
+                }
+            }
+            log.info("Ingestion batch processed: {} documents, {}/{} chunks indexed",
+                    batch.size(), indexResult.indexed(), indexResult.total());
+        } catch (Exception e) {
+            log.error("Ingestion batch of {} documents failed: {}", batch.size(), e.getMessage(), e);
+            batch.forEach(job -> job.markFailed(e.getMessage()));
+        }
+    }
+
+    /**
+     * 清理超过保留时间的已完成任务
+     */
+    private void evictFinishedJobs() {
+        Instant cutoff = Instant.now().minus(jobRetention);
+        jobs.values().removeIf(job -> job.getStatus().isFinished() && job.getUpdatedAt().isBefore(cutoff));
+    }
+}
@@ -0,0 +1,11 @@
+package com.example.rag.ingestion;
+
+/**
+ * 导入队列已满
+ */
+public class IngestionQueueFullException extends RuntimeException {
+
+    public IngestionQueueFullException(int capacity) {
+        super("Ingestion queue is full (capacity " + capacity + ")");
+    }
+}
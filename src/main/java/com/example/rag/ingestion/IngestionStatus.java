@@ -0,0 +1,15 @@
+package com.example.rag.ingestion;
+
+/**
+ * 异步导入任务状态
+ */
+public enum IngestionStatus {
+    QUEUED,
+    EMBEDDING,
+    INDEXED,
+    FAILED;
+
+    public boolean isFinished() {
+        return this == INDEXED || this == FAILED;
+    }
+}
@@ -0,0 +1,31 @@
+package com.example.rag.nl2sql.config;
+
+import lombok.Data;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * NL2SQL 目标数据库连接配置（nl2sql.datasources.&lt;databaseName&gt;）
+ */
+@Data
+public class DataSourceSettings {
+
+    private String url;
+
+    private String username;
+
+    private String password;
+
+    private String driverClassName;
+
+    /**
+     * 连接池最大连接数
+     */
+    private int maximumPoolSize = 4;
+
+    /**
+     * 连接池创建后执行的初始化脚本（如 classpath:sql/sample-schema.sql）
+     */
+    private List<String> initScripts = new ArrayList<>();
+}
@@ -1,12 +1,41 @@
 package com.example.rag.nl2sql.config;
 
+import com.example.rag.nl2sql.repository.FileTableSchemaRepository;
+import com.example.rag.nl2sql.repository.InMemoryTableSchemaRepository;
+import com.example.rag.nl2sql.repository.TableSchemaRepository;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.ComponentScan;
 import org.springframework.context.annotation.Configuration;
 
+import java.nio.file.Path;
+
 /**
  * NL2SQL 模块配置
  */
+@Slf4j
 @Configuration
 @ComponentScan(basePackages = "com.example.rag.nl2sql")
 public class NL2SQLConfig {
+
+    /**
+     * 表结构存储：memory（重启后丢失）或 file（快照 + 追加日志）
+     */
+    @Bean
+    public TableSchemaRepository tableSchemaRepository(@Value("${nl2sql.schema-store.type:file}") String type,
+                                                       @Value("${nl2sql.schema-store.path:./data/schemas}") String path,
+                                                       @Value("${nl2sql.schema-store.compact-threshold:1000}") int compactThreshold,
+                                                       @Value("${nl2sql.schema-store.fsync:false}") boolean fsync,
+                                                       ObjectMapper objectMapper) {
+        if ("memory".equalsIgnoreCase(type)) {
+            return new InMemoryTableSchemaRepository();
+        }
+        if ("file".equalsIgnoreCase(type)) {
+            log.info("Using file-based table schema store: {}", path);
+            return new FileTableSchemaRepository(Path.of(path), compactThreshold, fsync, objectMapper);
+        }
+        throw new IllegalArgumentException("Unknown schema store type: " + type);
+    }
 }
@@ -33,7 +33,9 @@ public class NL2SQLDataInitializer {
         return args -> {
             // 检查是否已有数据
             if (tableSchemaService.getTableCount() > 0) {
-                log.info("Table schema already initialized, skipping...");
+                // 表结构已持久化，只把内容有变化或缺失的表同步到向量库
+                log.info("Table schema already initialized, syncing embeddings...");
+                schemaEmbeddingService.sync();
                 return;
             }
             
@@ -81,8 +83,7 @@ public class NL2SQLDataInitializer {
                 ))
                 .build();
         
-        tableSchemaService.saveTable(convertToRequest(users));
-        schemaEmbeddingService.addTableEmbedding(users);
+        schemaEmbeddingService.addTableEmbedding(tableSchemaService.saveTable(convertToRequest(users)));
         log.info("Initialized users table");
     }
     
@@ -106,8 +107,7 @@ public class NL2SQLDataInitializer {
                 ))
                 .build();
         
-        tableSchemaService.saveTable(convertToRequest(categories));
-        schemaEmbeddingService.addTableEmbedding(categories);
+        schemaEmbeddingService.addTableEmbedding(tableSchemaService.saveTable(convertToRequest(categories)));
         log.info("Initialized categories table");
     }
     
@@ -139,8 +139,7 @@ public class NL2SQLDataInitializer {
                 ))
                 .build();
         
-        tableSchemaService.saveTable(convertToRequest(products));
-        schemaEmbeddingService.addTableEmbedding(products);
+        schemaEmbeddingService.addTableEmbedding(tableSchemaService.saveTable(convertToRequest(products)));
         log.info("Initialized products table");
     }
     
@@ -173,8 +172,7 @@ public class NL2SQLDataInitializer {
                 ))
                 .build();
         
-        tableSchemaService.saveTable(convertToRequest(orders));
-        schemaEmbeddingService.addTableEmbedding(orders);
+        schemaEmbeddingService.addTableEmbedding(tableSchemaService.saveTable(convertToRequest(orders)));
         log.info("Initialized orders table");
     }
     
@@ -199,8 +197,7 @@ public class NL2SQLDataInitializer {
                 ))
                 .build();
         
-        tableSchemaService.saveTable(convertToRequest(orderItems));
-        schemaEmbeddingService.addTableEmbedding(orderItems);
+        schemaEmbeddingService.addTableEmbedding(tableSchemaService.saveTable(convertToRequest(orderItems)));
         log.info("Initialized order_items table");
     }
     
@@ -0,0 +1,207 @@
+package com.example.rag.nl2sql.controller;
+
+import com.example.rag.nl2sql.dto.NL2SqlRequest;
+import com.example.rag.nl2sql.dto.NL2SqlResponse;
+import com.example.rag.nl2sql.dto.SchemaImportRequest;
+import com.example.rag.nl2sql.dto.TableInfoRequest;
+import com.example.rag.nl2sql.entity.TableInfo;
+import com.example.rag.nl2sql.service.NL2SQLService;
+import com.example.rag.nl2sql.service.PipelinePolicy;
+import com.example.rag.nl2sql.service.SchemaEmbeddingService;
+import com.example.rag.nl2sql.service.SchemaImportJob;
+import com.example.rag.nl2sql.service.SchemaImportService;
+import com.example.rag.nl2sql.service.SqlExecutionService;
+import com.example.rag.nl2sql.service.TableSchemaService;
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.*;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.List;
+import java.util.Map;
+
+@Slf4j
+@RestController
+@RequestMapping("/api/nl2sql")
+@RequiredArgsConstructor
+public class NL2SQLController {
+
+    private final NL2SQLService nl2sqlService;
+    private final TableSchemaService tableSchemaService;
+    private final SchemaEmbeddingService schemaEmbeddingService;
+    private final SqlExecutionService sqlExecutionService;
+    private final SchemaImportService schemaImportService;
+    private final PipelinePolicy pipelinePolicy;
+    private final ObjectMapper objectMapper;
+
+    /**
+     * 自然语言转SQL
+     */
+    @PostMapping("/query")
+    public ResponseEntity<NL2SqlResponse> query(@RequestBody NL2SqlRequest request) {
+        return ResponseEntity.ok(nl2sqlService.query(request));
+    }
+
+    /**
+     * 自然语言转SQL并以 NDJSON 流式返回执行结果
+     * 每行一个JSON对象: meta（SQL和列名）-> row... -> end（行数和耗时），出错时输出 error
+     */
+    @PostMapping(value = "/query/stream", produces = "application/x-ndjson")
+    public ResponseEntity<StreamingResponseBody> queryStream(@RequestBody NL2SqlRequest request) {
+        NL2SqlResponse generated = nl2sqlService.generate(request);
+        String databaseName = nl2sqlService.resolveDatabase(request, generated);
+
+        StreamingResponseBody body = out -> {
+            try (JsonGenerator json = objectMapper.getFactory().createGenerator(out)) {
+                // 换行由这里自行写出，flush 只把生成器缓冲写入 out，何时刷新到客户端由行数决定
+                json.setRootValueSeparator(null);
+                json.disable(JsonGenerator.Feature.FLUSH_PASSED_TO_STREAM);
+                if (!"generated".equals(generated.getStatus())) {
+                    writeLine(json, out, Map.of("type", "error", "message", String.valueOf(generated.getErrorMessage())));
+                    return;
+                }
+                try {
+                    SqlExecutionService.ExecutionStats stats = sqlExecutionService.stream(databaseName,
+                            generated.getGeneratedSql(), request.getMaxRowsOrDefault(), new NdjsonRowWriter(json, out,
+                                    generated.getGeneratedSql()));
+                    writeLine(json, out, Map.of("type", "end",
+                            "rowCount", stats.rowCount(),
+                            "executionTimeMs", stats.executionTimeMs(),
+                            "stageTimings", generated.getStageTimings()));
+                } catch (Exception e) {
+                    log.error("Streaming SQL execution failed on {}: {}", databaseName, e.getMessage());
+                    writeLine(json, out, Map.of("type", "error", "message", String.valueOf(e.getMessage())));
+                }
+            }
+        };
+        return ResponseEntity.ok()
+                .contentType(MediaType.parseMediaType("application/x-ndjson"))
+                .body(body);
+    }
+
+    private static void writeLine(JsonGenerator json, OutputStream out, Object value) throws IOException {
+        json.writeObject(value);
+        json.flush();
+        out.write('\n');
+        out.flush();
+    }
+
+    /**
+     * 把结果行逐行写为 NDJSON，每 FLUSH_EVERY 行刷新一次输出
+     */
+    private static final class NdjsonRowWriter implements SqlExecutionService.RowHandler {
+
+        private static final int FLUSH_EVERY = 100;
+
+        private final JsonGenerator json;
+        private final OutputStream out;
+        private final String sql;
+        private List<String> columns;
+        private int rows;
+
+        NdjsonRowWriter(JsonGenerator json, OutputStream out, String sql) {
+            this.json = json;
+            this.out = out;
+            this.sql = sql;
+        }
+
+        @Override
+        public void onColumns(List<String> columns) throws Exception {
+            this.columns = columns;
+            writeLine(json, out, Map.of("type", "meta", "sql", sql, "columns", columns));
+        }
+
+        @Override
+        public void onRow(Object[] values) throws Exception {
+            json.writeStartObject();
+            json.writeStringField("type", "row");
+            json.writeObjectFieldStart("row");
+            for (int i = 0; i < values.length; i++) {
+                json.writeObjectField(columns.get(i), values[i]);
+            }
+            json.writeEndObject();
+            json.writeEndObject();
+            json.flush();
+            out.write('\n');
+            if (++rows % FLUSH_EVERY == 0) {
+                out.flush();
+            }
+        }
+    }
+
+    /**
+     * 获取所有表信息
+     */
+    @GetMapping("/tables")
+    public ResponseEntity<List<TableInfo>> listTables() {
+        return ResponseEntity.ok(tableSchemaService.getAllTables());
+    }
+
+    /**
+     * fused / two-stage 流程的选择统计
+     */
+    @GetMapping("/pipeline/stats")
+    public ResponseEntity<PipelinePolicy.PipelineStats> pipelineStats() {
+        return ResponseEntity.ok(pipelinePolicy.stats());
+    }
+
+    /**
+     * 创建或更新表信息，并同步向量嵌入（内容指纹未变化时不重新向量化）
+     */
+    @PostMapping("/tables")
+    public ResponseEntity<TableInfo> saveTable(@RequestBody TableInfoRequest request) {
+        TableInfo previous = tableSchemaService.getTableByName(request.getTableName());
+        TableInfo table = tableSchemaService.saveTable(request);
+        schemaEmbeddingService.updateTableEmbedding(previous, table);
+        return ResponseEntity.ok(table);
+    }
+
+    /**
+     * 同步表结构库与向量库：只重新向量化新增和内容变化的表，删除孤立的向量
+     */
+    @PostMapping("/tables/sync")
+    public ResponseEntity<SchemaEmbeddingService.SyncResult> syncTables() {
+        return ResponseEntity.ok(schemaEmbeddingService.sync());
+    }
+
+    /**
+     * 从 JDBC 数据源异步导入表结构，返回 202 和任务ID
+     */
+    @PostMapping("/tables/import")
+    public ResponseEntity<SchemaImportJob> importTables(@RequestBody SchemaImportRequest request) {
+        if (!sqlExecutionService.hasDatabase(request.getDatabaseName())) {
+            return ResponseEntity.badRequest().build();
+        }
+        return ResponseEntity.accepted().body(schemaImportService.startImport(request));
+    }
+
+    /**
+     * 查询表结构导入任务进度
+     */
+    @GetMapping("/tables/import/{jobId}")
+    public ResponseEntity<SchemaImportJob> getImportJob(@PathVariable String jobId) {
+        return schemaImportService.getJob(jobId)
+                .map(ResponseEntity::ok)
+                .orElse(ResponseEntity.notFound().build());
+    }
+
+    /**
+     * 删除表信息及其向量嵌入
+     */
+    @DeleteMapping("/tables/{id}")
+    public ResponseEntity<Void> deleteTable(@PathVariable String id) {
+        TableInfo table = tableSchemaService.getTableById(id);
+        if (table == null) {
+            return ResponseEntity.notFound().build();
+        }
+        tableSchemaService.deleteTable(id);
+        schemaEmbeddingService.deleteTableEmbedding(table);
+        return ResponseEntity.noContent().build();
+    }
+}
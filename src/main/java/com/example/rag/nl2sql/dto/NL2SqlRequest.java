@@ -57,6 +57,16 @@ public class NL2SqlRequest {
      */
     private Boolean includeExplanation;
     
+    /**
+     * 结果格式: rows（默认，每行一个对象）/ columnar（列式）
+     */
+    private String resultFormat;
+    
+    /**
+     * 是否并行生成多个SQL候选（为空时使用 nl2sql.speculative.enabled）
+     */
+    private Boolean speculative;
+    
     /**
      * 获取方言，默认为mysql
      */
@@ -84,4 +94,11 @@ public class NL2SqlRequest {
     public boolean shouldIncludeExplanation() {
         return includeExplanation == null || includeExplanation;
     }
+    
+    /**
+     * 是否使用列式结果格式
+     */
+    public boolean useColumnarResult() {
+        return "columnar".equalsIgnoreCase(resultFormat);
+    }
 }
@@ -1,5 +1,6 @@
 package com.example.rag.nl2sql.dto;
 
+import com.example.rag.nl2sql.entity.ColumnarResult;
 import lombok.AllArgsConstructor;
 import lombok.Builder;
 import lombok.Data;
@@ -48,6 +49,11 @@ public class NL2SqlResponse {
      */
     private List<Map<String, Object>> data;
     
+    /**
+     * 列式查询结果（resultFormat=columnar 时代替 data）
+     */
+    private ColumnarResult columnarData;
+    
     /**
      * 结果列名
      */
@@ -68,6 +74,26 @@ public class NL2SqlResponse {
      */
     private Long totalProcessingTimeMs;
     
+    /**
+     * 各阶段耗时（毫秒），按执行顺序：retrieval / fieldExtraction / sqlGeneration ...
+     */
+    private Map<String, Long> stageTimings;
+    
+    /**
+     * SQL是否来自缓存
+     */
+    private Boolean cacheHit;
+    
+    /**
+     * 使用的流程：fused（一次调用）/ two-stage（字段提取 + SQL生成）
+     */
+    private String pipelineMode;
+    
+    /**
+     * SQL未通过本地校验后的修复次数
+     */
+    private Integer repairAttempts;
+    
     /**
      * 错误信息
      */
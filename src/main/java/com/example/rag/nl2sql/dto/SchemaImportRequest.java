@@ -0,0 +1,36 @@
+package com.example.rag.nl2sql.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+/**
+ * 表结构导入请求
+ */
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class SchemaImportRequest {
+
+    /**
+     * 数据源名称（nl2sql.datasources 下配置的名称），同时作为导入表的 databaseName
+     */
+    private String databaseName;
+
+    /**
+     * schema 名称匹配模式（JDBC LIKE 语法），为空时导入所有非系统 schema
+     */
+    private String schemaPattern;
+
+    /**
+     * 表名匹配模式（JDBC LIKE 语法），默认 %
+     */
+    private String tablePattern;
+
+    /**
+     * 数据库类型，为空时使用驱动返回的产品名称
+     */
+    private String dbType;
+}
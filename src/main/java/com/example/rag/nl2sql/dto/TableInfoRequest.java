@@ -67,6 +67,11 @@ public class TableInfoRequest {
      */
     private List<Map<String, Object>> indexes;
     
+    /**
+     * 表行数估计
+     */
+    private Long estimatedRows;
+    
     /**
      * 元数据
      */
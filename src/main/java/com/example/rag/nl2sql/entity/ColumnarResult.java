@@ -0,0 +1,206 @@
+package com.example.rag.nl2sql.entity;
+
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.databind.JsonSerializer;
+import com.fasterxml.jackson.databind.SerializerProvider;
+import com.fasterxml.jackson.databind.annotation.JsonSerialize;
+
+import java.io.IOException;
+import java.sql.ResultSet;
+import java.sql.ResultSetMetaData;
+import java.sql.SQLException;
+import java.sql.Types;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.List;
+
+/**
+ * 列式查询结果
+ * 列名只保存一次，整数/浮点/布尔列使用原始类型数组，避免每行一个 Map 和装箱对象；
+ * 序列化为 {"columns":[...],"types":[...],"rowCount":n,"data":[[第1列的值...],[第2列的值...]]}
+ */
+@JsonSerialize(using = ColumnarResult.Serializer.class)
+public final class ColumnarResult {
+
+    /**
+     * 列的存储类型
+     */
+    public enum ColumnType {
+        LONG, DOUBLE, BOOLEAN, OBJECT
+    }
+
+    private final List<String> columns;
+    private final ColumnType[] types;
+    private final Object[] vectors;
+    private final BitSet[] nulls;
+    private int rowCount;
+    private int capacity;
+
+    private ColumnarResult(List<String> columns, ColumnType[] types, int initialCapacity) {
+        this.columns = columns;
+        this.capacity = initialCapacity;
+        this.types = types;
+        this.vectors = new Object[types.length];
+        this.nulls = new BitSet[types.length];
+        for (int i = 0; i < types.length; i++) {
+            vectors[i] = switch (types[i]) {
+                case LONG -> new long[initialCapacity];
+                case DOUBLE -> new double[initialCapacity];
+                case BOOLEAN -> new boolean[initialCapacity];
+                case OBJECT -> new Object[initialCapacity];
+            };
+            nulls[i] = new BitSet();
+        }
+    }
+
+    /**
+     * 从结果集读取全部行
+     *
+     * @param expectedRows 预估行数，用于初始化数组容量
+     */
+    public static ColumnarResult read(ResultSet rs, int expectedRows) throws SQLException {
+        ResultSetMetaData metaData = rs.getMetaData();
+        int columnCount = metaData.getColumnCount();
+        List<String> columns = new ArrayList<>(columnCount);
+        ColumnType[] types = new ColumnType[columnCount];
+        for (int i = 0; i < columnCount; i++) {
+            columns.add(metaData.getColumnLabel(i + 1));
+            types[i] = toColumnType(metaData.getColumnType(i + 1));
+        }
+
+        ColumnarResult result = new ColumnarResult(columns, types, Math.max(16, Math.min(expectedRows, 1024)));
+        while (rs.next()) {
+            result.readRow(rs);
+        }
+        return result;
+    }
+
+    private void readRow(ResultSet rs) throws SQLException {
+        ensureCapacity(rowCount + 1);
+        for (int i = 0; i < types.length; i++) {
+            int column = i + 1;
+            switch (types[i]) {
+                case LONG -> ((long[]) vectors[i])[rowCount] = rs.getLong(column);
+                case DOUBLE -> ((double[]) vectors[i])[rowCount] = rs.getDouble(column);
+                case BOOLEAN -> ((boolean[]) vectors[i])[rowCount] = rs.getBoolean(column);
+                case OBJECT -> ((Object[]) vectors[i])[rowCount] = rs.getObject(column);
+            }
+            if (rs.wasNull()) {
+                nulls[i].set(rowCount);
+            }
+        }
+        rowCount++;
+    }
+
+    private void ensureCapacity(int required) {
+        if (required <= capacity) {
+            return;
+        }
+        capacity = Math.max(required, capacity * 2);
+        for (int i = 0; i < vectors.length; i++) {
+            vectors[i] = switch (types[i]) {
+                case LONG -> Arrays.copyOf((long[]) vectors[i], capacity);
+                case DOUBLE -> Arrays.copyOf((double[]) vectors[i], capacity);
+                case BOOLEAN -> Arrays.copyOf((boolean[]) vectors[i], capacity);
+                case OBJECT -> Arrays.copyOf((Object[]) vectors[i], capacity);
+            };
+        }
+    }
+
+    private static ColumnType toColumnType(int sqlType) {
+        return switch (sqlType) {
+            case Types.TINYINT, Types.SMALLINT, Types.INTEGER, Types.BIGINT -> ColumnType.LONG;
+            case Types.REAL, Types.FLOAT, Types.DOUBLE -> ColumnType.DOUBLE;
+            case Types.BIT, Types.BOOLEAN -> ColumnType.BOOLEAN;
+            // DECIMAL/NUMERIC 保留 BigDecimal 精度，其余类型按驱动返回的对象保存
+            default -> ColumnType.OBJECT;
+        };
+    }
+
+    public List<String> getColumns() {
+        return columns;
+    }
+
+    public int getRowCount() {
+        return rowCount;
+    }
+
+    public ColumnType getType(int column) {
+        return types[column];
+    }
+
+    public boolean isNull(int column, int row) {
+        return nulls[column].get(row);
+    }
+
+    public long getLong(int column, int row) {
+        return ((long[]) vectors[column])[row];
+    }
+
+    public double getDouble(int column, int row) {
+        return ((double[]) vectors[column])[row];
+    }
+
+    public boolean getBoolean(int column, int row) {
+        return ((boolean[]) vectors[column])[row];
+    }
+
+    public Object getObject(int column, int row) {
+        if (isNull(column, row)) {
+            return null;
+        }
+        return switch (types[column]) {
+            case LONG -> getLong(column, row);
+            case DOUBLE -> getDouble(column, row);
+            case BOOLEAN -> getBoolean(column, row);
+            case OBJECT -> ((Object[]) vectors[column])[row];
+        };
+    }
+
+    /**
+     * 直接按列写出原始类型值，不经过中间对象
+     */
+    public static class Serializer extends JsonSerializer<ColumnarResult> {
+
+        @Override
+        public void serialize(ColumnarResult result, JsonGenerator json, SerializerProvider provider) throws IOException {
+            json.writeStartObject();
+
+            json.writeArrayFieldStart("columns");
+            for (String column : result.columns) {
+                json.writeString(column);
+            }
+            json.writeEndArray();
+
+            json.writeArrayFieldStart("types");
+            for (ColumnType type : result.types) {
+                json.writeString(type.name());
+            }
+            json.writeEndArray();
+
+            json.writeNumberField("rowCount", result.rowCount);
+
+            json.writeArrayFieldStart("data");
+            for (int column = 0; column < result.types.length; column++) {
+                json.writeStartArray();
+                for (int row = 0; row < result.rowCount; row++) {
+                    if (result.isNull(column, row)) {
+                        json.writeNull();
+                        continue;
+                    }
+                    switch (result.types[column]) {
+                        case LONG -> json.writeNumber(result.getLong(column, row));
+                        case DOUBLE -> json.writeNumber(result.getDouble(column, row));
+                        case BOOLEAN -> json.writeBoolean(result.getBoolean(column, row));
+                        case OBJECT -> provider.defaultSerializeValue(((Object[]) result.vectors[column])[row], json);
+                    }
+                }
+                json.writeEndArray();
+            }
+            json.writeEndArray();
+
+            json.writeEndObject();
+        }
+    }
+}
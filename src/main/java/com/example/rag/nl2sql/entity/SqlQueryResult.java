@@ -49,6 +49,11 @@ public class SqlQueryResult {
      */
     private List<Map<String, Object>> data;
     
+    /**
+     * 列式查询结果（resultFormat=columnar 时代替 data）
+     */
+    private ColumnarResult columnarData;
+    
     /**
      * 结果列名
      */
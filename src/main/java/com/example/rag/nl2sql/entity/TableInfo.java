@@ -14,7 +14,7 @@ import java.util.Map;
  * 存储数据库表的结构信息，包括表描述（用于向量化检索）和字段信息
  */
 @Data
-@Builder
+@Builder(toBuilder = true)
 @NoArgsConstructor
 @AllArgsConstructor
 public class TableInfo {
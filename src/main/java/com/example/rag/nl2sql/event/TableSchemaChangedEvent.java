@@ -0,0 +1,15 @@
+package com.example.rag.nl2sql.event;
+
+/**
+ * 表结构变更事件，由 TableSchemaService 在表创建、更新、删除后发布
+ *
+ * @param tableId 表ID
+ * @param tableName 表名
+ * @param type 变更类型
+ */
+public record TableSchemaChangedEvent(String tableId, String tableName, ChangeType type) {
+
+    public enum ChangeType {
+        CREATED, UPDATED, DELETED
+    }
+}
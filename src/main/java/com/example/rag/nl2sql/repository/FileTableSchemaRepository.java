@@ -0,0 +1,248 @@
+package com.example.rag.nl2sql.repository;
+
+import com.example.rag.nl2sql.entity.TableInfo;
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import lombok.extern.slf4j.Slf4j;
+
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.List;
+import java.util.Optional;
+
+/**
+ * 基于本地文件的表结构存储
+ * 快照文件（tables.snapshot）每行一张表，追加日志（tables.log）每行一次写入或删除；
+ * 第一次访问时加载快照并重放日志，日志条数达到阈值时重写快照并清空日志。
+ * 加载后的数据和索引由内存存储维护
+ */
+@Slf4j
+public class FileTableSchemaRepository implements TableSchemaRepository, Closeable {
+
+    private static final String OP_PUT = "put";
+    private static final String OP_DELETE = "delete";
+
+    private final Path snapshotFile;
+    private final Path logFile;
+    private final int compactThreshold;
+    private final boolean fsync;
+    private final ObjectMapper objectMapper;
+    private final InMemoryTableSchemaRepository delegate = new InMemoryTableSchemaRepository();
+
+    private volatile boolean loaded;
+    private FileChannel logChannel;
+    private int logEntries;
+
+    /**
+     * @param directory 存储目录
+     * @param compactThreshold 日志条数达到该值时重写快照
+     * @param fsync 每次追加日志后是否强制刷盘
+     */
+    public FileTableSchemaRepository(Path directory, int compactThreshold, boolean fsync, ObjectMapper objectMapper) {
+        this.snapshotFile = directory.resolve("tables.snapshot");
+        this.logFile = directory.resolve("tables.log");
+        this.compactThreshold = compactThreshold;
+        this.fsync = fsync;
+        this.objectMapper = objectMapper;
+    }
+
+    @Override
+    public Optional<TableInfo> findById(String id) {
+        ensureLoaded();
+        return delegate.findById(id);
+    }
+
+    @Override
+    public Optional<TableInfo> findByName(String tableName) {
+        ensureLoaded();
+        return delegate.findByName(tableName);
+    }
+
+    @Override
+    public Optional<TableInfo> findByQualifiedName(String databaseName, String schemaName, String tableName) {
+        ensureLoaded();
+        return delegate.findByQualifiedName(databaseName, schemaName, tableName);
+    }
+
+    @Override
+    public List<TableInfo> findAll() {
+        ensureLoaded();
+        return delegate.findAll();
+    }
+
+    @Override
+    public List<TableInfo> findByDatabase(String databaseName) {
+        ensureLoaded();
+        return delegate.findByDatabase(databaseName);
+    }
+
+    @Override
+    public List<TableInfo> findByDbType(String dbType) {
+        ensureLoaded();
+        return delegate.findByDbType(dbType);
+    }
+
+    @Override
+    public synchronized TableInfo save(TableInfo tableInfo) {
+        ensureLoaded();
+        // 先更新内存再追加日志：追加触发的快照重写基于内存数据，必须已包含本次写入
+        TableInfo saved = delegate.save(tableInfo);
+        append(new LogEntry(OP_PUT, tableInfo, null));
+        return saved;
+    }
+
+    @Override
+    public synchronized Optional<TableInfo> delete(String id) {
+        ensureLoaded();
+        Optional<TableInfo> removed = delegate.delete(id);
+        if (removed.isPresent()) {
+            append(new LogEntry(OP_DELETE, null, id));
+        }
+        return removed;
+    }
+
+    @Override
+    public int count() {
+        ensureLoaded();
+        return delegate.count();
+    }
+
+    @Override
+    public synchronized void close() throws IOException {
+        if (logChannel != null) {
+            logChannel.force(true);
+            logChannel.close();
+            logChannel = null;
+        }
+    }
+
+    // ========== 加载 ==========
+
+    private void ensureLoaded() {
+        if (loaded) {
+            return;
+        }
+        synchronized (this) {
+            if (loaded) {
+                return;
+            }
+            try {
+                load();
+            } catch (IOException e) {
+                throw new UncheckedIOException("Failed to load table schemas from " + snapshotFile.getParent(), e);
+            }
+            loaded = true;
+        }
+    }
+
+    private void load() throws IOException {
+        long start = System.currentTimeMillis();
+        Files.createDirectories(snapshotFile.getParent());
+
+        int snapshotTables = 0;
+        if (Files.exists(snapshotFile)) {
+            try (BufferedReader reader = Files.newBufferedReader(snapshotFile, StandardCharsets.UTF_8)) {
+                String line;
+                while ((line = reader.readLine()) != null) {
+                    if (!line.isBlank()) {
+                        delegate.save(objectMapper.readValue(line, TableInfo.class));
+                        snapshotTables++;
+                    }
+                }
+            }
+        }
+
+        int replayed = 0;
+        long validBytes = 0;
+        if (Files.exists(logFile)) {
+            try (BufferedReader reader = Files.newBufferedReader(logFile, StandardCharsets.UTF_8)) {
+                String line;
+                while ((line = reader.readLine()) != null) {
+                    LogEntry entry;
+                    try {
+                        entry = objectMapper.readValue(line, LogEntry.class);
+                    } catch (JsonProcessingException e) {
+                        // 进程中断时最后一行可能不完整，丢弃并截断
+                        log.warn("Ignoring corrupt schema log entry at byte {}: {}", validBytes, e.getOriginalMessage());
+                        break;
+                    }
+                    apply(entry);
+                    replayed++;
+                    validBytes += line.getBytes(StandardCharsets.UTF_8).length + 1;
+                }
+            }
+        }
+
+        logChannel = FileChannel.open(logFile, StandardOpenOption.CREATE, StandardOpenOption.WRITE);
+        logChannel.truncate(validBytes);
+        logChannel.position(validBytes);
+        logEntries = replayed;
+
+        log.info("Loaded {} table schemas ({} from snapshot, {} log entries replayed) in {} ms",
+                delegate.count(), snapshotTables, replayed, System.currentTimeMillis() - start);
+    }
+
+    private void apply(LogEntry entry) {
+        switch (entry.op()) {
+            case OP_PUT -> delegate.save(entry.table());
+            case OP_DELETE -> delegate.delete(entry.id());
+            default -> throw new IllegalStateException("Unknown schema log operation: " + entry.op());
+        }
+    }
+
+    // ========== 写入 ==========
+
+    private void append(LogEntry entry) {
+        try {
+            byte[] line = (objectMapper.writeValueAsString(entry) + "\n").getBytes(StandardCharsets.UTF_8);
+            ByteBuffer buffer = ByteBuffer.wrap(line);
+            while (buffer.hasRemaining()) {
+                logChannel.write(buffer);
+            }
+            if (fsync) {
+                logChannel.force(false);
+            }
+            if (++logEntries >= compactThreshold) {
+                compact();
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException("Failed to append table schema log", e);
+        }
+    }
+
+    /**
+     * 重写快照并清空日志
+     * 先写临时文件再原子替换；替换后、清空日志前中断时，重放的日志与快照内容一致，不影响结果
+     */
+    private void compact() throws IOException {
+        long start = System.currentTimeMillis();
+        Path tmp = snapshotFile.resolveSibling(snapshotFile.getFileName() + ".tmp");
+        try (BufferedWriter writer = Files.newBufferedWriter(tmp, StandardCharsets.UTF_8)) {
+            for (TableInfo table : delegate.findAll()) {
+                writer.write(objectMapper.writeValueAsString(table));
+                writer.newLine();
+            }
+        }
+        try (FileChannel channel = FileChannel.open(tmp, StandardOpenOption.WRITE)) {
+            channel.force(true);
+        }
+        Files.move(tmp, snapshotFile, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+
+        logChannel.truncate(0);
+        logChannel.position(0);
+        logEntries = 0;
+        log.info("Table schema snapshot written: {} tables in {} ms", delegate.count(), System.currentTimeMillis() - start);
+    }
+
+    record LogEntry(String op, TableInfo table, String id) {}
+}
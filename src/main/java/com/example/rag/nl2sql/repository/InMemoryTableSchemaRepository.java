@@ -0,0 +1,168 @@
+package com.example.rag.nl2sql.repository;
+
+import com.example.rag.nl2sql.entity.ColumnInfo;
+import com.example.rag.nl2sql.entity.TableInfo;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.stream.Collectors;
+
+/**
+ * 内存表结构存储
+ * 数据库名、数据库类型建立二级索引，避免按库查询时全量扫描；
+ * 数据类型、库名等高度重复的字符串在写入时去重，大量表时显著减少堆占用
+ */
+public class InMemoryTableSchemaRepository implements TableSchemaRepository {
+
+    // 表ID -> 表信息
+    private final Map<String, TableInfo> tables = new ConcurrentHashMap<>();
+
+    // 表名 -> 表ID
+    private final Map<String, String> nameIndex = new ConcurrentHashMap<>();
+
+    // 数据库名 + schema名 + 表名 -> 表ID
+    private final Map<String, String> qualifiedNameIndex = new ConcurrentHashMap<>();
+
+    // 数据库名 -> 表ID
+    private final Map<String, Set<String>> databaseIndex = new ConcurrentHashMap<>();
+
+    // 数据库类型（小写） -> 表ID
+    private final Map<String, Set<String>> dbTypeIndex = new ConcurrentHashMap<>();
+
+    private final Map<String, String> internedStrings = new ConcurrentHashMap<>();
+
+    @Override
+    public Optional<TableInfo> findById(String id) {
+        return Optional.ofNullable(tables.get(id));
+    }
+
+    @Override
+    public Optional<TableInfo> findByName(String tableName) {
+        String id = nameIndex.get(tableName);
+        return id != null ? findById(id) : Optional.empty();
+    }
+
+    @Override
+    public Optional<TableInfo> findByQualifiedName(String databaseName, String schemaName, String tableName) {
+        String id = qualifiedNameIndex.get(qualifiedName(databaseName, schemaName, tableName));
+        return id != null ? findById(id) : Optional.empty();
+    }
+
+    private static String qualifiedName(String databaseName, String schemaName, String tableName) {
+        return Objects.toString(databaseName, "") + '\u0000' + Objects.toString(schemaName, "") + '\u0000' + tableName;
+    }
+
+    @Override
+    public List<TableInfo> findAll() {
+        return new ArrayList<>(tables.values());
+    }
+
+    @Override
+    public List<TableInfo> findByDatabase(String databaseName) {
+        return lookup(databaseIndex, databaseName);
+    }
+
+    @Override
+    public List<TableInfo> findByDbType(String dbType) {
+        return lookup(dbTypeIndex, dbType.toLowerCase(Locale.ROOT));
+    }
+
+    private List<TableInfo> lookup(Map<String, Set<String>> index, String key) {
+        Set<String> ids = index.get(key);
+        if (ids == null) {
+            return new ArrayList<>();
+        }
+        return ids.stream()
+                .map(tables::get)
+                .filter(Objects::nonNull)
+                .collect(Collectors.toList());
+    }
+
+    @Override
+    public synchronized TableInfo save(TableInfo tableInfo) {
+        intern(tableInfo);
+        TableInfo previous = tables.put(tableInfo.getId(), tableInfo);
+        if (previous != null) {
+            unindex(previous);
+        }
+        index(tableInfo);
+        return tableInfo;
+    }
+
+    @Override
+    public synchronized Optional<TableInfo> delete(String id) {
+        TableInfo removed = tables.remove(id);
+        if (removed != null) {
+            unindex(removed);
+        }
+        return Optional.ofNullable(removed);
+    }
+
+    @Override
+    public int count() {
+        return tables.size();
+    }
+
+    private void index(TableInfo table) {
+        nameIndex.put(table.getTableName(), table.getId());
+        qualifiedNameIndex.put(qualifiedName(table.getDatabaseName(), table.getSchemaName(), table.getTableName()),
+                table.getId());
+        if (table.getDatabaseName() != null) {
+            databaseIndex.computeIfAbsent(table.getDatabaseName(), k -> ConcurrentHashMap.newKeySet()).add(table.getId());
+        }
+        if (table.getDbType() != null) {
+            dbTypeIndex.computeIfAbsent(table.getDbType().toLowerCase(Locale.ROOT), k -> ConcurrentHashMap.newKeySet())
+                    .add(table.getId());
+        }
+    }
+
+    private void unindex(TableInfo table) {
+        nameIndex.remove(table.getTableName(), table.getId());
+        qualifiedNameIndex.remove(qualifiedName(table.getDatabaseName(), table.getSchemaName(), table.getTableName()),
+                table.getId());
+        if (table.getDatabaseName() != null) {
+            removeFromIndex(databaseIndex, table.getDatabaseName(), table.getId());
+        }
+        if (table.getDbType() != null) {
+            removeFromIndex(dbTypeIndex, table.getDbType().toLowerCase(Locale.ROOT), table.getId());
+        }
+    }
+
+    private static void removeFromIndex(Map<String, Set<String>> index, String key, String id) {
+        index.computeIfPresent(key, (k, ids) -> {
+            ids.remove(id);
+            return ids.isEmpty() ? null : ids;
+        });
+    }
+
+    /**
+     * 对重复度高的字符串去重
+     */
+    private void intern(TableInfo table) {
+        table.setDbType(intern(table.getDbType()));
+        table.setDatabaseName(intern(table.getDatabaseName()));
+        table.setSchemaName(intern(table.getSchemaName()));
+        if (table.getColumns() == null) {
+            return;
+        }
+        for (ColumnInfo column : table.getColumns()) {
+            column.setTableId(intern(column.getTableId()));
+            column.setDataType(intern(column.getDataType()));
+            column.setForeignKeyTable(intern(column.getForeignKeyTable()));
+            column.setForeignKeyColumn(intern(column.getForeignKeyColumn()));
+            column.setCharacterSet(intern(column.getCharacterSet()));
+            column.setCollation(intern(column.getCollation()));
+            column.setDefaultValue(intern(column.getDefaultValue()));
+        }
+    }
+
+    private String intern(String value) {
+        return value == null ? null : internedStrings.computeIfAbsent(value, v -> v);
+    }
+}
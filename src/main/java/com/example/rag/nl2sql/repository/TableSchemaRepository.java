@@ -0,0 +1,49 @@
+package com.example.rag.nl2sql.repository;
+
+import com.example.rag.nl2sql.entity.TableInfo;
+
+import java.util.List;
+import java.util.Optional;
+
+/**
+ * 表结构存储
+ * 按表ID保存表信息，并维护表名、数据库名、数据库类型的二级索引
+ */
+public interface TableSchemaRepository {
+
+    Optional<TableInfo> findById(String id);
+
+    /**
+     * 按表名查找；不同库或 schema 下有同名表时返回最后写入的一张
+     */
+    Optional<TableInfo> findByName(String tableName);
+
+    /**
+     * 按 (数据库名, schema名, 表名) 查找，库名和 schema 名为 null 时按空值匹配
+     */
+    Optional<TableInfo> findByQualifiedName(String databaseName, String schemaName, String tableName);
+
+    List<TableInfo> findAll();
+
+    /**
+     * 按数据库名称查找（精确匹配）
+     */
+    List<TableInfo> findByDatabase(String databaseName);
+
+    /**
+     * 按数据库类型查找（忽略大小写）
+     */
+    List<TableInfo> findByDbType(String dbType);
+
+    /**
+     * 保存表信息，相同ID视为覆盖；表名变更时同步更新索引
+     */
+    TableInfo save(TableInfo tableInfo);
+
+    /**
+     * 删除表信息，返回被删除的表
+     */
+    Optional<TableInfo> delete(String id);
+
+    int count();
+}
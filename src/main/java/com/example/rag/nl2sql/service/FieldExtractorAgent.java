@@ -2,18 +2,20 @@ package com.example.rag.nl2sql.service;
 
 import com.example.rag.nl2sql.entity.ColumnInfo;
 import com.example.rag.nl2sql.entity.TableInfo;
+import com.example.rag.prompt.PromptCacheMetrics;
+import com.example.rag.prompt.PromptTemplateRegistry;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.ai.chat.client.ChatClient;
 import org.springframework.ai.chat.messages.Message;
 import org.springframework.ai.chat.messages.SystemMessage;
 import org.springframework.ai.chat.messages.UserMessage;
+import org.springframework.ai.chat.model.ChatResponse;
 import org.springframework.ai.chat.prompt.Prompt;
-import org.springframework.beans.factory.annotation.Value;
-import org.springframework.core.io.Resource;
 import org.springframework.stereotype.Service;
 
 import java.util.ArrayList;
+import java.util.Comparator;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
@@ -27,10 +29,15 @@ import java.util.Map;
 @RequiredArgsConstructor
 public class FieldExtractorAgent {
     
+    private static final String SYSTEM_TEMPLATE = "nl2sql/field-extractor-prompt";
+    private static final String USER_TEMPLATE = "nl2sql/field-extractor-user";
+    private static final String CALLER = "field-extractor";
+    
     private final ChatClient chatClient;
     
-    @Value("classpath:/prompts/nl2sql/field-extractor-prompt.st")
-    private Resource fieldExtractorPrompt;
+    private final PromptTemplateRegistry promptTemplates;
+    
+    private final PromptCacheMetrics promptCacheMetrics;
     
     /**
      * 从候选表中提取相关字段
@@ -64,9 +71,11 @@ public class FieldExtractorAgent {
         
         Prompt prompt = new Prompt(messages);
         
-        String response = chatClient.prompt(prompt)
+        ChatResponse chatResponse = chatClient.prompt(prompt)
                 .call()
-                .content();
+                .chatResponse();
+        promptCacheMetrics.record(CALLER, chatResponse);
+        String response = chatResponse.getResult().getOutput().getContent();
         
         log.debug("Field extractor response: {}", response);
         
@@ -80,7 +89,11 @@ public class FieldExtractorAgent {
     private String buildCandidateFieldsContext(List<TableInfo> tables) {
         StringBuilder context = new StringBuilder();
         
-        for (TableInfo table : tables) {
+        // 表按名称排序，使相同的候选表得到完全相同的上下文
+        List<TableInfo> sorted = tables.stream()
+                .sorted(Comparator.comparing(TableInfo::getTableName))
+                .toList();
+        for (TableInfo table : sorted) {
             context.append("\n=== 表: ").append(table.getTableName());
             if (table.getTableAlias() != null && !table.getTableAlias().isEmpty()) {
                 context.append(" (").append(table.getTableAlias()).append(")");
@@ -113,51 +126,17 @@ public class FieldExtractorAgent {
     }
     
     /**
-     * 构建系统提示词
+     * 构建系统提示词，只依赖方言，按方言缓存
      */
     private String buildSystemPrompt(String dialect) {
-        return String.format("""
-            你是一个专业的数据库字段提取专家。你的任务是从候选表字段中，
-            识别并提取与用户自然语言查询最相关的字段。
-            
-            规则：
-            1. 仔细分析用户的查询意图
-            2. 从候选表中选择最相关的字段
-            3. 考虑字段的业务含义、数据类型和关联关系
-            4. 必须包含用于JOIN操作的外键字段
-            5. 优先选择有明确业务含义的字段
-            6. 返回格式必须是JSON数组
-            
-            SQL方言: %s
-            
-            输出格式：
-            {
-              "reasoning": "简要说明选择这些字段的理由",
-              "fields": [
-                {
-                  "tableName": "表名",
-                  "columnName": "字段名",
-                  "relevance": "high/medium/low",
-                  "usage": "说明该字段在查询中的用途"
-                }
-              ]
-            }
-            """, dialect);
+        return promptTemplates.renderStatic(SYSTEM_TEMPLATE, Map.of("dialect", dialect));
     }
     
     /**
      * 构建用户提示词
      */
     private String buildUserPrompt(String naturalQuery, String candidateFieldsContext) {
-        return String.format("""
-            用户查询: %s
-            
-            候选表和字段信息:
-            %s
-            
-            请分析用户查询，从候选字段中提取最相关的字段。
-            只返回JSON格式的结果，不要包含其他解释文字。
-            """, naturalQuery, candidateFieldsContext);
+        return promptTemplates.render(USER_TEMPLATE, Map.of("query", naturalQuery, "context", candidateFieldsContext));
     }
     
     /**
@@ -0,0 +1,159 @@
+package com.example.rag.nl2sql.service;
+
+import com.example.rag.nl2sql.entity.ColumnInfo;
+import com.example.rag.nl2sql.entity.TableInfo;
+import com.example.rag.util.TermAnalyzer;
+import com.example.rag.util.VectorMath;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.ai.embedding.EmbeddingModel;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * 本地字段相关性排序
+ * 不调用大模型，按 词法重合度 + 问题与字段描述的向量相似度 + 主外键加分 为候选字段打分；
+ * 结果确定，同样的输入总是得到同样的字段列表
+ */
+@Slf4j
+@Service
+@RequiredArgsConstructor
+public class LocalFieldRanker {
+
+    private final EmbeddingModel embeddingModel;
+
+    @Value("${nl2sql.field-extractor.local.lexical-weight:1.0}")
+    private double lexicalWeight;
+
+    @Value("${nl2sql.field-extractor.local.embedding-weight:1.0}")
+    private double embeddingWeight;
+
+    @Value("${nl2sql.field-extractor.local.key-bonus:0.3}")
+    private double keyBonus;
+
+    @Value("${nl2sql.field-extractor.local.embedding-enabled:true}")
+    private boolean embeddingEnabled;
+
+    /**
+     * 为候选表的所有字段打分并按相关性排序，主外键字段（JOIN 需要）总是保留
+     *
+     * @param limit 最多返回的字段数
+     */
+    public List<ColumnInfo> rank(String naturalQuery, List<TableInfo> candidateTables, int limit) {
+        List<TableColumn> columns = new ArrayList<>();
+        for (TableInfo table : candidateTables) {
+            if (table.getColumns() != null) {
+                table.getColumns().forEach(column -> columns.add(new TableColumn(table, column)));
+            }
+        }
+        if (columns.isEmpty()) {
+            return List.of();
+        }
+
+        Set<String> queryTerms = new HashSet<>(TermAnalyzer.analyze(naturalQuery));
+        double[] similarities = embeddingSimilarities(naturalQuery, columns);
+
+        List<ScoredColumn> scored = new ArrayList<>(columns.size());
+        for (int i = 0; i < columns.size(); i++) {
+            TableColumn tc = columns.get(i);
+            boolean key = isKey(tc.table(), tc.column());
+            double score = lexicalWeight * lexicalScore(queryTerms, tc)
+                    + embeddingWeight * similarities[i]
+                    + (key ? keyBonus : 0);
+            scored.add(new ScoredColumn(tc.column(), score, key, i));
+        }
+
+        // 分数相同时保持表和字段的原始顺序，保证结果稳定
+        scored.sort(Comparator.comparingDouble(ScoredColumn::score).reversed()
+                .thenComparingInt(ScoredColumn::position));
+
+        List<ColumnInfo> selected = new ArrayList<>();
+        for (ScoredColumn column : scored) {
+            if (column.key() || selected.size() < limit) {
+                selected.add(column.column());
+            }
+        }
+        log.debug("Local field ranking selected {}/{} columns", selected.size(), columns.size());
+        return selected;
+    }
+
+    /**
+     * 问题词在字段名、别名、描述和表名中出现的比例
+     */
+    private static double lexicalScore(Set<String> queryTerms, TableColumn tc) {
+        if (queryTerms.isEmpty()) {
+            return 0;
+        }
+        ColumnInfo column = tc.column();
+        Set<String> columnTerms = new HashSet<>();
+        columnTerms.addAll(TermAnalyzer.analyze(splitIdentifier(column.getColumnName())));
+        columnTerms.addAll(TermAnalyzer.analyze(column.getColumnAlias()));
+        columnTerms.addAll(TermAnalyzer.analyze(column.getDescription()));
+
+        Set<String> tableTerms = new HashSet<>();
+        tableTerms.addAll(TermAnalyzer.analyze(splitIdentifier(tc.table().getTableName())));
+        tableTerms.addAll(TermAnalyzer.analyze(tc.table().getTableAlias()));
+
+        int columnMatches = 0;
+        int tableMatches = 0;
+        for (String term : queryTerms) {
+            if (columnTerms.contains(term)) {
+                columnMatches++;
+            } else if (tableTerms.contains(term)) {
+                tableMatches++;
+            }
+        }
+        // 命中表名的词只说明表相关，权重低于命中字段本身
+        return (columnMatches + 0.25 * tableMatches) / queryTerms.size();
+    }
+
+    /**
+     * 一次批量 embedding 调用得到问题与每个字段描述的余弦相似度
+     */
+    private double[] embeddingSimilarities(String naturalQuery, List<TableColumn> columns) {
+        double[] similarities = new double[columns.size()];
+        if (!embeddingEnabled) {
+            return similarities;
+        }
+        try {
+            List<String> texts = new ArrayList<>(columns.size() + 1);
+            texts.add(naturalQuery);
+            for (TableColumn tc : columns) {
+                texts.add(tc.table().getTableName() + "." + tc.column().toDescription());
+            }
+            List<float[]> vectors = embeddingModel.embed(texts);
+            float[] query = vectors.get(0);
+            for (int i = 0; i < columns.size(); i++) {
+                similarities[i] = VectorMath.cosine(query, vectors.get(i + 1));
+            }
+        } catch (Exception e) {
+            log.warn("Embedding similarity unavailable for local field ranking, using lexical score only: {}",
+                    e.getMessage());
+        }
+        return similarities;
+    }
+
+    private static boolean isKey(TableInfo table, ColumnInfo column) {
+        return Boolean.TRUE.equals(column.getIsPrimaryKey())
+                || Boolean.TRUE.equals(column.getIsForeignKey())
+                || column.getColumnName().equalsIgnoreCase(table.getPrimaryKey())
+                || (table.getForeignKeys() != null && table.getForeignKeys().containsKey(column.getColumnName()));
+    }
+
+    /**
+     * userName / user_name -> user name
+     */
+    private static String splitIdentifier(String identifier) {
+        return identifier == null ? null : identifier.replaceAll("([a-z0-9])([A-Z])", "$1 $2").replace('_', ' ');
+    }
+
+    private record TableColumn(TableInfo table, ColumnInfo column) {}
+
+    private record ScoredColumn(ColumnInfo column, double score, boolean key, int position) {}
+}
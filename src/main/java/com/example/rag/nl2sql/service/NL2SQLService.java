@@ -0,0 +1,404 @@
+package com.example.rag.nl2sql.service;
+
+import com.example.rag.nl2sql.dto.NL2SqlRequest;
+import com.example.rag.nl2sql.dto.NL2SqlResponse;
+import com.example.rag.nl2sql.entity.ColumnInfo;
+import com.example.rag.nl2sql.entity.ColumnarResult;
+import com.example.rag.nl2sql.entity.TableInfo;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Supplier;
+
+/**
+ * NL2SQL 流程编排服务
+ * 依次执行：表检索 -> 字段提取 -> SQL生成 -> 执行（可选），并记录每个阶段的耗时
+ */
+@Slf4j
+@Service
+@RequiredArgsConstructor
+public class NL2SQLService {
+
+    public static final String STAGE_CACHE_LOOKUP = "cacheLookup";
+    public static final String STAGE_RETRIEVAL = "retrieval";
+    public static final String STAGE_FIELD_EXTRACTION = "fieldExtraction";
+    public static final String STAGE_SQL_GENERATION = "sqlGeneration";
+    public static final String STAGE_VALIDATION = "validation";
+    public static final String STAGE_EXECUTION = "execution";
+
+    private final SchemaEmbeddingService schemaEmbeddingService;
+    private final TableSchemaService tableSchemaService;
+    private final FieldExtractorAgent fieldExtractorAgent;
+    private final LocalFieldRanker localFieldRanker;
+    private final SqlGeneratorAgent sqlGeneratorAgent;
+    private final SpeculativeSqlGenerator speculativeSqlGenerator;
+    private final SqlValidator sqlValidator;
+    private final PipelinePolicy pipelinePolicy;
+    private final SqlExecutionService sqlExecutionService;
+    private final SqlCacheService sqlCacheService;
+
+    @Value("${nl2sql.default-dialect:mysql}")
+    private String defaultDialect;
+
+    @Value("${nl2sql.top-k:5}")
+    private int topK;
+
+    @Value("${nl2sql.retrieval.mode:column}")
+    private String retrievalMode;
+
+    @Value("${nl2sql.retrieval.column-top-k:50}")
+    private int columnTopK;
+
+    @Value("${nl2sql.sql-generator.validation-enabled:true}")
+    private boolean validationEnabled;
+
+    @Value("${nl2sql.sql-generator.max-repair-attempts:2}")
+    private int maxRepairAttempts;
+
+    @Value("${nl2sql.speculative.enabled:false}")
+    private boolean speculativeEnabled;
+
+    @Value("${nl2sql.execution.default-database:}")
+    private String defaultDatabase;
+
+    @Value("${nl2sql.field-extractor.enabled:true}")
+    private boolean fieldExtractorEnabled;
+
+    @Value("${nl2sql.field-extractor.mode:adaptive}")
+    private String fieldExtractorMode;
+
+    @Value("${nl2sql.field-extractor.max-fields:50}")
+    private int maxFields;
+
+    /**
+     * 自然语言转SQL，请求 execute=true 时同时执行查询
+     */
+    public NL2SqlResponse query(NL2SqlRequest request) {
+        NL2SqlResponse response = generate(request);
+        if (!request.shouldExecute() || !"generated".equals(response.getStatus())) {
+            return response;
+        }
+
+        String databaseName = resolveDatabase(request, response);
+        long start = System.nanoTime();
+        try {
+            if (request.useColumnarResult()) {
+                ColumnarResult result = sqlExecutionService.queryColumnar(databaseName,
+                        response.getGeneratedSql(), request.getMaxRowsOrDefault());
+                response.setColumns(result.getColumns());
+                response.setColumnarData(result);
+                response.setRowCount(result.getRowCount());
+                response.setExecutionTimeMs(elapsedMs(start));
+            } else {
+                SqlExecutionService.QueryResult result = sqlExecutionService.query(databaseName,
+                        response.getGeneratedSql(), request.getMaxRowsOrDefault());
+                response.setColumns(result.columns());
+                response.setData(result.rows());
+                response.setRowCount(result.rows().size());
+                response.setExecutionTimeMs(result.executionTimeMs());
+            }
+            response.setStatus("success");
+        } catch (Exception e) {
+            log.error("SQL execution failed on {}: {}", databaseName, e.getMessage());
+            response.setStatus("error");
+            response.setErrorMessage(e.getMessage());
+        }
+        long executionMs = elapsedMs(start);
+        response.getStageTimings().put(STAGE_EXECUTION, executionMs);
+        response.setTotalProcessingTimeMs(response.getTotalProcessingTimeMs() + executionMs);
+        return response;
+    }
+
+    /**
+     * 确定执行SQL的数据库：请求指定的库，其次是所用表所在的库，最后是默认库
+     */
+    public String resolveDatabase(NL2SqlRequest request, NL2SqlResponse generated) {
+        if (request.getDatabaseName() != null) {
+            return request.getDatabaseName();
+        }
+        if (generated.getUsedTables() != null) {
+            for (NL2SqlResponse.TableInfoDTO table : generated.getUsedTables()) {
+                TableInfo info = tableSchemaService.getTableByName(table.getTableName());
+                if (info != null && sqlExecutionService.hasDatabase(info.getDatabaseName())) {
+                    return info.getDatabaseName();
+                }
+            }
+        }
+        return defaultDatabase;
+    }
+
+    /**
+     * 生成阶段用于 EXPLAIN 的数据库：请求指定的库，其次是候选表所在的库，最后是默认库
+     */
+    private String candidateDatabase(NL2SqlRequest request, List<TableInfo> tables) {
+        if (request.getDatabaseName() != null) {
+            return request.getDatabaseName();
+        }
+        for (TableInfo table : tables) {
+            if (sqlExecutionService.hasDatabase(table.getDatabaseName())) {
+                return table.getDatabaseName();
+            }
+        }
+        return defaultDatabase;
+    }
+
+    /**
+     * 自然语言转SQL，只生成不执行
+     */
+    public NL2SqlResponse generate(NL2SqlRequest request) {
+        if (request.getQuery() == null || request.getQuery().isBlank()) {
+            throw new IllegalArgumentException("query must not be empty");
+        }
+
+        String id = UUID.randomUUID().toString();
+        String query = request.getQuery();
+        String dialect = request.getDialect() != null ? request.getDialect() : defaultDialect;
+        Map<String, Long> stageTimings = new LinkedHashMap<>();
+        long start = System.nanoTime();
+
+        try {
+            // 0. 查找缓存，命中时跳过检索和两次大模型调用
+            SqlCacheService.CacheScope scope = cacheScope(request, dialect);
+            Optional<SqlCacheService.CachedSql> cached = timed(STAGE_CACHE_LOOKUP, stageTimings,
+                    () -> sqlCacheService.lookup(query, scope));
+            if (cached.isPresent()) {
+                SqlCacheService.CachedSql hit = cached.get();
+                NL2SqlResponse response = NL2SqlResponse.generated(id, query, hit.getResult().sql(), dialect,
+                        elapsedMs(start));
+                response.setQueryType(hit.getQueryType());
+                response.setIsReadOnly(hit.getReadOnly());
+                response.setRepairAttempts(hit.getRepairAttempts());
+                response.setPipelineMode(hit.getPipelineMode());
+                response.setUsedTables(hit.getUsedTables());
+                if (request.shouldIncludeExplanation()) {
+                    response.setExplanation(hit.getResult().explanation());
+                }
+                response.setCacheHit(true);
+                response.setStageTimings(stageTimings);
+                return response;
+            }
+
+            // 1. 检索相关表
+            List<TableInfo> tables = timed(STAGE_RETRIEVAL, stageTimings, () -> retrieveTables(request));
+            if (tables.isEmpty()) {
+                NL2SqlResponse response = NL2SqlResponse.error(id, query, null, dialect,
+                        "No relevant tables found", elapsedMs(start));
+                response.setStageTimings(stageTimings);
+                return response;
+            }
+
+            // 2-3. 提取相关字段并生成SQL：fused 模式一次调用完成，否则分两次调用
+            int candidateColumns = countColumns(tables);
+            boolean fused = pipelinePolicy.useFused(candidateColumns, needsLlmExtraction(candidateColumns));
+            List<ColumnInfo> fields;
+            SqlGeneratorAgent.SqlGenerationResult candidate;
+            if (fused) {
+                SqlGeneratorAgent.FusedGenerationResult fusedResult = timed(STAGE_SQL_GENERATION, stageTimings,
+                        () -> sqlGeneratorAgent.generateFused(query, tables, dialect, request.getMaxRowsOrDefault()));
+                fields = fusedResult.fields();
+                candidate = fusedResult.result();
+            } else {
+                fields = timed(STAGE_FIELD_EXTRACTION, stageTimings, () -> extractFields(query, tables, dialect));
+                boolean speculative = request.getSpeculative() != null ? request.getSpeculative() : speculativeEnabled;
+                candidate = timed(STAGE_SQL_GENERATION, stageTimings, () -> speculative
+                        ? speculativeSqlGenerator.generate(query, tables, fields, dialect, request.getMaxRowsOrDefault(),
+                                candidateDatabase(request, tables)).result()
+                        : sqlGeneratorAgent.generateSql(query, tables, fields, dialect, request.getMaxRowsOrDefault()));
+            }
+
+            // 4. 本地校验，失败时带着具体错误让模型修复
+            ValidatedSql validated = timed(STAGE_VALIDATION, stageTimings,
+                    () -> validateAndRepair(query, tables, fields, dialect, request.getMaxRowsOrDefault(), candidate));
+            pipelinePolicy.record(fused, validated.error() == null && validated.repairAttempts() == 0);
+            String pipelineMode = fused ? PipelinePolicy.MODE_FUSED : PipelinePolicy.MODE_TWO_STAGE;
+            if (validated.error() != null) {
+                NL2SqlResponse response = NL2SqlResponse.error(id, query, validated.result().sql(), dialect,
+                        "SQL validation failed: " + validated.error(), elapsedMs(start));
+                response.setRepairAttempts(validated.repairAttempts());
+                response.setPipelineMode(pipelineMode);
+                response.setStageTimings(stageTimings);
+                return response;
+            }
+            SqlGeneratorAgent.SqlGenerationResult generated = validated.result();
+
+            NL2SqlResponse response = NL2SqlResponse.generated(id, query, generated.sql(), dialect, elapsedMs(start));
+            if (validationEnabled) {
+                response.setQueryType(generated.queryType());
+                response.setIsReadOnly(true);
+            }
+            response.setRepairAttempts(validated.repairAttempts());
+            response.setPipelineMode(pipelineMode);
+            response.setUsedTables(toTableDTOs(tables, fields));
+            response.setCacheHit(false);
+            sqlCacheService.put(query, scope, tables, generated, response);
+            if (request.shouldIncludeExplanation()) {
+                response.setExplanation(generated.explanation());
+            }
+            response.setStageTimings(stageTimings);
+
+            log.info("NL2SQL completed in {} ms, stages: {}", response.getTotalProcessingTimeMs(), stageTimings);
+            return response;
+        } catch (Exception e) {
+            log.error("NL2SQL failed for query: {}", query, e);
+            NL2SqlResponse response = NL2SqlResponse.error(id, query, null, dialect, e.getMessage(), elapsedMs(start));
+            response.setStageTimings(stageTimings);
+            return response;
+        }
+    }
+
+    /**
+     * 校验生成的SQL，失败时最多修复 max-repair-attempts 次
+     */
+    private ValidatedSql validateAndRepair(String query, List<TableInfo> tables, List<ColumnInfo> fields, String dialect,
+                                           int maxRows, SqlGeneratorAgent.SqlGenerationResult generated) {
+        if (!validationEnabled) {
+            return new ValidatedSql(generated, null, 0);
+        }
+        SqlGeneratorAgent.SqlGenerationResult current = generated;
+        for (int attempt = 0; ; attempt++) {
+            SqlValidator.ValidationResult validation = sqlValidator.validate(current.sql(), dialect, tables, maxRows);
+            if (validation.valid()) {
+                SqlGeneratorAgent.SqlGenerationResult result = new SqlGeneratorAgent.SqlGenerationResult(
+                        validation.sql(), current.explanation(), "SELECT", current.tables(), current.confidence());
+                return new ValidatedSql(result, null, attempt);
+            }
+            if (attempt >= maxRepairAttempts) {
+                log.warn("SQL still invalid after {} repair attempts: {}", attempt, validation.error());
+                return new ValidatedSql(current, validation.error(), attempt);
+            }
+            log.info("Generated SQL failed validation ({}), requesting repair", validation.error());
+            current = sqlGeneratorAgent.repairSql(query, tables, fields, dialect, maxRows, current.sql(), validation.error());
+        }
+    }
+
+    private record ValidatedSql(SqlGeneratorAgent.SqlGenerationResult result, String error, int repairAttempts) {}
+
+    private SqlCacheService.CacheScope cacheScope(NL2SqlRequest request, String dialect) {
+        List<String> tableNames = request.getTableNames() != null
+                ? request.getTableNames().stream().sorted().toList()
+                : List.of();
+        return new SqlCacheService.CacheScope(dialect.toLowerCase(), request.getDatabaseName(),
+                request.getMaxRowsOrDefault(), tableNames);
+    }
+
+    /**
+     * 请求指定了表名时直接使用，否则向量检索候选表；指定了数据库时只保留该库的表
+     * column 模式下先检索字段再聚合到表，返回的表只含命中字段和主外键字段；table 模式只检索表级文档
+     */
+    private List<TableInfo> retrieveTables(NL2SqlRequest request) {
+        List<TableInfo> tables;
+        if (request.getTableNames() != null && !request.getTableNames().isEmpty()) {
+            tables = tableSchemaService.getTablesByNames(request.getTableNames());
+        } else if ("column".equals(retrievalMode)) {
+            tables = schemaEmbeddingService.searchRelevantColumns(request.getQuery(), topK, columnTopK).stream()
+                    .map(SchemaEmbeddingService.ColumnSearchResult::table)
+                    .toList();
+        } else if ("table".equals(retrievalMode)) {
+            tables = schemaEmbeddingService.searchRelevantTables(request.getQuery(), topK);
+        } else {
+            throw new IllegalArgumentException("Unknown retrieval mode: " + retrievalMode);
+        }
+
+        if (request.getDatabaseName() != null) {
+            tables = tables.stream()
+                    .filter(table -> request.getDatabaseName().equals(table.getDatabaseName()))
+                    .toList();
+        }
+        return tables;
+    }
+
+    /**
+     * 字段提取
+     * llm: 总是调用字段提取Agent；local: 只用本地排序；
+     * adaptive: 候选字段数不超过 max-fields 时本地排序，否则调用大模型。
+     * 字段提取关闭时使用候选表的全部字段（最多 max-fields 个）
+     */
+    private List<ColumnInfo> extractFields(String query, List<TableInfo> tables, String dialect) {
+        if (!fieldExtractorEnabled) {
+            return allColumns(tables);
+        }
+
+        int candidateColumns = countColumns(tables);
+        if (!needsLlmExtraction(candidateColumns)) {
+            log.debug("Ranking {} candidate columns locally (mode {})", candidateColumns, fieldExtractorMode);
+            return localFieldRanker.rank(query, tables, maxFields);
+        }
+
+        List<ColumnInfo> fields = fieldExtractorAgent.extractRelevantFields(query, tables, dialect);
+        if (!fields.isEmpty()) {
+            return fields;
+        }
+        log.warn("Field extractor returned no fields, falling back to local ranking");
+        return localFieldRanker.rank(query, tables, maxFields);
+    }
+
+    /**
+     * 两阶段流程中字段提取是否需要调用大模型
+     */
+    private boolean needsLlmExtraction(int candidateColumns) {
+        if (!fieldExtractorEnabled) {
+            return false;
+        }
+        return switch (fieldExtractorMode) {
+            case "llm" -> true;
+            case "local" -> false;
+            case "adaptive" -> candidateColumns > maxFields;
+            default -> throw new IllegalArgumentException("Unknown field extractor mode: " + fieldExtractorMode);
+        };
+    }
+
+    private static int countColumns(List<TableInfo> tables) {
+        return tables.stream()
+                .mapToInt(table -> table.getColumns() != null ? table.getColumns().size() : 0)
+                .sum();
+    }
+
+    private List<ColumnInfo> allColumns(List<TableInfo> tables) {
+        return tables.stream()
+                .filter(table -> table.getColumns() != null)
+                .flatMap(table -> table.getColumns().stream())
+                .limit(maxFields)
+                .toList();
+    }
+
+    private List<NL2SqlResponse.TableInfoDTO> toTableDTOs(List<TableInfo> tables, List<ColumnInfo> fields) {
+        List<NL2SqlResponse.TableInfoDTO> result = new ArrayList<>();
+        for (TableInfo table : tables) {
+            List<String> columns = fields.stream()
+                    .filter(field -> table.getId().equals(field.getTableId()))
+                    .map(ColumnInfo::getColumnName)
+                    .toList();
+            if (!columns.isEmpty()) {
+                result.add(NL2SqlResponse.TableInfoDTO.builder()
+                        .tableName(table.getTableName())
+                        .tableAlias(table.getTableAlias())
+                        .description(table.getDescription())
+                        .columns(columns)
+                        .build());
+            }
+        }
+        return result;
+    }
+
+    private static <T> T timed(String stage, Map<String, Long> timings, Supplier<T> action) {
+        long start = System.nanoTime();
+        try {
+            return action.get();
+        } finally {
+            timings.put(stage, elapsedMs(start));
+        }
+    }
+
+    private static long elapsedMs(long startNanos) {
+        return TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - startNanos);
+    }
+}
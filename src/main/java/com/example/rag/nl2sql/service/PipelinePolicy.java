@@ -0,0 +1,135 @@
+package com.example.rag.nl2sql.service;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * NL2SQL 流程选择策略
+ * fused: 一次大模型调用同时选字段和生成SQL；two-stage: 字段提取和SQL生成两次调用。
+ * auto 模式下，只有字段提取需要调用大模型、且候选字段数不超过 fused-max-columns 时才考虑 fused，
+ * 再根据最近一段时间两种流程"首次生成即通过校验"的比例决定是否继续使用 fused
+ */
+@Slf4j
+@Component
+public class PipelinePolicy {
+
+    public static final String MODE_FUSED = "fused";
+    public static final String MODE_TWO_STAGE = "two-stage";
+    public static final String MODE_AUTO = "auto";
+
+    @Value("${nl2sql.pipeline.mode:auto}")
+    private String mode;
+
+    @Value("${nl2sql.pipeline.fused-max-columns:120}")
+    private int fusedMaxColumns;
+
+    @Value("${nl2sql.pipeline.min-accuracy:0.8}")
+    private double minAccuracy;
+
+    @Value("${nl2sql.pipeline.min-samples:20}")
+    private int minSamples;
+
+    @Value("${nl2sql.pipeline.probe-interval:50}")
+    private int probeInterval;
+
+    private final OutcomeWindow fusedOutcomes;
+    private final OutcomeWindow twoStageOutcomes;
+    private final AtomicLong decisions = new AtomicLong();
+
+    public PipelinePolicy(@Value("${nl2sql.pipeline.window-size:200}") int windowSize) {
+        this.fusedOutcomes = new OutcomeWindow(windowSize);
+        this.twoStageOutcomes = new OutcomeWindow(windowSize);
+    }
+
+    /**
+     * 是否使用 fused 流程
+     *
+     * @param candidateColumns 候选表的字段总数
+     * @param llmExtraction 两阶段流程中字段提取是否需要调用大模型（本地排序时两阶段本身就只有一次调用）
+     */
+    public boolean useFused(int candidateColumns, boolean llmExtraction) {
+        return switch (mode) {
+            case MODE_FUSED -> true;
+            case MODE_TWO_STAGE -> false;
+            case MODE_AUTO -> llmExtraction && candidateColumns <= fusedMaxColumns && fusedAccurateEnough();
+            default -> throw new IllegalArgumentException("Unknown NL2SQL pipeline mode: " + mode);
+        };
+    }
+
+    private boolean fusedAccurateEnough() {
+        long decision = decisions.incrementAndGet();
+        if (fusedOutcomes.samples() < minSamples) {
+            return true;
+        }
+        if (fusedOutcomes.accuracy() >= Math.min(minAccuracy, twoStageOutcomes.accuracyOr(1.0))) {
+            return true;
+        }
+        // 准确率不足时定期试探，使 fused 有机会在模型或表结构变化后恢复
+        return probeInterval > 0 && decision % probeInterval == 0;
+    }
+
+    /**
+     * 记录一次生成结果
+     *
+     * @param firstPass 首次生成的SQL是否直接通过校验
+     */
+    public void record(boolean fused, boolean firstPass) {
+        (fused ? fusedOutcomes : twoStageOutcomes).add(firstPass);
+    }
+
+    public PipelineStats stats() {
+        return new PipelineStats(mode, fusedOutcomes.samples(), fusedOutcomes.accuracyOr(0.0),
+                twoStageOutcomes.samples(), twoStageOutcomes.accuracyOr(0.0));
+    }
+
+    /**
+     * 最近 N 次结果的滑动窗口
+     */
+    private static final class OutcomeWindow {
+
+        private final boolean[] outcomes;
+        private int next;
+        private int size;
+        private int passed;
+
+        OutcomeWindow(int capacity) {
+            this.outcomes = new boolean[capacity];
+        }
+
+        synchronized void add(boolean passed) {
+            if (size == outcomes.length) {
+                if (outcomes[next]) {
+                    this.passed--;
+                }
+            } else {
+                size++;
+            }
+            outcomes[next] = passed;
+            if (passed) {
+                this.passed++;
+            }
+            next = (next + 1) % outcomes.length;
+        }
+
+        synchronized int samples() {
+            return size;
+        }
+
+        synchronized double accuracy() {
+            return size == 0 ? 0.0 : (double) passed / size;
+        }
+
+        synchronized double accuracyOr(double fallback) {
+            return size == 0 ? fallback : (double) passed / size;
+        }
+    }
+
+    /**
+     * 流程统计
+     */
+    public record PipelineStats(String mode, int fusedSamples, double fusedAccuracy,
+                                int twoStageSamples, double twoStageAccuracy) {}
+}
@@ -1,51 +1,75 @@
 package com.example.rag.nl2sql.service;
 
+import co.elastic.clients.elasticsearch.ElasticsearchClient;
+import co.elastic.clients.elasticsearch._types.FieldValue;
+import co.elastic.clients.elasticsearch.core.SearchResponse;
+import co.elastic.clients.elasticsearch.core.search.Hit;
+import com.example.rag.nl2sql.entity.ColumnInfo;
 import com.example.rag.nl2sql.entity.TableInfo;
+import com.example.rag.vectorstore.HnswVectorStore;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.ai.document.Document;
-import org.springframework.ai.vectorstore.ElasticsearchVectorStore;
 import org.springframework.ai.vectorstore.SearchRequest;
+import org.springframework.ai.vectorstore.VectorStore;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Service;
 
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
 import java.util.*;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
 
 /**
  * 表描述向量化服务
  * 将表描述信息向量化存储到ES，用于语义检索
+ * 每张表写入一条表级文档，并为每个字段写入一条字段级文档（ID 为 表ID:字段名），
+ * 宽表可以通过字段直接召回
  */
 @Slf4j
 @Service
 @RequiredArgsConstructor
 public class SchemaEmbeddingService {
     
-    private final ElasticsearchVectorStore vectorStore;
+    // 文档类型元数据字段
+    public static final String TYPE_KEY = "type";
+    public static final String TYPE_TABLE = "table";
+    public static final String TYPE_COLUMN = "column";
+    // 表级文档上记录的内容指纹，覆盖该表所有文档的文本和元数据
+    public static final String FINGERPRINT_KEY = "fingerprint";
+    
+    @Qualifier("schemaVectorStore")
+    private final VectorStore vectorStore;
     private final TableSchemaService tableSchemaService;
+    private final ElasticsearchClient elasticsearchClient;
+    
+    // 表结构文档与 RAG 文档共用 Spring AI 的 Elasticsearch 索引
+    @Value("${spring.ai.vectorstore.elasticsearch.index-name:rag-documents}")
+    private String indexName;
+    
+    // 枚举已向量化表时每页的文档数
+    @Value("${nl2sql.vectorstore.scan-page-size:1000}")
+    private int scanPageSize;
     
-    // 索引名称
-    private static final String INDEX_NAME = "nl2sql-table-schemas";
+    // 枚举时 point-in-time 的保活时间
+    @Value("${nl2sql.vectorstore.scan-keep-alive:1m}")
+    private String scanKeepAlive;
+    
+    // 同步时每批重新向量化的表数量
+    @Value("${nl2sql.vectorstore.sync-batch-size:100}")
+    private int syncBatchSize;
     
     /**
      * 将表信息添加到向量存储
      */
     public void addTableEmbedding(TableInfo tableInfo) {
-        String embeddingText = tableInfo.toEmbeddingText();
-        
-        Map<String, Object> metadata = new HashMap<>();
-        metadata.put("tableId", tableInfo.getId());
-        metadata.put("tableName", tableInfo.getTableName());
-        metadata.put("tableAlias", tableInfo.getTableAlias());
-        metadata.put("dbType", tableInfo.getDbType());
-        metadata.put("databaseName", tableInfo.getDatabaseName());
-        metadata.put("description", tableInfo.getDescription());
-        
-        Document document = new Document(
-            tableInfo.getId(),
-            embeddingText,
-            metadata
-        );
-        
-        vectorStore.add(List.of(document));
+        vectorStore.add(toDocuments(tableInfo));
         log.info("Table embedding added: {} ({})", tableInfo.getTableName(), tableInfo.getId());
     }
     
@@ -54,18 +78,62 @@ public class SchemaEmbeddingService {
      */
     public void addTableEmbeddings(List<TableInfo> tableInfos) {
         List<Document> documents = tableInfos.stream()
-                .map(this::convertToDocument)
+                .flatMap(table -> toDocuments(table).stream())
                 .toList();
         
         vectorStore.add(documents);
         log.info("Batch table embeddings added: {} tables", tableInfos.size());
     }
     
+    /**
+     * 表级文档 + 字段级文档，表级文档的元数据带上整张表的内容指纹
+     */
+    private List<Document> toDocuments(TableInfo tableInfo) {
+        List<Document> documents = new ArrayList<>();
+        documents.add(convertToDocument(tableInfo));
+        if (tableInfo.getColumns() != null) {
+            for (ColumnInfo column : tableInfo.getColumns()) {
+                documents.add(convertColumnToDocument(tableInfo, column));
+            }
+        }
+        documents.get(0).getMetadata().put(FINGERPRINT_KEY, fingerprint(documents));
+        return documents;
+    }
+    
+    /**
+     * 计算表的内容指纹，只覆盖参与向量化的部分（文档ID、文本、元数据）
+     */
+    public String fingerprint(TableInfo tableInfo) {
+        List<Document> documents = toDocuments(tableInfo);
+        return (String) documents.get(0).getMetadata().get(FINGERPRINT_KEY);
+    }
+    
+    private static String fingerprint(List<Document> documents) {
+        MessageDigest digest;
+        try {
+            digest = MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 not available", e);
+        }
+        for (Document document : documents) {
+            Map<String, Object> metadata = new TreeMap<>(document.getMetadata());
+            metadata.remove(FINGERPRINT_KEY);
+            digest.update(document.getId().getBytes(StandardCharsets.UTF_8));
+            digest.update((byte) 0);
+            digest.update(document.getContent().getBytes(StandardCharsets.UTF_8));
+            digest.update((byte) 0);
+            digest.update(metadata.toString().getBytes(StandardCharsets.UTF_8));
+            digest.update((byte) 0);
+        }
+        return HexFormat.of().formatHex(digest.digest());
+    }
+    
     /**
      * 将表信息转换为Document
      */
     private Document convertToDocument(TableInfo tableInfo) {
         Map<String, Object> metadata = new HashMap<>();
+        metadata.put(TYPE_KEY, TYPE_TABLE);
         metadata.put("tableId", tableInfo.getId());
         metadata.put("tableName", tableInfo.getTableName());
         metadata.put("tableAlias", tableInfo.getTableAlias());
@@ -80,6 +148,31 @@ public class SchemaEmbeddingService {
         );
     }
     
+    /**
+     * 将字段信息转换为Document，文本带上表名和表别名以便区分同名字段
+     */
+    private Document convertColumnToDocument(TableInfo tableInfo, ColumnInfo column) {
+        Map<String, Object> metadata = new HashMap<>();
+        metadata.put(TYPE_KEY, TYPE_COLUMN);
+        metadata.put("tableId", tableInfo.getId());
+        metadata.put("tableName", tableInfo.getTableName());
+        metadata.put("columnName", column.getColumnName());
+        metadata.put("databaseName", tableInfo.getDatabaseName());
+        
+        StringBuilder text = new StringBuilder();
+        text.append("表: ").append(tableInfo.getTableName());
+        if (tableInfo.getTableAlias() != null && !tableInfo.getTableAlias().isEmpty()) {
+            text.append(" (").append(tableInfo.getTableAlias()).append(")");
+        }
+        text.append("\n字段: ").append(column.toDescription());
+        
+        return new Document(columnDocumentId(tableInfo.getId(), column.getColumnName()), text.toString(), metadata);
+    }
+    
+    private static String columnDocumentId(String tableId, String columnName) {
+        return tableId + ":" + columnName;
+    }
+    
     /**
      * 搜索相关表（语义检索）
      */
@@ -87,6 +180,7 @@ public class SchemaEmbeddingService {
         SearchRequest searchRequest = SearchRequest.builder()
                 .query(query)
                 .topK(topK)
+                .filterExpression(TYPE_KEY + " == '" + TYPE_TABLE + "'")
                 .build();
         
         List<Document> documents = vectorStore.similaritySearch(searchRequest);
@@ -113,6 +207,7 @@ public class SchemaEmbeddingService {
         SearchRequest searchRequest = SearchRequest.builder()
                 .query(query)
                 .topK(topK)
+                .filterExpression(TYPE_KEY + " == '" + TYPE_TABLE + "'")
                 .build();
         
         List<Document> documents = vectorStore.similaritySearch(searchRequest);
@@ -133,44 +228,439 @@ public class SchemaEmbeddingService {
     }
     
     /**
-     * 删除表的向量嵌入
+     * 两级检索：先直接检索字段，再按表聚合字段分数，并叠加表级文档的相似度
+     * 表分数 = 表级相似度 + Σ 第i个命中字段的相似度 / i（只取前 3 个），返回的表只保留命中字段和主外键字段
+     *
+     * @param topK 返回的表数量
+     * @param columnTopK 字段检索的召回数量
+     */
+    public List<ColumnSearchResult> searchRelevantColumns(String query, int topK, int columnTopK) {
+        List<Document> columnDocs = vectorStore.similaritySearch(SearchRequest.builder()
+                .query(query)
+                .topK(columnTopK)
+                .filterExpression(TYPE_KEY + " == '" + TYPE_COLUMN + "'")
+                .build());
+        List<Document> tableDocs = vectorStore.similaritySearch(SearchRequest.builder()
+                .query(query)
+                .topK(topK)
+                .filterExpression(TYPE_KEY + " == '" + TYPE_TABLE + "'")
+                .build());
+        
+        Map<String, List<ScoredColumnName>> columnsByTable = new LinkedHashMap<>();
+        for (Document doc : columnDocs) {
+            String tableId = (String) doc.getMetadata().get("tableId");
+            String columnName = (String) doc.getMetadata().get("columnName");
+            if (tableId != null && columnName != null) {
+                columnsByTable.computeIfAbsent(tableId, k -> new ArrayList<>())
+                        .add(new ScoredColumnName(columnName, similarity(doc)));
+            }
+        }
+        Map<String, Double> tableSimilarity = new HashMap<>();
+        for (Document doc : tableDocs) {
+            String tableId = (String) doc.getMetadata().get("tableId");
+            if (tableId != null) {
+                tableSimilarity.put(tableId, similarity(doc));
+            }
+        }
+        
+        Set<String> tableIds = new LinkedHashSet<>(columnsByTable.keySet());
+        tableIds.addAll(tableSimilarity.keySet());
+        
+        List<ColumnSearchResult> results = new ArrayList<>();
+        for (String tableId : tableIds) {
+            TableInfo table = tableSchemaService.getTableById(tableId);
+            if (table == null) {
+                continue;
+            }
+            List<ScoredColumnName> matched = columnsByTable.getOrDefault(tableId, List.of());
+            double score = tableSimilarity.getOrDefault(tableId, 0.0);
+            for (int i = 0; i < Math.min(3, matched.size()); i++) {
+                score += matched.get(i).similarity() / (i + 1);
+            }
+            Set<String> matchedNames = new HashSet<>();
+            matched.forEach(column -> matchedNames.add(column.columnName().toLowerCase()));
+            results.add(new ColumnSearchResult(narrow(table, matchedNames), score, matched.size()));
+        }
+        
+        results.sort(Comparator.comparingDouble(ColumnSearchResult::score).reversed());
+        List<ColumnSearchResult> top = results.subList(0, Math.min(topK, results.size()));
+        log.debug("Column-level search for query '{}': {} columns hit across {} tables, returning {}",
+                query, columnDocs.size(), tableIds.size(), top.size());
+        return new ArrayList<>(top);
+    }
+    
+    /**
+     * 只保留命中的字段和主外键字段；没有命中任何字段时（只命中表级文档）保留全部字段
+     */
+    private static TableInfo narrow(TableInfo table, Set<String> matchedNames) {
+        if (matchedNames.isEmpty() || table.getColumns() == null) {
+            return table;
+        }
+        List<ColumnInfo> columns = table.getColumns().stream()
+                .filter(column -> matchedNames.contains(column.getColumnName().toLowerCase())
+                        || Boolean.TRUE.equals(column.getIsPrimaryKey())
+                        || Boolean.TRUE.equals(column.getIsForeignKey())
+                        || column.getColumnName().equalsIgnoreCase(table.getPrimaryKey())
+                        || (table.getForeignKeys() != null && table.getForeignKeys().containsKey(column.getColumnName())))
+                .toList();
+        return table.toBuilder().columns(columns).build();
+    }
+    
+    private static double similarity(Document doc) {
+        Object distance = doc.getMetadata().get("distance");
+        return distance instanceof Number number ? 1.0 - number.doubleValue() : 0.0;
+    }
+    
+    /**
+     * 删除表的向量嵌入（含字段级文档）
      */
     public void deleteTableEmbedding(String tableId) {
-        vectorStore.delete(List.of(tableId));
-        log.info("Table embedding deleted: {}", tableId);
+        TableInfo table = tableSchemaService.getTableById(tableId);
+        if (table != null) {
+            deleteTableEmbedding(table);
+        } else {
+            vectorStore.delete(List.of(tableId));
+            log.info("Table embedding deleted: {}", tableId);
+        }
+    }
+    
+    /**
+     * 删除表的向量嵌入（含字段级文档）
+     */
+    public void deleteTableEmbedding(TableInfo tableInfo) {
+        List<String> ids = new ArrayList<>();
+        ids.add(tableInfo.getId());
+        if (tableInfo.getColumns() != null) {
+            tableInfo.getColumns().forEach(column ->
+                    ids.add(columnDocumentId(tableInfo.getId(), column.getColumnName())));
+        }
+        vectorStore.delete(ids);
+        log.info("Table embedding deleted: {} ({} documents)", tableInfo.getId(), ids.size());
     }
     
     /**
      * 更新表的向量嵌入
+     * 内容指纹未变化时不做任何操作；否则按文档ID覆盖写入，再删除已不存在字段的文档
+     *
+     * @param previous 更新前的表信息，为 null 时视为新表
+     * @return 是否重新向量化
      */
-    public void updateTableEmbedding(TableInfo tableInfo) {
-        // 先删除旧的
-        deleteTableEmbedding(tableInfo.getId());
-        // 再添加新的
-        addTableEmbedding(tableInfo);
+    public boolean updateTableEmbedding(TableInfo previous, TableInfo tableInfo) {
+        List<Document> documents = toDocuments(tableInfo);
+        String fingerprint = (String) documents.get(0).getMetadata().get(FINGERPRINT_KEY);
+        if (previous != null && previous.getId().equals(tableInfo.getId())
+                && fingerprint.equals(fingerprint(previous))) {
+            log.debug("Table embedding unchanged, skipping: {}", tableInfo.getTableName());
+            return false;
+        }
+        
+        vectorStore.add(documents);
+        if (previous != null) {
+            Set<String> currentIds = new HashSet<>();
+            documents.forEach(document -> currentIds.add(document.getId()));
+            List<String> staleIds = toDocuments(previous).stream()
+                    .map(Document::getId)
+                    .filter(id -> !currentIds.contains(id))
+                    .toList();
+            if (!staleIds.isEmpty()) {
+                vectorStore.delete(staleIds);
+            }
+        }
         log.info("Table embedding updated: {}", tableInfo.getTableName());
+        return true;
     }
     
     /**
      * 获取所有已向量化的表ID
      */
     public List<String> getAllEmbeddedTableIds() {
-        // 通过搜索空字符串获取所有文档
-        SearchRequest searchRequest = SearchRequest.builder()
-                .query("")
-                .topK(10000)
-                .build();
+        try (Stream<EmbeddedTable> tables = streamEmbeddedTables()) {
+            return tables.map(EmbeddedTable::tableId).toList();
+        }
+    }
+    
+    /**
+     * 分页枚举所有已向量化的表（表ID和内容指纹），不做向量计算
+     * Elasticsearch 使用 point-in-time + search_after 按页读取，只取 metadata.tableId 和 metadata.fingerprint；
+     * 返回的流是惰性的，使用完毕后需要关闭以释放 point-in-time
+     */
+    public Stream<EmbeddedTable> streamEmbeddedTables() {
+        EmbeddedTablePager pager = vectorStore instanceof HnswVectorStore hnsw
+                ? new HnswEmbeddedTablePager(hnsw)
+                : new ElasticsearchEmbeddedTablePager();
+        return StreamSupport.stream(Spliterators.spliteratorUnknownSize(pager, Spliterator.ORDERED | Spliterator.NONNULL), false)
+                .onClose(pager::close);
+    }
+    
+    /**
+     * 同步表结构库与向量库
+     * 比较每张表的内容指纹，只把新增和内容变化的表分批重新向量化（覆盖写入），
+     * 并删除向量库中已不存在的表的文档
+     */
+    public SyncResult sync() {
+        Map<String, String> embeddedFingerprints = new HashMap<>();
+        List<String> orphaned = new ArrayList<>();
+        try (Stream<EmbeddedTable> tables = streamEmbeddedTables()) {
+            tables.forEach(embedded -> {
+                if (embeddedFingerprints.putIfAbsent(embedded.tableId(), Objects.toString(embedded.fingerprint(), "")) == null
+                        && tableSchemaService.getTableById(embedded.tableId()) == null) {
+                    orphaned.add(embedded.tableId());
+                }
+            });
+        }
         
-        List<Document> documents = vectorStore.similaritySearch(searchRequest);
-        return documents.stream()
-                .map(doc -> (String) doc.getMetadata().get("tableId"))
-                .filter(Objects::nonNull)
-                .distinct()
-                .toList();
+        orphaned.forEach(this::deleteEmbeddingsByTableId);
+        
+        List<String> added = new ArrayList<>();
+        List<String> updated = new ArrayList<>();
+        List<TableInfo> batch = new ArrayList<>(syncBatchSize);
+        int unchanged = 0;
+        for (TableInfo table : tableSchemaService.getAllTables()) {
+            String embeddedFingerprint = embeddedFingerprints.get(table.getId());
+            if (embeddedFingerprint == null) {
+                added.add(table.getId());
+            } else if (!embeddedFingerprint.equals(fingerprint(table))) {
+                updated.add(table.getId());
+            } else {
+                unchanged++;
+                continue;
+            }
+            batch.add(table);
+            if (batch.size() >= syncBatchSize) {
+                upsertBatch(batch, embeddedFingerprints);
+                batch.clear();
+            }
+        }
+        if (!batch.isEmpty()) {
+            upsertBatch(batch, embeddedFingerprints);
+        }
+        
+        log.info("Schema embeddings synced: {} added, {} updated, {} unchanged, {} orphaned removed",
+                added.size(), updated.size(), unchanged, orphaned.size());
+        return new SyncResult(embeddedFingerprints.size(), added, updated, unchanged, orphaned);
+    }
+    
+    /**
+     * 覆盖写入一批表的文档，已向量化过的表再删除其已不存在字段的文档
+     */
+    private void upsertBatch(List<TableInfo> tables, Map<String, String> embeddedFingerprints) {
+        addTableEmbeddings(tables);
+        for (TableInfo table : tables) {
+            if (embeddedFingerprints.containsKey(table.getId())) {
+                deleteStaleColumnEmbeddings(table);
+            }
+        }
+    }
+    
+    /**
+     * 删除表中已不存在字段的文档，旧的字段列表未知时按 tableId 查找
+     */
+    private void deleteStaleColumnEmbeddings(TableInfo table) {
+        Set<String> keepIds = new HashSet<>();
+        toDocuments(table).forEach(document -> keepIds.add(document.getId()));
+        if (vectorStore instanceof HnswVectorStore hnsw) {
+            hnsw.deleteByMetadata("tableId", table.getId(), keepIds);
+            return;
+        }
+        try {
+            elasticsearchClient.deleteByQuery(d -> d
+                    .index(indexName)
+                    .query(q -> q.bool(b -> b
+                            .filter(f -> f.term(t -> t.field("metadata.tableId.keyword").value(table.getId())))
+                            .mustNot(m -> m.ids(i -> i.values(new ArrayList<>(keepIds))))))
+                    .refresh(true));
+        } catch (IOException e) {
+            throw new UncheckedIOException("Failed to delete stale column embeddings of table " + table.getId(), e);
+        }
+    }
+    
+    /**
+     * 按 tableId 删除表级和字段级文档，用于表结构库中已不存在、字段列表未知的表
+     */
+    private void deleteEmbeddingsByTableId(String tableId) {
+        if (vectorStore instanceof HnswVectorStore hnsw) {
+            hnsw.deleteByMetadata("tableId", tableId);
+            return;
+        }
+        try {
+            elasticsearchClient.deleteByQuery(d -> d
+                    .index(indexName)
+                    .query(q -> q.term(t -> t.field("metadata.tableId.keyword").value(tableId)))
+                    .refresh(true));
+        } catch (IOException e) {
+            throw new UncheckedIOException("Failed to delete embeddings of table " + tableId, e);
+        }
     }
     
+    /**
+     * 分页读取已向量化表的迭代器，当前页读完时再取下一页
+     */
+    private abstract static class EmbeddedTablePager implements Iterator<EmbeddedTable>, Closeable {
+        
+        private Iterator<EmbeddedTable> page = Collections.emptyIterator();
+        private boolean exhausted;
+        
+        /**
+         * 读取下一页，返回空列表表示没有更多数据
+         */
+        protected abstract List<EmbeddedTable> nextPage();
+        
+        @Override
+        public boolean hasNext() {
+            while (!page.hasNext() && !exhausted) {
+                List<EmbeddedTable> next = nextPage();
+                if (next.isEmpty()) {
+                    exhausted = true;
+                    close();
+                } else {
+                    page = next.iterator();
+                }
+            }
+            return page.hasNext();
+        }
+        
+        @Override
+        public EmbeddedTable next() {
+            if (!hasNext()) {
+                throw new NoSuchElementException();
+            }
+            return page.next();
+        }
+        
+        @Override
+        public void close() {
+        }
+    }
+    
+    private class HnswEmbeddedTablePager extends EmbeddedTablePager {
+        
+        private final HnswVectorStore hnsw;
+        private int nextNode;
+        
+        HnswEmbeddedTablePager(HnswVectorStore hnsw) {
+            this.hnsw = hnsw;
+        }
+        
+        @Override
+        protected List<EmbeddedTable> nextPage() {
+            List<EmbeddedTable> tables = new ArrayList<>();
+            // 一页可能全是字段级文档，继续往后读直到取到表或读完
+            while (tables.isEmpty() && nextNode >= 0) {
+                nextNode = hnsw.scanMetadata(nextNode, scanPageSize, metadata -> {
+                    if (TYPE_TABLE.equals(metadata.get(TYPE_KEY)) && metadata.get("tableId") instanceof String tableId) {
+                        tables.add(new EmbeddedTable(tableId, (String) metadata.get(FINGERPRINT_KEY)));
+                    }
+                });
+            }
+            return tables;
+        }
+    }
+    
+    private class ElasticsearchEmbeddedTablePager extends EmbeddedTablePager {
+        
+        private String pitId;
+        private List<FieldValue> searchAfter;
+        private boolean done;
+        
+        @Override
+        @SuppressWarnings("rawtypes")
+        protected List<EmbeddedTable> nextPage() {
+            if (done) {
+                return List.of();
+            }
+            try {
+                if (pitId == null) {
+                    pitId = elasticsearchClient.openPointInTime(p -> p
+                            .index(indexName)
+                            .keepAlive(t -> t.time(scanKeepAlive))).id();
+                }
+                SearchResponse<Map> response = elasticsearchClient.search(s -> {
+                    s.size(scanPageSize)
+                            .pit(p -> p.id(pitId).keepAlive(t -> t.time(scanKeepAlive)))
+                            .trackTotalHits(t -> t.enabled(false))
+                            .source(src -> src.filter(f -> f.includes("metadata.tableId", "metadata." + FINGERPRINT_KEY)))
+                            .query(q -> q.term(t -> t.field("metadata." + TYPE_KEY + ".keyword").value(TYPE_TABLE)))
+                            .sort(so -> so.field(f -> f.field("_shard_doc")));
+                    if (searchAfter != null) {
+                        s.searchAfter(searchAfter);
+                    }
+                    return s;
+                }, Map.class);
+                
+                if (response.pitId() != null) {
+                    pitId = response.pitId();
+                }
+                List<Hit<Map>> hits = response.hits().hits();
+                if (hits.size() < scanPageSize) {
+                    done = true;
+                }
+                if (hits.isEmpty()) {
+                    return List.of();
+                }
+                searchAfter = hits.get(hits.size() - 1).sort();
+                return hits.stream().map(ElasticsearchEmbeddedTablePager::toEmbeddedTable).toList();
+            } catch (IOException e) {
+                close();
+                throw new UncheckedIOException("Failed to enumerate embedded tables", e);
+            }
+        }
+        
+        @SuppressWarnings("rawtypes")
+        private static EmbeddedTable toEmbeddedTable(Hit<Map> hit) {
+            if (hit.source() != null && hit.source().get("metadata") instanceof Map<?, ?> metadata
+                    && metadata.get("tableId") instanceof String tableId) {
+                return new EmbeddedTable(tableId, (String) metadata.get(FINGERPRINT_KEY));
+            }
+            return new EmbeddedTable(hit.id(), null);
+        }
+        
+        @Override
+        public void close() {
+            if (pitId == null) {
+                return;
+            }
+            String id = pitId;
+            pitId = null;
+            done = true;
+            try {
+                elasticsearchClient.closePointInTime(c -> c.id(id));
+            } catch (IOException e) {
+                log.warn("Failed to close point-in-time: {}", e.getMessage());
+            }
+        }
+    }
+    
+    private record ScoredColumnName(String columnName, double similarity) {}
+    
     /**
      * 表搜索结果
      */
     public record TableSearchResult(TableInfo table, double score) {}
+    
+    /**
+     * 字段级检索结果
+     *
+     * @param table 只含命中字段和主外键字段的表信息
+     * @param matchedColumns 命中的字段数
+     */
+    public record ColumnSearchResult(TableInfo table, double score, int matchedColumns) {}
+    
+    /**
+     * 向量库中的表
+     *
+     * @param fingerprint 写入时的内容指纹，旧数据可能为 null
+     */
+    public record EmbeddedTable(String tableId, String fingerprint) {}
+    
+    /**
+     * 同步结果
+     *
+     * @param embeddedTables 同步前向量库中的表数量
+     * @param addedTableIds 新向量化的表
+     * @param updatedTableIds 内容变化后重新向量化的表
+     * @param unchangedTables 指纹未变化而跳过的表数量
+     * @param removedTableIds 已删除的孤立表
+     */
+    public record SyncResult(int embeddedTables, List<String> addedTableIds, List<String> updatedTableIds,
+                             int unchangedTables, List<String> removedTableIds) {}
 }
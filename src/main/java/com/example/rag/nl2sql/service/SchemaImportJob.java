@@ -0,0 +1,80 @@
+package com.example.rag.nl2sql.service;
+
+import lombok.Getter;
+
+import java.time.Instant;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * 表结构导入任务及进度
+ */
+@Getter
+public class SchemaImportJob {
+
+    public enum Status {
+        RUNNING, COMPLETED, FAILED
+    }
+
+    private final String id;
+    private final String databaseName;
+    private final Instant createdAt;
+    private volatile Status status = Status.RUNNING;
+    private volatile String error;
+    private volatile Instant updatedAt;
+    private volatile int schemasTotal;
+    private final AtomicInteger schemasDone = new AtomicInteger();
+    private final AtomicInteger tablesDiscovered = new AtomicInteger();
+    private final AtomicInteger tablesSaved = new AtomicInteger();
+    private final AtomicInteger tablesEmbedded = new AtomicInteger();
+    // 单张表或单个 schema 读取失败不影响其他部分，记录在这里
+    private final List<String> warnings = new CopyOnWriteArrayList<>();
+
+    SchemaImportJob(String id, String databaseName) {
+        this.id = id;
+        this.databaseName = databaseName;
+        this.createdAt = Instant.now();
+        this.updatedAt = createdAt;
+    }
+
+    void setSchemasTotal(int schemasTotal) {
+        this.schemasTotal = schemasTotal;
+        touch();
+    }
+
+    void tablesDiscovered(int count) {
+        tablesDiscovered.addAndGet(count);
+        touch();
+    }
+
+    void tablesSaved(int saved, int embedded) {
+        tablesSaved.addAndGet(saved);
+        tablesEmbedded.addAndGet(embedded);
+        touch();
+    }
+
+    void schemaDone() {
+        schemasDone.incrementAndGet();
+        touch();
+    }
+
+    void warn(String message) {
+        warnings.add(message);
+    }
+
+    void markCompleted() {
+        this.status = Status.COMPLETED;
+        touch();
+    }
+
+    void markFailed(String error) {
+        this.error = error;
+        this.status = Status.FAILED;
+        touch();
+    }
+
+    private void touch() {
+        this.updatedAt = Instant.now();
+    }
+}
@@ -0,0 +1,370 @@
+package com.example.rag.nl2sql.service;
+
+import com.example.rag.nl2sql.dto.SchemaImportRequest;
+import com.example.rag.nl2sql.dto.TableInfoRequest;
+import com.example.rag.nl2sql.entity.TableInfo;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.core.env.Environment;
+import org.springframework.scheduling.concurrent.CustomizableThreadFactory;
+import org.springframework.stereotype.Service;
+
+import javax.sql.DataSource;
+import java.sql.Connection;
+import java.sql.DatabaseMetaData;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Types;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/**
+ * 表结构导入服务
+ * 通过 JDBC DatabaseMetaData 读取表、字段、主键、外键、索引和行数估计，
+ * 每个 schema 一个任务并行读取，按批保存到表结构库并向量化，任务进度可查询
+ */
+@Slf4j
+@Service
+@RequiredArgsConstructor
+public class SchemaImportService {
+
+    private static final Set<String> SYSTEM_SCHEMAS = Set.of(
+            "information_schema", "pg_catalog", "mysql", "performance_schema", "sys");
+
+    private final SqlExecutionService sqlExecutionService;
+    private final TableSchemaService tableSchemaService;
+    private final SchemaEmbeddingService schemaEmbeddingService;
+    private final Environment environment;
+
+    @Value("${nl2sql.import.parallelism:4}")
+    private int parallelism;
+
+    @Value("${nl2sql.import.batch-size:200}")
+    private int batchSize;
+
+    private final Map<String, SchemaImportJob> jobs = new ConcurrentHashMap<>();
+
+    private ExecutorService coordinator;
+    private ExecutorService schemaPool;
+
+    @PostConstruct
+    void start() {
+        coordinator = Executors.newSingleThreadExecutor(new CustomizableThreadFactory("schema-import-"));
+        schemaPool = Executors.newFixedThreadPool(parallelism, new CustomizableThreadFactory("schema-import-worker-"));
+    }
+
+    @PreDestroy
+    void stop() {
+        coordinator.shutdownNow();
+        schemaPool.shutdownNow();
+    }
+
+    /**
+     * 提交导入任务，立即返回任务对象
+     */
+    public SchemaImportJob startImport(SchemaImportRequest request) {
+        if (!sqlExecutionService.hasDatabase(request.getDatabaseName())) {
+            throw new IllegalArgumentException("Unknown database: " + request.getDatabaseName());
+        }
+        SchemaImportJob job = new SchemaImportJob(UUID.randomUUID().toString(), request.getDatabaseName());
+        jobs.put(job.getId(), job);
+        coordinator.execute(() -> runImport(job, request));
+        return job;
+    }
+
+    /**
+     * 查询导入任务
+     */
+    public Optional<SchemaImportJob> getJob(String jobId) {
+        return Optional.ofNullable(jobs.get(jobId));
+    }
+
+    private void runImport(SchemaImportJob job, SchemaImportRequest request) {
+        long start = System.currentTimeMillis();
+        DataSource dataSource = sqlExecutionService.getDataSource(request.getDatabaseName());
+        try {
+            String dbType;
+            List<String> schemas = new ArrayList<>();
+            try (Connection connection = dataSource.getConnection()) {
+                DatabaseMetaData metaData = connection.getMetaData();
+                dbType = request.getDbType() != null
+                        ? request.getDbType()
+                        : metaData.getDatabaseProductName().toLowerCase(Locale.ROOT);
+                try (ResultSet rs = metaData.getSchemas(connection.getCatalog(), request.getSchemaPattern())) {
+                    while (rs.next()) {
+                        String schema = rs.getString("TABLE_SCHEM");
+                        if (request.getSchemaPattern() != null || !SYSTEM_SCHEMAS.contains(schema.toLowerCase(Locale.ROOT))) {
+                            schemas.add(schema);
+                        }
+                    }
+                }
+            }
+            job.setSchemasTotal(schemas.size());
+            log.info("Importing schemas of {}: {}", request.getDatabaseName(), schemas);
+
+            List<CompletableFuture<Void>> tasks = schemas.stream()
+                    .map(schema -> CompletableFuture.runAsync(() -> importSchema(job, dataSource, request, dbType, schema), schemaPool))
+                    .toList();
+            CompletableFuture.allOf(tasks.toArray(CompletableFuture[]::new)).join();
+
+            job.markCompleted();
+            log.info("Schema import {} completed in {} ms: {} tables saved, {} embedded, {} warnings",
+                    job.getId(), System.currentTimeMillis() - start, job.getTablesSaved(), job.getTablesEmbedded(),
+                    job.getWarnings().size());
+        } catch (Exception e) {
+            log.error("Schema import {} failed", job.getId(), e);
+            job.markFailed(e.getMessage());
+        }
+    }
+
+    /**
+     * 读取一个 schema 的所有表，按批保存并向量化
+     */
+    private void importSchema(SchemaImportJob job, DataSource dataSource, SchemaImportRequest request,
+                              String dbType, String schema) {
+        String tablePattern = request.getTablePattern() != null ? request.getTablePattern() : "%";
+        try (Connection connection = dataSource.getConnection()) {
+            DatabaseMetaData metaData = connection.getMetaData();
+            String catalog = connection.getCatalog();
+
+            Map<String, TableInfoRequest> tables = new LinkedHashMap<>();
+            try (ResultSet rs = metaData.getTables(catalog, schema, tablePattern, new String[]{"TABLE", "VIEW"})) {
+                while (rs.next()) {
+                    String tableName = rs.getString("TABLE_NAME");
+                    String remarks = rs.getString("REMARKS");
+                    tables.put(tableName, TableInfoRequest.builder()
+                            .tableName(tableName)
+                            .description(remarks != null && !remarks.isBlank() ? remarks : tableName)
+                            .dbType(dbType)
+                            .databaseName(request.getDatabaseName())
+                            .schemaName(schema)
+                            .columns(new ArrayList<>())
+                            .foreignKeys(new LinkedHashMap<>())
+                            .indexes(new ArrayList<>())
+                            .build());
+                }
+            }
+            job.tablesDiscovered(tables.size());
+
+            // 一次读取整个 schema 的字段，避免每张表一次元数据查询
+            readColumns(metaData, catalog, schema, tablePattern, tables);
+
+            Map<String, Long> rowEstimates = readRowEstimates(job, connection, dbType, schema);
+
+            List<TableInfoRequest> batch = new ArrayList<>(batchSize);
+            for (TableInfoRequest table : tables.values()) {
+                try {
+                    readKeys(metaData, catalog, schema, table);
+                    readIndexes(metaData, catalog, schema, table);
+                } catch (SQLException e) {
+                    job.warn(schema + "." + table.getTableName() + ": " + e.getMessage());
+                }
+                if (table.getEstimatedRows() == null) {
+                    table.setEstimatedRows(rowEstimates.get(table.getTableName()));
+                }
+                batch.add(table);
+                if (batch.size() >= batchSize) {
+                    saveBatch(job, batch);
+                    batch.clear();
+                }
+            }
+            if (!batch.isEmpty()) {
+                saveBatch(job, batch);
+            }
+        } catch (SQLException e) {
+            log.warn("Failed to import schema {}: {}", schema, e.getMessage());
+            job.warn(schema + ": " + e.getMessage());
+        } finally {
+            job.schemaDone();
+        }
+    }
+
+    /**
+     * 驱动的索引统计没有给出行数时（如 H2），用 nl2sql.import.row-estimate-queries.{dbType} 一次读取整个 schema 的行数估计，
+     * 查询参数为 schema 名，返回 (表名, 行数) 两列
+     */
+    private Map<String, Long> readRowEstimates(SchemaImportJob job, Connection connection, String dbType, String schema) {
+        String query = environment.getProperty("nl2sql.import.row-estimate-queries." + dbType);
+        if (query == null || query.isBlank()) {
+            return Map.of();
+        }
+        Map<String, Long> estimates = new HashMap<>();
+        try (PreparedStatement ps = connection.prepareStatement(query)) {
+            ps.setString(1, schema);
+            try (ResultSet rs = ps.executeQuery()) {
+                while (rs.next()) {
+                    long rows = rs.getLong(2);
+                    if (!rs.wasNull()) {
+                        estimates.put(rs.getString(1), rows);
+                    }
+                }
+            }
+        } catch (SQLException e) {
+            job.warn(schema + ": row estimates unavailable: " + e.getMessage());
+        }
+        return estimates;
+    }
+
+    private void readColumns(DatabaseMetaData metaData, String catalog, String schema, String tablePattern,
+                             Map<String, TableInfoRequest> tables) throws SQLException {
+        try (ResultSet rs = metaData.getColumns(catalog, schema, tablePattern, "%")) {
+            while (rs.next()) {
+                TableInfoRequest table = tables.get(rs.getString("TABLE_NAME"));
+                if (table == null) {
+                    continue;
+                }
+                int jdbcType = rs.getInt("DATA_TYPE");
+                int size = rs.getInt("COLUMN_SIZE");
+                boolean hasSize = !rs.wasNull();
+                int scale = rs.getInt("DECIMAL_DIGITS");
+                boolean hasScale = !rs.wasNull();
+                String remarks = rs.getString("REMARKS");
+                table.getColumns().add(TableInfoRequest.ColumnInfoRequest.builder()
+                        .columnName(rs.getString("COLUMN_NAME"))
+                        .dataType(rs.getString("TYPE_NAME"))
+                        .dataLength(hasSize && isSized(jdbcType) ? size : null)
+                        .decimalScale(hasScale && isDecimal(jdbcType) ? scale : null)
+                        .nullable(rs.getInt("NULLABLE") != DatabaseMetaData.columnNoNulls)
+                        .defaultValue(rs.getString("COLUMN_DEF"))
+                        .description(remarks != null && !remarks.isBlank() ? remarks : null)
+                        .isAutoIncrement("YES".equalsIgnoreCase(rs.getString("IS_AUTOINCREMENT")))
+                        .ordinalPosition(rs.getInt("ORDINAL_POSITION"))
+                        .isPrimaryKey(false)
+                        .isForeignKey(false)
+                        .build());
+            }
+        }
+    }
+
+    private void readKeys(DatabaseMetaData metaData, String catalog, String schema, TableInfoRequest table)
+            throws SQLException {
+        Map<String, TableInfoRequest.ColumnInfoRequest> columns = new LinkedHashMap<>();
+        table.getColumns().forEach(column -> columns.put(column.getColumnName(), column));
+
+        List<String> primaryKey = new ArrayList<>();
+        try (ResultSet rs = metaData.getPrimaryKeys(catalog, schema, table.getTableName())) {
+            while (rs.next()) {
+                String columnName = rs.getString("COLUMN_NAME");
+                primaryKey.add(columnName);
+                TableInfoRequest.ColumnInfoRequest column = columns.get(columnName);
+                if (column != null) {
+                    column.setIsPrimaryKey(true);
+                }
+            }
+        }
+        if (!primaryKey.isEmpty()) {
+            table.setPrimaryKey(String.join(",", primaryKey));
+        }
+
+        try (ResultSet rs = metaData.getImportedKeys(catalog, schema, table.getTableName())) {
+            while (rs.next()) {
+                String columnName = rs.getString("FKCOLUMN_NAME");
+                String targetTable = rs.getString("PKTABLE_NAME");
+                String targetColumn = rs.getString("PKCOLUMN_NAME");
+                table.getForeignKeys().put(columnName, targetTable + "." + targetColumn);
+                TableInfoRequest.ColumnInfoRequest column = columns.get(columnName);
+                if (column != null) {
+                    column.setIsForeignKey(true);
+                    column.setForeignKeyTable(targetTable);
+                    column.setForeignKeyColumn(targetColumn);
+                }
+            }
+        }
+    }
+
+    /**
+     * 读取索引（近似统计），tableIndexStatistic 行的基数作为表行数估计
+     */
+    private void readIndexes(DatabaseMetaData metaData, String catalog, String schema, TableInfoRequest table)
+            throws SQLException {
+        Map<String, Map<String, Object>> indexes = new LinkedHashMap<>();
+        try (ResultSet rs = metaData.getIndexInfo(catalog, schema, table.getTableName(), false, true)) {
+            while (rs.next()) {
+                if (rs.getShort("TYPE") == DatabaseMetaData.tableIndexStatistic) {
+                    long cardinality = rs.getLong("CARDINALITY");
+                    if (!rs.wasNull()) {
+                        table.setEstimatedRows(cardinality);
+                    }
+                    continue;
+                }
+                String indexName = rs.getString("INDEX_NAME");
+                if (indexName == null) {
+                    continue;
+                }
+                boolean unique = !rs.getBoolean("NON_UNIQUE");
+                String columnName = rs.getString("COLUMN_NAME");
+                Map<String, Object> index = indexes.computeIfAbsent(indexName, name -> {
+                    Map<String, Object> info = new LinkedHashMap<>();
+                    info.put("name", name);
+                    info.put("unique", unique);
+                    info.put("columns", new ArrayList<String>());
+                    return info;
+                });
+                @SuppressWarnings("unchecked")
+                List<String> indexColumns = (List<String>) index.get("columns");
+                indexColumns.add(columnName);
+            }
+        }
+        table.getIndexes().addAll(indexes.values());
+    }
+
+    /**
+     * 保存一批表；新表批量向量化，已存在的表只在内容指纹变化时重新向量化
+     */
+    private void saveBatch(SchemaImportJob job, List<TableInfoRequest> batch) {
+        Map<String, TableInfo> previous = new LinkedHashMap<>();
+        for (TableInfoRequest request : batch) {
+            TableInfo existing = tableSchemaService.getTableByQualifiedName(request.getDatabaseName(),
+                    request.getSchemaName(), request.getTableName());
+            if (existing != null) {
+                previous.put(existing.getId(), existing);
+            }
+        }
+
+        List<TableInfo> saved = tableSchemaService.saveTables(batch);
+        List<TableInfo> created = new ArrayList<>();
+        int embedded = 0;
+        for (TableInfo table : saved) {
+            TableInfo existing = previous.get(table.getId());
+            if (existing == null) {
+                created.add(table);
+            } else if (schemaEmbeddingService.updateTableEmbedding(existing, table)) {
+                embedded++;
+            }
+        }
+        if (!created.isEmpty()) {
+            schemaEmbeddingService.addTableEmbeddings(created);
+            embedded += created.size();
+        }
+
+        job.tablesSaved(saved.size(), embedded);
+        log.info("Schema import {}: {}/{} tables saved ({} schemas done)", job.getId(),
+                job.getTablesSaved().get(), job.getTablesDiscovered().get(), job.getSchemasDone().get());
+    }
+
+    private static boolean isSized(int jdbcType) {
+        return switch (jdbcType) {
+            case Types.CHAR, Types.VARCHAR, Types.NCHAR, Types.NVARCHAR, Types.DECIMAL, Types.NUMERIC -> true;
+            default -> false;
+        };
+    }
+
+    private static boolean isDecimal(int jdbcType) {
+        return jdbcType == Types.DECIMAL || jdbcType == Types.NUMERIC;
+    }
+}
@@ -0,0 +1,175 @@
+package com.example.rag.nl2sql.service;
+
+import com.example.rag.nl2sql.entity.ColumnInfo;
+import com.example.rag.nl2sql.entity.TableInfo;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.core.env.Environment;
+import org.springframework.scheduling.concurrent.CustomizableThreadFactory;
+import org.springframework.stereotype.Service;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Locale;
+import java.util.concurrent.CompletionService;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorCompletionService;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 并行生成多个SQL候选
+ * 以不同温度和写法提示同时发起 N 次生成，每个候选返回后立即本地校验（可选再用 EXPLAIN 检查），
+ * 第一个通过的候选胜出，其余请求被取消；全部失败时返回温度最低的候选，交给修复流程处理。
+ * 取消只是中断候选线程：同步的 HTTP 调用在阻塞读取时通常不响应中断，落选的请求仍会执行完并计费，
+ * 只是结果被丢弃。胜出后不再等待这些请求，线程池按需扩容，不会阻塞后续生成
+ */
+@Slf4j
+@Service
+@RequiredArgsConstructor
+public class SpeculativeSqlGenerator {
+
+    // 第 i 个候选追加的写法提示，第一个候选使用原始提示词
+    private static final List<String> HINTS = List.of(
+            "",
+            "请优先使用显式 JOIN 和表别名，确保每个字段都带表别名前缀。",
+            "请先确定需要的表和连接条件，再写出最简洁的SQL。");
+
+    private final SqlGeneratorAgent sqlGeneratorAgent;
+    private final SqlValidator sqlValidator;
+    private final SqlExecutionService sqlExecutionService;
+    private final Environment environment;
+
+    @Value("${nl2sql.speculative.temperatures:0.0,0.4,0.8}")
+    private List<Double> temperatures;
+
+    @Value("${nl2sql.speculative.timeout-seconds:60}")
+    private long timeoutSeconds;
+
+    @Value("${nl2sql.speculative.explain:false}")
+    private boolean explainEnabled;
+
+    private ExecutorService executor;
+
+    @PostConstruct
+    void start() {
+        // 候选任务几乎全部时间都在等待大模型响应，使用按需创建的线程池
+        executor = Executors.newCachedThreadPool(new CustomizableThreadFactory("sql-candidate-"));
+    }
+
+    @PreDestroy
+    void stop() {
+        executor.shutdownNow();
+    }
+
+    /**
+     * 并行生成并返回第一个通过校验的候选
+     *
+     * @param databaseName 执行 EXPLAIN 的数据库，为 null 或未配置时跳过 EXPLAIN
+     */
+    public SpeculativeResult generate(String query, List<TableInfo> tables, List<ColumnInfo> fields,
+                                      String dialect, int maxRows, String databaseName) {
+        String explainTemplate = explainEnabled && sqlExecutionService.hasDatabase(databaseName)
+                ? environment.getProperty("nl2sql.dialects." + dialect.toLowerCase(Locale.ROOT) + ".explain")
+                : null;
+
+        CompletionService<Candidate> completion = new ExecutorCompletionService<>(executor);
+        List<Future<Candidate>> futures = new ArrayList<>();
+        for (int i = 0; i < temperatures.size(); i++) {
+            int index = i;
+            double temperature = temperatures.get(i);
+            String hint = HINTS.get(i % HINTS.size());
+            futures.add(completion.submit(() -> evaluate(index, query, tables, fields, dialect, maxRows, temperature,
+                    hint, databaseName, explainTemplate)));
+        }
+
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(timeoutSeconds);
+        List<Candidate> failed = new ArrayList<>();
+        List<String> rejections = new ArrayList<>();
+        Throwable firstException = null;
+        int received = 0;
+        try {
+            while (received < futures.size()) {
+                Future<Candidate> next = completion.poll(deadline - System.nanoTime(), TimeUnit.NANOSECONDS);
+                if (next == null) {
+                    log.warn("Speculative SQL generation timed out after {} s", timeoutSeconds);
+                    break;
+                }
+                received++;
+                Candidate candidate;
+                try {
+                    candidate = next.get();
+                } catch (ExecutionException e) {
+                    // 生成调用本身抛出异常（网络、限流等），记为被拒绝的候选；完成队列返回的就是提交时的 Future
+                    int index = futures.indexOf(next);
+                    log.warn("SQL candidate {} failed: {}", index, e.getCause().getMessage());
+                    rejections.add("candidate " + index + ": " + e.getCause().getMessage());
+                    if (firstException == null) {
+                        firstException = e.getCause();
+                    }
+                    continue;
+                }
+                if (candidate.error() == null) {
+                    log.info("SQL candidate {} (temperature {}) won after {} of {} responses",
+                            candidate.index(), temperatures.get(candidate.index()), received, futures.size());
+                    return new SpeculativeResult(candidate.result(), candidate.index(), received, rejections);
+                }
+                log.debug("SQL candidate {} rejected: {}", candidate.index(), candidate.error());
+                failed.add(candidate);
+                rejections.add("candidate " + candidate.index() + ": " + candidate.error());
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Interrupted while waiting for SQL candidates", e);
+        } finally {
+            futures.forEach(future -> future.cancel(true));
+        }
+
+        if (failed.isEmpty()) {
+            throw new IllegalStateException("No SQL candidate was generated (" + received + " of " + futures.size()
+                    + " responded): " + rejections, firstException);
+        }
+        Candidate fallback = failed.stream()
+                .min(Comparator.comparingDouble(c -> temperatures.get(c.index())))
+                .orElseThrow();
+        return new SpeculativeResult(fallback.result(), fallback.index(), received, rejections);
+    }
+
+    private Candidate evaluate(int index, String query, List<TableInfo> tables, List<ColumnInfo> fields,
+                               String dialect, int maxRows, double temperature, String hint,
+                               String databaseName, String explainTemplate) {
+        SqlGeneratorAgent.SqlGenerationResult result = sqlGeneratorAgent.generateSql(query, tables, fields, dialect,
+                maxRows, temperature, hint);
+        SqlValidator.ValidationResult validation = sqlValidator.validate(result.sql(), dialect, tables, maxRows);
+        if (!validation.valid()) {
+            return new Candidate(index, result, validation.error());
+        }
+        if (explainTemplate != null) {
+            try {
+                sqlExecutionService.explain(databaseName, validation.sql(), explainTemplate);
+            } catch (RuntimeException e) {
+                return new Candidate(index, result, e.getMessage());
+            }
+        }
+        return new Candidate(index, result, null);
+    }
+
+    private record Candidate(int index, SqlGeneratorAgent.SqlGenerationResult result, String error) {}
+
+    /**
+     * 并行生成结果
+     *
+     * @param result 胜出的候选（全部失败时为温度最低的候选）
+     * @param winner 胜出候选的序号
+     * @param responses 得出结果前收到的候选数（包括校验失败和调用异常的候选）
+     * @param rejections 收到的未通过候选的失败原因，按收到顺序
+     */
+    public record SpeculativeResult(SqlGeneratorAgent.SqlGenerationResult result, int winner, int responses,
+                                    List<String> rejections) {}
+}
@@ -0,0 +1,264 @@
+package com.example.rag.nl2sql.service;
+
+import com.example.rag.nl2sql.dto.NL2SqlResponse;
+import com.example.rag.nl2sql.entity.TableInfo;
+import com.example.rag.nl2sql.event.TableSchemaChangedEvent;
+import com.example.rag.util.VectorMath;
+import lombok.Getter;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.ai.embedding.EmbeddingModel;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Service;
+
+import java.text.Normalizer;
+import java.time.Duration;
+import java.time.Instant;
+import java.time.LocalDateTime;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Optional;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.stream.Collectors;
+
+/**
+ * 生成SQL缓存
+ * 以 规范化问题 + 方言 + 数据库 + 行数上限 + 限定表 为键缓存生成的SQL，命中时跳过字段提取和SQL生成两次大模型调用；
+ * 每条缓存记录生成时所用各表的版本（updateTime），表结构变更事件或版本不一致时失效。
+ * 可选开启语义查找：同一范围内问题向量的余弦相似度超过阈值时复用
+ */
+@Slf4j
+@Service
+@RequiredArgsConstructor
+public class SqlCacheService {
+
+    private final TableSchemaService tableSchemaService;
+    private final EmbeddingModel embeddingModel;
+
+    @Value("${nl2sql.cache.enabled:true}")
+    private boolean enabled;
+
+    @Value("${nl2sql.cache.ttl:1h}")
+    private Duration ttl;
+
+    @Value("${nl2sql.cache.max-entries:1000}")
+    private int maxEntries;
+
+    @Value("${nl2sql.cache.semantic.enabled:false}")
+    private boolean semanticEnabled;
+
+    @Value("${nl2sql.cache.semantic.similarity-threshold:0.97}")
+    private double similarityThreshold;
+
+    private final Map<String, CachedSql> entries = new ConcurrentHashMap<>();
+
+    private final AtomicLong exactHits = new AtomicLong();
+    private final AtomicLong semanticHits = new AtomicLong();
+    private final AtomicLong misses = new AtomicLong();
+
+    /**
+     * 查找缓存的SQL
+     */
+    public Optional<CachedSql> lookup(String query, CacheScope scope) {
+        if (!enabled) {
+            return Optional.empty();
+        }
+
+        Instant now = Instant.now();
+        CachedSql exact = entries.get(key(normalize(query), scope));
+        if (exact != null && isValid(exact, now)) {
+            exact.touch(now);
+            exactHits.incrementAndGet();
+            return Optional.of(exact);
+        }
+
+        if (semanticEnabled) {
+            float[] vector = VectorMath.normalize(embeddingModel.embed(normalize(query)));
+            CachedSql best = null;
+            double bestScore = similarityThreshold;
+            for (CachedSql entry : entries.values()) {
+                if (!entry.getScope().equals(scope) || entry.getVector() == null || !isValid(entry, now)) {
+                    continue;
+                }
+                double score = VectorMath.dot(vector, entry.getVector());
+                if (score >= bestScore) {
+                    best = entry;
+                    bestScore = score;
+                }
+            }
+            if (best != null) {
+                best.touch(now);
+                semanticHits.incrementAndGet();
+                log.debug("Semantic SQL cache hit (similarity {}): {}", bestScore, best.getQuery());
+                return Optional.of(best);
+            }
+        }
+
+        misses.incrementAndGet();
+        return Optional.empty();
+    }
+
+    /**
+     * 缓存生成的SQL
+     *
+     * @param tables   生成时作为上下文的表，任一表结构变化都会使该记录失效
+     * @param response 未命中时返回的响应，命中时按其中的表、查询类型、流水线模式和修复次数还原
+     */
+    public void put(String query, CacheScope scope, List<TableInfo> tables, SqlGeneratorAgent.SqlGenerationResult result,
+                    NL2SqlResponse response) {
+        if (!enabled || result.sql() == null || result.sql().isBlank()) {
+            return;
+        }
+
+        Instant now = Instant.now();
+        entries.values().removeIf(entry -> entry.isExpired(now, ttl));
+        while (!entries.isEmpty() && entries.size() >= maxEntries) {
+            entries.values().stream()
+                    .min(Comparator.comparing(CachedSql::getLastAccess))
+                    .ifPresent(eldest -> entries.remove(eldest.getKey()));
+        }
+
+        String normalized = normalize(query);
+        Map<String, LocalDateTime> tableVersions = tables.stream()
+                .collect(Collectors.toMap(TableInfo::getId, table -> Objects.requireNonNullElse(table.getUpdateTime(),
+                        LocalDateTime.MIN), (a, b) -> a));
+        float[] vector = semanticEnabled ? VectorMath.normalize(embeddingModel.embed(normalized)) : null;
+        String key = key(normalized, scope);
+        entries.put(key, new CachedSql(key, query, scope, vector, result, List.copyOf(response.getUsedTables()),
+                response.getQueryType(), response.getIsReadOnly(), response.getPipelineMode(),
+                response.getRepairAttempts(), tableVersions, now));
+    }
+
+    /**
+     * 表结构变更时失效引用了该表的缓存
+     */
+    @EventListener
+    public void onTableSchemaChanged(TableSchemaChangedEvent event) {
+        int before = entries.size();
+        entries.values().removeIf(entry -> entry.getTableVersions().containsKey(event.tableId()));
+        int removed = before - entries.size();
+        if (removed > 0) {
+            log.info("Invalidated {} cached SQL entries referencing table {}", removed, event.tableName());
+        }
+    }
+
+    /**
+     * 清空缓存
+     */
+    public void clear() {
+        entries.clear();
+    }
+
+    /**
+     * 获取缓存统计
+     */
+    public CacheStats getStats() {
+        long exact = exactHits.get();
+        long semantic = semanticHits.get();
+        long miss = misses.get();
+        long total = exact + semantic + miss;
+        return new CacheStats(exact, semantic, miss, total == 0 ? 0.0 : (double) (exact + semantic) / total,
+                entries.size());
+    }
+
+    /**
+     * 未过期且引用的表版本与当前一致
+     */
+    private boolean isValid(CachedSql entry, Instant now) {
+        if (entry.isExpired(now, ttl)) {
+            entries.remove(entry.getKey());
+            return false;
+        }
+        for (Map.Entry<String, LocalDateTime> version : entry.getTableVersions().entrySet()) {
+            TableInfo table = tableSchemaService.getTableById(version.getKey());
+            if (table == null || !version.getValue().equals(
+                    Objects.requireNonNullElse(table.getUpdateTime(), LocalDateTime.MIN))) {
+                entries.remove(entry.getKey());
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static String key(String normalizedQuery, CacheScope scope) {
+        return scope + "|" + normalizedQuery;
+    }
+
+    /**
+     * 规范化问题文本：Unicode NFKC、小写、合并空白、去掉结尾标点
+     */
+    static String normalize(String query) {
+        String normalized = Normalizer.normalize(query, Normalizer.Form.NFKC)
+                .toLowerCase(Locale.ROOT)
+                .replaceAll("\\s+", " ")
+                .strip();
+        return normalized.replaceAll("[?？。.!！;；]+$", "").strip();
+    }
+
+    /**
+     * 缓存范围：只有范围完全相同的请求才能复用同一条SQL
+     *
+     * @param tableNames 请求限定的表名（排序后），未限定时为空
+     */
+    public record CacheScope(String dialect, String databaseName, int maxRows, List<String> tableNames) {
+
+        @Override
+        public String toString() {
+            return dialect + "|" + databaseName + "|" + maxRows + "|" + String.join(",", tableNames);
+        }
+    }
+
+    @Getter
+    public static final class CachedSql {
+        private final String key;
+        private final String query;
+        private final CacheScope scope;
+        private final float[] vector;
+        private final SqlGeneratorAgent.SqlGenerationResult result;
+        private final List<NL2SqlResponse.TableInfoDTO> usedTables;
+        private final String queryType;
+        private final Boolean readOnly;
+        private final String pipelineMode;
+        private final Integer repairAttempts;
+        private final Map<String, LocalDateTime> tableVersions;
+        private final Instant createdAt;
+        private volatile Instant lastAccess;
+
+        CachedSql(String key, String query, CacheScope scope, float[] vector,
+                  SqlGeneratorAgent.SqlGenerationResult result, List<NL2SqlResponse.TableInfoDTO> usedTables,
+                  String queryType, Boolean readOnly, String pipelineMode, Integer repairAttempts,
+                  Map<String, LocalDateTime> tableVersions, Instant createdAt) {
+            this.key = key;
+            this.query = query;
+            this.scope = scope;
+            this.vector = vector;
+            this.result = result;
+            this.usedTables = usedTables;
+            this.queryType = queryType;
+            this.readOnly = readOnly;
+            this.pipelineMode = pipelineMode;
+            this.repairAttempts = repairAttempts;
+            this.tableVersions = tableVersions;
+            this.createdAt = createdAt;
+            this.lastAccess = createdAt;
+        }
+
+        void touch(Instant now) {
+            lastAccess = now;
+        }
+
+        boolean isExpired(Instant now, Duration ttl) {
+            return createdAt.plus(ttl).isBefore(now);
+        }
+    }
+
+    /**
+     * 缓存统计
+     */
+    public record CacheStats(long exactHits, long semanticHits, long misses, double hitRate, int entries) {}
+}
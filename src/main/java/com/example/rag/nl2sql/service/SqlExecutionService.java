@@ -0,0 +1,378 @@
+package com.example.rag.nl2sql.service;
+
+import com.example.rag.nl2sql.config.DataSourceSettings;
+import com.example.rag.nl2sql.entity.ColumnarResult;
+import com.zaxxer.hikari.HikariConfig;
+import com.zaxxer.hikari.HikariDataSource;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import net.sf.jsqlparser.JSQLParserException;
+import net.sf.jsqlparser.parser.CCJSqlParserUtil;
+import net.sf.jsqlparser.statement.select.Select;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.properties.bind.Bindable;
+import org.springframework.boot.context.properties.bind.Binder;
+import org.springframework.core.env.Environment;
+import org.springframework.core.io.ResourceLoader;
+import org.springframework.core.io.support.EncodedResource;
+import org.springframework.jdbc.datasource.init.ScriptUtils;
+import org.springframework.stereotype.Service;
+
+import javax.sql.DataSource;
+import java.nio.charset.StandardCharsets;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.ResultSetMetaData;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.regex.Pattern;
+
+/**
+ * 只读 SQL 执行服务
+ * 每个 databaseName 对应一个连接池；连接只读、语句带超时和最大行数限制，
+ * 结果集按 fetch size 分批从数据库拉取并逐行回调，不在内存中整体缓存
+ * <p>
+ * 语句检查只拦截明显的写操作，真正的边界是只读连接加执行后回滚：
+ * 方言特有的写法（如 H2 的 FINAL TABLE (INSERT ...)）可能通过检查，数据源账号仍应只授予查询权限
+ */
+@Slf4j
+@Service
+@RequiredArgsConstructor
+public class SqlExecutionService {
+
+    private static final Pattern LEADING_COMMENTS = Pattern.compile("^(\\s*(--[^\\n]*(\\n|$)|/\\*.*?\\*/))*\\s*", Pattern.DOTALL);
+    private static final Pattern READ_ONLY_STATEMENT = Pattern.compile("^(SELECT|WITH)\\b.*", Pattern.CASE_INSENSITIVE | Pattern.DOTALL);
+
+    private final Environment environment;
+    private final ResourceLoader resourceLoader;
+
+    @Value("${nl2sql.execution.query-timeout-seconds:30}")
+    private int queryTimeoutSeconds;
+
+    @Value("${nl2sql.execution.fetch-size:500}")
+    private int fetchSize;
+
+    private final Map<String, HikariDataSource> dataSources = new ConcurrentHashMap<>();
+
+    @PostConstruct
+    void initDataSources() {
+        Map<String, DataSourceSettings> settings = Binder.get(environment)
+                .bind("nl2sql.datasources", Bindable.mapOf(String.class, DataSourceSettings.class))
+                .orElse(Map.of());
+        settings.forEach((name, config) -> dataSources.put(name, createDataSource(name, config)));
+        log.info("NL2SQL datasources initialized: {}", dataSources.keySet());
+    }
+
+    @PreDestroy
+    void closeDataSources() {
+        dataSources.values().forEach(HikariDataSource::close);
+    }
+
+    /**
+     * 是否配置了指定数据库
+     */
+    public boolean hasDatabase(String databaseName) {
+        return databaseName != null && dataSources.containsKey(databaseName);
+    }
+
+    /**
+     * 获取指定数据库的连接池（只读），用于读取元数据等非查询操作
+     */
+    public DataSource getDataSource(String databaseName) {
+        HikariDataSource dataSource = dataSources.get(databaseName);
+        if (dataSource == null) {
+            throw new IllegalArgumentException("Unknown database: " + databaseName);
+        }
+        return dataSource;
+    }
+
+    /**
+     * 执行查询并收集结果（最多 maxRows 行）
+     */
+    public QueryResult query(String databaseName, String sql, int maxRows) {
+        List<Map<String, Object>> rows = new ArrayList<>();
+        List<String> columns = new ArrayList<>();
+        ExecutionStats stats = stream(databaseName, sql, maxRows, new RowHandler() {
+            @Override
+            public void onColumns(List<String> names) {
+                columns.addAll(names);
+            }
+
+            @Override
+            public void onRow(Object[] values) {
+                Map<String, Object> row = new LinkedHashMap<>();
+                for (int i = 0; i < values.length; i++) {
+                    row.put(columns.get(i), values[i]);
+                }
+                rows.add(row);
+            }
+        });
+        return new QueryResult(columns, rows, stats.executionTimeMs());
+    }
+
+    /**
+     * 执行查询并以列式结构收集结果（最多 maxRows 行）
+     */
+    public ColumnarResult queryColumnar(String databaseName, String sql, int maxRows) {
+        ColumnarResult[] result = new ColumnarResult[1];
+        execute(databaseName, sql, maxRows, rs -> {
+            result[0] = ColumnarResult.read(rs, maxRows);
+            return result[0].getRowCount();
+        });
+        return result[0];
+    }
+
+    /**
+     * 执行查询并逐行回调
+     *
+     * @throws IllegalArgumentException 数据库未配置或语句不是只读查询
+     * @throws SqlExecutionException 执行失败
+     */
+    public ExecutionStats stream(String databaseName, String sql, int maxRows, RowHandler handler) {
+        return execute(databaseName, sql, maxRows, rs -> {
+            ResultSetMetaData metaData = rs.getMetaData();
+            int columnCount = metaData.getColumnCount();
+            List<String> columns = new ArrayList<>(columnCount);
+            for (int i = 1; i <= columnCount; i++) {
+                columns.add(metaData.getColumnLabel(i));
+            }
+            handler.onColumns(columns);
+
+            int rowCount = 0;
+            while (rs.next()) {
+                Object[] values = new Object[columnCount];
+                for (int i = 0; i < columnCount; i++) {
+                    values[i] = rs.getObject(i + 1);
+                }
+                handler.onRow(values);
+                rowCount++;
+            }
+            return rowCount;
+        });
+    }
+
+    /**
+     * 用数据库的 EXPLAIN 检查只读查询能否被规划（不实际执行），失败时抛出 SqlExecutionException
+     *
+     * @param explainTemplate 方言的 EXPLAIN 模板，{sql} 为查询占位符
+     */
+    public void explain(String databaseName, String sql, String explainTemplate) {
+        HikariDataSource dataSource = dataSources.get(databaseName);
+        if (dataSource == null) {
+            throw new IllegalArgumentException("Unknown database: " + databaseName);
+        }
+        String statement = explainTemplate.replace("{sql}", toReadOnlyStatement(sql));
+        try (Connection connection = dataSource.getConnection()) {
+            connection.setReadOnly(true);
+            try (PreparedStatement ps = connection.prepareStatement(statement)) {
+                ps.setQueryTimeout(queryTimeoutSeconds);
+                try (ResultSet rs = ps.executeQuery()) {
+                    while (rs.next()) {
+                        // 只需确认能够生成执行计划
+                    }
+                }
+            }
+        } catch (SQLException e) {
+            throw new SqlExecutionException("EXPLAIN failed: " + e.getMessage(), e);
+        }
+    }
+
+    private ExecutionStats execute(String databaseName, String sql, int maxRows, ResultSetReader reader) {
+        HikariDataSource dataSource = dataSources.get(databaseName);
+        if (dataSource == null) {
+            throw new IllegalArgumentException("Unknown database: " + databaseName);
+        }
+        String statement = toReadOnlyStatement(sql);
+
+        long start = System.currentTimeMillis();
+        int rowCount;
+        try (Connection connection = dataSource.getConnection()) {
+            connection.setReadOnly(true);
+            // 部分驱动（如 PostgreSQL）只有在事务内才按 fetch size 使用游标
+            connection.setAutoCommit(false);
+            try (PreparedStatement ps = connection.prepareStatement(statement,
+                    ResultSet.TYPE_FORWARD_ONLY, ResultSet.CONCUR_READ_ONLY)) {
+                ps.setQueryTimeout(queryTimeoutSeconds);
+                ps.setMaxRows(maxRows);
+                ps.setFetchSize(Math.min(fetchSize, maxRows));
+
+                try (ResultSet rs = ps.executeQuery()) {
+                    rowCount = reader.read(rs);
+                }
+            } finally {
+                connection.rollback();
+            }
+        } catch (SQLException e) {
+            throw new SqlExecutionException("SQL execution failed: " + e.getMessage(), e);
+        } catch (Exception e) {
+            throw new SqlExecutionException("SQL result handling failed: " + e.getMessage(), e);
+        }
+
+        long elapsed = System.currentTimeMillis() - start;
+        log.debug("SQL executed on {}: {} rows in {} ms", databaseName, rowCount, elapsed);
+        return new ExecutionStats(rowCount, elapsed);
+    }
+
+    /**
+     * 只允许单条 SELECT / WITH 语句，并去掉末尾的分号和注释
+     * 字符串、带引号的标识符和注释中的分号不视为语句分隔符；
+     * WITH 语句还必须能被解析为查询，以拒绝 WITH d AS (DELETE ... RETURNING ...) 这类数据变更 CTE
+     */
+    private static String toReadOnlyStatement(String sql) {
+        if (sql == null || sql.isBlank()) {
+            throw new IllegalArgumentException("SQL must not be empty");
+        }
+        String statement = LEADING_COMMENTS.matcher(sql).replaceFirst("").strip();
+        int end = statementEnd(statement);
+        if (end >= 0) {
+            if (!isBlankOrComments(statement.substring(end))) {
+                throw new IllegalArgumentException("Multiple SQL statements are not allowed");
+            }
+            statement = statement.substring(0, end).strip();
+        }
+        if (!READ_ONLY_STATEMENT.matcher(statement).matches() || !parsesAsQuery(statement)) {
+            throw new IllegalArgumentException("Only SELECT statements can be executed");
+        }
+        return statement;
+    }
+
+    /**
+     * 用 JSqlParser 解析（与 SqlValidator 相同），解析结果必须是 Select
+     * JSqlParser 的 WITH 子句只接受查询，数据变更 CTE 会解析失败；
+     * 解析失败的 WITH 一律拒绝，解析失败的 SELECT 视为方言特有语法放行
+     */
+    private static boolean parsesAsQuery(String statement) {
+        try {
+            return CCJSqlParserUtil.parse(statement) instanceof Select;
+        } catch (JSQLParserException e) {
+            return !statement.regionMatches(true, 0, "WITH", 0, 4);
+        }
+    }
+
+    /**
+     * 第一个位于字符串、引号标识符和注释之外的分号位置，没有时返回 -1
+     * 反斜杠不按转义处理：MySQL 的 'a\';...' 会被判为多条语句而拒绝，只会误拒不会漏放
+     */
+    private static int statementEnd(String sql) {
+        int i = 0;
+        while (i < sql.length()) {
+            char c = sql.charAt(i);
+            if (c == ';') {
+                return i;
+            }
+            if (c == '\'' || c == '"' || c == '`') {
+                // 引号内连续两个引号表示引号本身，跳过后继续在引号内
+                int close = sql.indexOf(c, i + 1);
+                while (close >= 0 && close + 1 < sql.length() && sql.charAt(close + 1) == c) {
+                    close = sql.indexOf(c, close + 2);
+                }
+                if (close < 0) {
+                    return -1;
+                }
+                i = close + 1;
+            } else if (c == '-' && sql.startsWith("--", i)) {
+                int newline = sql.indexOf('\n', i);
+                if (newline < 0) {
+                    return -1;
+                }
+                i = newline + 1;
+            } else if (c == '/' && sql.startsWith("/*", i)) {
+                int close = sql.indexOf("*/", i + 2);
+                if (close < 0) {
+                    return -1;
+                }
+                i = close + 2;
+            } else {
+                i++;
+            }
+        }
+        return -1;
+    }
+
+    private static boolean isBlankOrComments(String sql) {
+        String rest = sql;
+        while (true) {
+            rest = LEADING_COMMENTS.matcher(rest).replaceFirst("");
+            if (!rest.startsWith(";")) {
+                return rest.isEmpty();
+            }
+            rest = rest.substring(1);
+        }
+    }
+
+    private HikariDataSource createDataSource(String name, DataSourceSettings settings) {
+        HikariConfig config = new HikariConfig();
+        config.setPoolName("nl2sql-" + name);
+        config.setJdbcUrl(settings.getUrl());
+        config.setUsername(settings.getUsername());
+        config.setPassword(settings.getPassword());
+        if (settings.getDriverClassName() != null) {
+            config.setDriverClassName(settings.getDriverClassName());
+        }
+        config.setMaximumPoolSize(settings.getMaximumPoolSize());
+        config.setReadOnly(true);
+        HikariDataSource dataSource = new HikariDataSource(config);
+
+        if (!settings.getInitScripts().isEmpty()) {
+            try (Connection connection = dataSource.getConnection()) {
+                // 初始化脚本需要写权限，连接归还时连接池会恢复只读
+                connection.setReadOnly(false);
+                for (String script : settings.getInitScripts()) {
+                    ScriptUtils.executeSqlScript(connection,
+                            new EncodedResource(resourceLoader.getResource(script), StandardCharsets.UTF_8));
+                }
+                log.info("Datasource {} initialized with scripts {}", name, settings.getInitScripts());
+            } catch (SQLException e) {
+                dataSource.close();
+                throw new IllegalStateException("Failed to initialize datasource " + name, e);
+            }
+        }
+        return dataSource;
+    }
+
+    @FunctionalInterface
+    private interface ResultSetReader {
+
+        /**
+         * 读取结果集，返回读取的行数
+         */
+        int read(ResultSet rs) throws Exception;
+    }
+
+    /**
+     * 逐行结果回调
+     */
+    public interface RowHandler {
+
+        void onColumns(List<String> columns) throws Exception;
+
+        void onRow(Object[] values) throws Exception;
+    }
+
+    /**
+     * 执行统计
+     */
+    public record ExecutionStats(int rowCount, long executionTimeMs) {}
+
+    /**
+     * 收集后的查询结果
+     */
+    public record QueryResult(List<String> columns, List<Map<String, Object>> rows, long executionTimeMs) {}
+
+    /**
+     * SQL 执行失败
+     */
+    public static class SqlExecutionException extends RuntimeException {
+
+        public SqlExecutionException(String message, Throwable cause) {
+            super(message, cause);
+        }
+    }
+}
@@ -2,15 +2,20 @@ package com.example.rag.nl2sql.service;
 
 import com.example.rag.nl2sql.entity.ColumnInfo;
 import com.example.rag.nl2sql.entity.TableInfo;
+import com.example.rag.prompt.PromptCacheMetrics;
+import com.example.rag.prompt.PromptTemplateRegistry;
+import com.fasterxml.jackson.databind.ObjectMapper;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.ai.chat.client.ChatClient;
+import org.springframework.ai.chat.messages.AssistantMessage;
 import org.springframework.ai.chat.messages.Message;
 import org.springframework.ai.chat.messages.SystemMessage;
 import org.springframework.ai.chat.messages.UserMessage;
+import org.springframework.ai.chat.model.ChatResponse;
 import org.springframework.ai.chat.prompt.Prompt;
+import org.springframework.ai.openai.OpenAiChatOptions;
 import org.springframework.beans.factory.annotation.Value;
-import org.springframework.core.io.Resource;
 import org.springframework.stereotype.Service;
 
 import java.util.*;
@@ -24,10 +29,23 @@ import java.util.*;
 @RequiredArgsConstructor
 public class SqlGeneratorAgent {
     
+    private static final String SYSTEM_TEMPLATE = "nl2sql/sql-generator-prompt";
+    private static final String USER_TEMPLATE = "nl2sql/sql-generator-user";
+    private static final String FUSED_TEMPLATE = "nl2sql/sql-generator-fused";
+    private static final String REPAIR_TEMPLATE = "nl2sql/sql-repair";
+    private static final String DIALECT_TEMPLATE_PREFIX = "nl2sql/dialects/";
+    private static final String CALLER = "sql-generator";
+    
     private final ChatClient chatClient;
     
-    @Value("classpath:/prompts/nl2sql/sql-generator-prompt.st")
-    private Resource sqlGeneratorPrompt;
+    private final PromptTemplateRegistry promptTemplates;
+    
+    private final PromptCacheMetrics promptCacheMetrics;
+    
+    private final ObjectMapper objectMapper = new ObjectMapper();
+    
+    @Value("${nl2sql.sql-generator.max-rows:100}")
+    private int defaultMaxRows;
     
     /**
      * 生成SQL语句
@@ -40,32 +58,187 @@ public class SqlGeneratorAgent {
      */
     public SqlGenerationResult generateSql(String naturalQuery, List<TableInfo> relevantTables, 
                                             List<ColumnInfo> relevantFields, String dialect) {
+        return generateSql(naturalQuery, relevantTables, relevantFields, dialect, defaultMaxRows);
+    }
+    
+    /**
+     * 生成SQL语句，并限制最大返回行数
+     * 
+     * @param maxRows 最大返回行数
+     */
+    public SqlGenerationResult generateSql(String naturalQuery, List<TableInfo> relevantTables, 
+                                            List<ColumnInfo> relevantFields, String dialect, int maxRows) {
+        return generateSql(naturalQuery, relevantTables, relevantFields, dialect, maxRows, null, null);
+    }
+    
+    /**
+     * 按指定温度和附加提示生成SQL，用于并行生成多个不同的候选
+     * 
+     * @param temperature 采样温度，为 null 时使用默认配置
+     * @param hint 追加到用户提示词后的写法提示，可为 null
+     */
+    public SqlGenerationResult generateSql(String naturalQuery, List<TableInfo> relevantTables,
+                                            List<ColumnInfo> relevantFields, String dialect, int maxRows,
+                                            Double temperature, String hint) {
         log.info("Generating SQL for query: {} with dialect: {}", naturalQuery, dialect);
         
-        // 构建精简的上下文
-        String context = buildContext(relevantTables, relevantFields);
+        List<Message> messages = buildMessages(naturalQuery, relevantTables, relevantFields, dialect, maxRows);
+        if (hint != null && !hint.isBlank()) {
+            messages.add(new UserMessage(hint));
+        }
+        Prompt prompt = temperature != null
+                ? new Prompt(messages, OpenAiChatOptions.builder().temperature(temperature).build())
+                : new Prompt(messages);
         
-        // 构建系统提示词
-        String systemPrompt = buildSystemPrompt(dialect);
+        String response = call(prompt);
         
-        // 构建用户提示词
-        String userPrompt = buildUserPrompt(naturalQuery, context);
+        log.debug("SQL generator response: {}", response);
+        
+        // 解析响应
+        return parseSqlResponse(response);
+    }
+    
+    /**
+     * 修复校验失败的SQL
+     * 在原始对话后追加上一次生成的SQL和具体的校验错误，让模型按同样格式重新输出
+     *
+     * @param failedSql 校验失败的SQL
+     * @param error 校验错误信息
+     */
+    public SqlGenerationResult repairSql(String naturalQuery, List<TableInfo> relevantTables,
+                                         List<ColumnInfo> relevantFields, String dialect, int maxRows,
+                                         String failedSql, String error) {
+        log.info("Repairing SQL for query: {}, error: {}", naturalQuery, error);
+        
+        List<Message> messages = buildMessages(naturalQuery, relevantTables, relevantFields, dialect, maxRows);
+        messages.add(new AssistantMessage(failedSql));
+        messages.add(new UserMessage(promptTemplates.render(REPAIR_TEMPLATE, Map.of("error", error))));
+        
+        String response = call(new Prompt(messages));
+        
+        log.debug("SQL repair response: {}", response);
+        return parseSqlResponse(response);
+    }
+    
+    /**
+     * 单次调用同时选择字段并生成SQL（fused 模式）
+     * 上下文包含候选表的全部字段，每个字段一行，模型在输出中额外返回所用字段
+     */
+    public FusedGenerationResult generateFused(String naturalQuery, List<TableInfo> candidateTables,
+                                               String dialect, int maxRows) {
+        log.info("Generating SQL (fused) for query: {} with dialect: {}", naturalQuery, dialect);
         
-        // 调用LLM
         List<Message> messages = new ArrayList<>();
-        messages.add(new SystemMessage(systemPrompt));
-        messages.add(new UserMessage(userPrompt));
+        messages.add(new SystemMessage(buildSystemPrompt(dialect)
+                + promptTemplates.renderStatic(FUSED_TEMPLATE, Map.of())));
+        messages.add(new UserMessage(buildUserPrompt(naturalQuery, buildCompactContext(candidateTables), maxRows)));
         
-        Prompt prompt = new Prompt(messages);
+        String response = call(new Prompt(messages));
         
-        String response = chatClient.prompt(prompt)
-                .call()
-                .content();
+        log.debug("Fused SQL generator response: {}", response);
         
-        log.debug("SQL generator response: {}", response);
+        SqlGenerationResult result = parseSqlResponse(response);
+        List<ColumnInfo> fields = resolveFields(parseFieldNames(response), candidateTables);
+        return new FusedGenerationResult(result, fields);
+    }
+    
+    /**
+     * 调用模型并记录前缀缓存命中情况
+     */
+    private String call(Prompt prompt) {
+        ChatResponse response = chatClient.prompt(prompt)
+                .call()
+                .chatResponse();
+        promptCacheMetrics.record(CALLER, response);
+        return response.getResult().getOutput().getContent();
+    }
+    
+    /**
+     * 紧凑的表结构上下文：每张表一行表头，每个字段一行
+     */
+    private String buildCompactContext(List<TableInfo> tables) {
+        StringBuilder context = new StringBuilder();
+        for (TableInfo table : sortedByName(tables)) {
+            context.append("\n表: ").append(table.getTableName());
+            if (table.getTableAlias() != null && !table.getTableAlias().isEmpty()) {
+                context.append(" (").append(table.getTableAlias()).append(")");
+            }
+            context.append(" - ").append(table.getDescription()).append("\n");
+            if (table.getColumns() == null) {
+                continue;
+            }
+            for (ColumnInfo column : table.getColumns()) {
+                context.append("  ").append(column.getColumnName()).append(" ").append(column.getDataType());
+                if (column.getDescription() != null && !column.getDescription().isEmpty()) {
+                    context.append(" (").append(column.getDescription()).append(")");
+                }
+                if (Boolean.TRUE.equals(column.getIsPrimaryKey())) {
+                    context.append(" [主键]");
+                }
+                if (Boolean.TRUE.equals(column.getIsForeignKey()) && column.getForeignKeyTable() != null) {
+                    context.append(" [外键->").append(column.getForeignKeyTable())
+                            .append(".").append(column.getForeignKeyColumn()).append("]");
+                }
+                context.append("\n");
+            }
+        }
+        return context.toString();
+    }
+    
+    @SuppressWarnings("unchecked")
+    private List<String> parseFieldNames(String response) {
+        String jsonStr = extractJson(response);
+        if (jsonStr == null) {
+            return List.of();
+        }
+        try {
+            Map<String, Object> result = objectMapper.readValue(jsonStr, Map.class);
+            Object fields = result.get("fields");
+            return fields instanceof List<?> list ? (List<String>) list : List.of();
+        } catch (Exception e) {
+            log.warn("Failed to parse fields from fused response: {}", e.getMessage());
+            return List.of();
+        }
+    }
+    
+    /**
+     * 把 "表名.字段名" 映射回候选字段；模型没有返回可识别的字段时使用全部候选字段
+     */
+    private static List<ColumnInfo> resolveFields(List<String> names, List<TableInfo> tables) {
+        List<ColumnInfo> fields = new ArrayList<>();
+        for (String name : names) {
+            int dot = name.lastIndexOf('.');
+            String tableName = dot > 0 ? name.substring(0, dot) : null;
+            String columnName = dot > 0 ? name.substring(dot + 1) : name;
+            for (TableInfo table : tables) {
+                if ((tableName != null && !table.getTableName().equalsIgnoreCase(tableName)) || table.getColumns() == null) {
+                    continue;
+                }
+                table.getColumns().stream()
+                        .filter(column -> column.getColumnName().equalsIgnoreCase(columnName))
+                        .filter(column -> !fields.contains(column))
+                        .findFirst()
+                        .ifPresent(fields::add);
+            }
+        }
+        if (!fields.isEmpty()) {
+            return fields;
+        }
+        return tables.stream()
+                .filter(table -> table.getColumns() != null)
+                .flatMap(table -> table.getColumns().stream())
+                .toList();
+    }
+    
+    private List<Message> buildMessages(String naturalQuery, List<TableInfo> relevantTables,
+                                        List<ColumnInfo> relevantFields, String dialect, int maxRows) {
+        // 构建精简的上下文
+        String context = buildContext(relevantTables, relevantFields);
         
-        // 解析响应
-        return parseSqlResponse(response);
+        List<Message> messages = new ArrayList<>();
+        messages.add(new SystemMessage(buildSystemPrompt(dialect)));
+        messages.add(new UserMessage(buildUserPrompt(naturalQuery, context, maxRows)));
+        return messages;
     }
     
     /**
@@ -74,8 +247,11 @@ public class SqlGeneratorAgent {
     private String buildContext(List<TableInfo> tables, List<ColumnInfo> fields) {
         StringBuilder context = new StringBuilder();
         
-        // 按表分组字段
-        Map<String, List<ColumnInfo>> fieldsByTable = new HashMap<>();
+        // 按表分组字段，表按名称排序，使相同的表和字段得到完全相同的上下文
+        Map<String, List<ColumnInfo>> fieldsByTable = new LinkedHashMap<>();
+        for (TableInfo table : sortedByName(tables)) {
+            fieldsByTable.put(table.getId(), new ArrayList<>());
+        }
         for (ColumnInfo field : fields) {
             fieldsByTable.computeIfAbsent(field.getTableId(), k -> new ArrayList<>()).add(field);
         }
@@ -92,7 +268,7 @@ public class SqlGeneratorAgent {
             List<ColumnInfo> tableFields = entry.getValue();
             TableInfo table = tableMap.get(tableId);
             
-            if (table != null) {
+            if (table != null && !tableFields.isEmpty()) {
                 context.append("\n表: ").append(table.getTableName());
                 if (table.getTableAlias() != null && !table.getTableAlias().isEmpty()) {
                     context.append(" (").append(table.getTableAlias()).append(")");
@@ -134,105 +310,34 @@ public class SqlGeneratorAgent {
         return context.toString();
     }
     
+    private static List<TableInfo> sortedByName(List<TableInfo> tables) {
+        return tables.stream()
+                .sorted(Comparator.comparing(TableInfo::getTableName))
+                .toList();
+    }
+    
     /**
-     * 构建系统提示词
+     * 构建系统提示词，只依赖方言，按方言缓存
      */
     private String buildSystemPrompt(String dialect) {
-        String dialectSpecifics = getDialectSpecifics(dialect);
-        
-        return String.format("""
-            你是一个专业的SQL生成专家。你的任务是根据用户提供的自然语言查询和相关表字段信息，
-            生成准确、高效的SQL语句。
-            
-            SQL方言: %s
-            
-            %s
-            
-            规则：
-            1. 只使用提供的表和字段
-            2. 正确使用JOIN连接相关表
-            3. 使用适当的WHERE条件过滤数据
-            4. 使用合适的聚合函数（COUNT, SUM, AVG等）当需要时
-            5. 使用GROUP BY和HAVING当需要时
-            6. 使用ORDER BY进行排序
-            7. 使用LIMIT限制返回行数（默认100行）
-            8. 使用表别名提高可读性
-            9. 避免使用SELECT *，明确列出需要的字段
-            10. 确保SQL语法正确，符合指定方言
-            
-            输出格式：
-            {
-              "sql": "生成的SQL语句",
-              "explanation": "SQL语句的自然语言解释",
-              "queryType": "SELECT/INSERT/UPDATE/DELETE",
-              "tables": ["使用的表名"],
-              "confidence": "high/medium/low"
-            }
-            """, dialect, dialectSpecifics);
+        return promptTemplates.renderStatic(SYSTEM_TEMPLATE,
+                Map.of("dialect", dialect, "dialectRules", getDialectSpecifics(dialect)));
     }
     
     /**
-     * 获取方言特定的提示
+     * 获取方言特定的提示，未配置的方言使用 nl2sql/dialects/default
      */
     private String getDialectSpecifics(String dialect) {
-        return switch (dialect.toLowerCase()) {
-            case "mysql" -> """
-                MySQL特定规则：
-                - 使用反引号(`)包裹表名和字段名
-                - LIMIT子句格式: LIMIT offset, count 或 LIMIT count OFFSET offset
-                - 支持REGEXP正则匹配
-                - 日期函数: NOW(), DATE_FORMAT(), DATEDIFF()
-                """;
-            case "postgresql" -> """
-                PostgreSQL特定规则：
-                - 使用双引号(")包裹表名和字段名（如果需要）
-                - LIMIT子句格式: LIMIT count OFFSET offset
-                - 使用ILIKE进行不区分大小写的匹配
-                - 日期函数: NOW(), TO_CHAR(), AGE()
-                - 支持JSON/JSONB操作
-                """;
-            case "sqlite" -> """
-                SQLite特定规则：
-                - 使用双引号(")或方括号包裹标识符
-                - LIMIT子句格式: LIMIT count OFFSET offset
-                - 日期函数: datetime(), date(), strftime()
-                - 不支持某些高级SQL特性
-                """;
-            case "oracle" -> """
-                Oracle特定规则：
-                - 使用双引号(")包裹标识符
-                - 使用ROWNUM或FETCH FIRST限制行数
-                - 日期函数: SYSDATE, TO_DATE(), TO_CHAR()
-                - 使用DUAL表进行伪查询
-                """;
-            case "sqlserver" -> """
-                SQL Server特定规则：
-                - 使用方括号([])包裹标识符
-                - 使用TOP限制行数: SELECT TOP n ...
-                - 日期函数: GETDATE(), CONVERT(), FORMAT()
-                - 使用OFFSET FETCH进行分页
-                """;
-            default -> """
-                通用SQL规则：
-                - 使用标准SQL语法
-                - 使用LIMIT或TOP限制返回行数
-                """;
-        };
+        String name = DIALECT_TEMPLATE_PREFIX + dialect.toLowerCase(Locale.ROOT);
+        return promptTemplates.renderStatic(promptTemplates.contains(name) ? name : DIALECT_TEMPLATE_PREFIX + "default",
+                Map.of());
     }
     
     /**
      * 构建用户提示词
      */
-    private String buildUserPrompt(String naturalQuery, String context) {
-        return String.format("""
-            用户查询: %s
-            
-            相关表和字段信息:
-            %s
-            
-            请根据以上信息生成SQL语句。
-            只返回JSON格式的结果，不要包含其他解释文字。
-            """, naturalQuery, context);
+    private String buildUserPrompt(String naturalQuery, String context, int maxRows) {
+        return promptTemplates.render(USER_TEMPLATE, Map.of("query", naturalQuery, "context", context, "maxRows", maxRows));
     }
     
     /**
@@ -248,8 +353,7 @@ public class SqlGeneratorAgent {
                 return new SqlGenerationResult(sql, "生成的SQL", "SELECT", List.of(), "medium");
             }
             
-            com.fasterxml.jackson.databind.ObjectMapper mapper = new com.fasterxml.jackson.databind.ObjectMapper();
-            Map<String, Object> result = mapper.readValue(jsonStr, Map.class);
+            Map<String, Object> result = objectMapper.readValue(jsonStr, Map.class);
             
             String sql = (String) result.get("sql");
             String explanation = (String) result.getOrDefault("explanation", "");
@@ -329,6 +433,13 @@ public class SqlGeneratorAgent {
         return sql;
     }
     
+    /**
+     * fused 模式生成结果
+     *
+     * @param fields 模型选出的字段
+     */
+    public record FusedGenerationResult(SqlGenerationResult result, List<ColumnInfo> fields) {}
+    
     /**
      * SQL生成结果
      */
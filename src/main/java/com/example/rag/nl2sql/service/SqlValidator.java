@@ -0,0 +1,283 @@
+package com.example.rag.nl2sql.service;
+
+import com.example.rag.nl2sql.entity.ColumnInfo;
+import com.example.rag.nl2sql.entity.TableInfo;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import net.sf.jsqlparser.JSQLParserException;
+import net.sf.jsqlparser.expression.LongValue;
+import net.sf.jsqlparser.parser.CCJSqlParserUtil;
+import net.sf.jsqlparser.schema.Column;
+import net.sf.jsqlparser.schema.Table;
+import net.sf.jsqlparser.statement.Statement;
+import net.sf.jsqlparser.statement.select.Limit;
+import net.sf.jsqlparser.statement.select.PlainSelect;
+import net.sf.jsqlparser.statement.select.Select;
+import net.sf.jsqlparser.statement.select.SelectItem;
+import net.sf.jsqlparser.util.TablesNamesFinder;
+import org.springframework.core.env.Environment;
+import org.springframework.stereotype.Component;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * SQL 本地校验
+ * 解析生成的 SQL 语法树：只允许单条 SELECT，引用的表和字段必须在表结构库中存在，
+ * 没有行数限制时按 nl2sql.dialects.{dialect}.pagination 追加分页子句，超过上限的 LIMIT 收紧到上限。
+ * 校验失败的错误信息会交给大模型修复，避免把错误 SQL 发到数据库执行
+ */
+@Slf4j
+@Component
+@RequiredArgsConstructor
+public class SqlValidator {
+
+    // 会被解析为字段但并不是字段的关键字
+    private static final Set<String> PSEUDO_COLUMNS = Set.of(
+            "current_date", "current_time", "current_timestamp", "sysdate", "systimestamp",
+            "localtime", "localtimestamp", "rownum", "level", "true", "false", "null");
+
+    private final TableSchemaService tableSchemaService;
+    private final Environment environment;
+
+    /**
+     * 校验并规范化 SQL
+     *
+     * @param candidateTables 生成时使用的候选表，优先在其中按名称查找（忽略大小写）
+     * @param maxRows 最大返回行数
+     */
+    public ValidationResult validate(String sql, String dialect, List<TableInfo> candidateTables, int maxRows) {
+        if (sql == null || sql.isBlank()) {
+            return ValidationResult.invalid("SQL为空");
+        }
+        String text = stripTrailingSemicolons(sql);
+
+        List<Statement> statements;
+        try {
+            statements = CCJSqlParserUtil.parseStatements(text).getStatements();
+        } catch (JSQLParserException e) {
+            return ValidationResult.invalid("SQL语法错误: " + rootMessage(e));
+        }
+        if (statements.size() != 1) {
+            return ValidationResult.invalid("只允许单条SQL语句，实际为 " + statements.size() + " 条");
+        }
+        if (!(statements.get(0) instanceof Select select)) {
+            return ValidationResult.invalid("只允许SELECT查询，实际为 " + statements.get(0).getClass().getSimpleName());
+        }
+
+        String referenceError = checkReferences(select, candidateTables);
+        if (referenceError != null) {
+            return ValidationResult.invalid(referenceError);
+        }
+
+        return ValidationResult.valid(applyRowLimit(select, text, dialect, maxRows) + ";");
+    }
+
+    // ========== 表和字段 ==========
+
+    private String checkReferences(Select select, List<TableInfo> candidateTables) {
+        ReferenceCollector collector = new ReferenceCollector();
+        List<String> tableNames;
+        try {
+            tableNames = collector.getTableList(select);
+        } catch (UnsupportedOperationException e) {
+            log.debug("Skipping reference check for unsupported SQL construct: {}", e.getMessage());
+            return null;
+        }
+
+        Map<String, TableInfo> referenced = new HashMap<>();
+        List<String> unknownTables = new ArrayList<>();
+        for (String name : tableNames) {
+            String tableName = simpleName(name);
+            TableInfo table = findTable(tableName, candidateTables);
+            if (table == null) {
+                unknownTables.add(tableName);
+            } else {
+                referenced.put(tableName.toLowerCase(Locale.ROOT), table);
+            }
+        }
+        if (!unknownTables.isEmpty()) {
+            return "引用了不存在的表: " + String.join(", ", unknownTables);
+        }
+
+        // 表别名 -> 表
+        Map<String, TableInfo> byQualifier = new HashMap<>(referenced);
+        collector.aliases.forEach((alias, tableName) -> {
+            TableInfo table = referenced.get(tableName);
+            if (table != null) {
+                byQualifier.put(alias, table);
+            }
+        });
+
+        List<String> unknownColumns = new ArrayList<>();
+        for (Column column : collector.columns) {
+            String columnName = unquote(column.getColumnName());
+            String lowerName = columnName.toLowerCase(Locale.ROOT);
+            if ("*".equals(columnName) || PSEUDO_COLUMNS.contains(lowerName)) {
+                continue;
+            }
+            Table qualifier = column.getTable();
+            if (qualifier != null && qualifier.getName() != null) {
+                // 限定名无法解析时（子查询、CTE 别名）不做检查
+                TableInfo table = byQualifier.get(unquote(qualifier.getName()).toLowerCase(Locale.ROOT));
+                if (table != null && hasColumns(table) && !hasColumn(table, lowerName)) {
+                    unknownColumns.add(unquote(qualifier.getName()) + "." + columnName);
+                }
+            } else if (!referenced.isEmpty()
+                    && !collector.selectAliases.contains(lowerName)
+                    && referenced.values().stream().allMatch(SqlValidator::hasColumns)
+                    && referenced.values().stream().noneMatch(table -> hasColumn(table, lowerName))) {
+                unknownColumns.add(columnName);
+            }
+        }
+        if (!unknownColumns.isEmpty()) {
+            return "引用了不存在的字段: " + String.join(", ", unknownColumns);
+        }
+        return null;
+    }
+
+    private TableInfo findTable(String tableName, List<TableInfo> candidateTables) {
+        for (TableInfo table : candidateTables) {
+            if (table.getTableName().equalsIgnoreCase(tableName)) {
+                // 候选表可能只含部分字段（字段级检索），字段校验使用完整的表结构
+                TableInfo full = tableSchemaService.getTableById(table.getId());
+                return full != null ? full : table;
+            }
+        }
+        TableInfo table = tableSchemaService.getTableByName(tableName);
+        return table != null ? table : tableSchemaService.getTableByName(tableName.toLowerCase(Locale.ROOT));
+    }
+
+    private static boolean hasColumns(TableInfo table) {
+        return table.getColumns() != null && !table.getColumns().isEmpty();
+    }
+
+    private static boolean hasColumn(TableInfo table, String lowerName) {
+        for (ColumnInfo column : table.getColumns()) {
+            if (column.getColumnName().toLowerCase(Locale.ROOT).equals(lowerName)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    // ========== 行数限制 ==========
+
+    private String applyRowLimit(Select select, String text, String dialect, int maxRows) {
+        Limit limit = select.getLimit();
+        if (limit != null) {
+            if (limit.getRowCount() instanceof LongValue rowCount && rowCount.getValue() > maxRows) {
+                limit.setRowCount(new LongValue(maxRows));
+                return select.toString();
+            }
+            return text;
+        }
+        if (select.getFetch() != null || (select instanceof PlainSelect plain && plain.getTop() != null)) {
+            return text;
+        }
+
+        String pagination = environment.getProperty("nl2sql.dialects." + dialect.toLowerCase(Locale.ROOT) + ".pagination");
+        if (pagination == null || pagination.isBlank()) {
+            return text;
+        }
+        String clause = pagination.replace("{limit}", String.valueOf(maxRows)).replace("{offset}", "0");
+        // SQL Server 的 OFFSET ... FETCH 必须跟在 ORDER BY 之后
+        if ("sqlserver".equalsIgnoreCase(dialect) && clause.startsWith("OFFSET")
+                && (select.getOrderByElements() == null || select.getOrderByElements().isEmpty())) {
+            clause = "ORDER BY (SELECT NULL) " + clause;
+        }
+        // 换行追加，避免子句落进末尾的 -- 行注释
+        return text + "\n" + clause;
+    }
+
+    // ========== 工具方法 ==========
+
+    private static String stripTrailingSemicolons(String sql) {
+        String text = sql.strip();
+        while (text.endsWith(";")) {
+            text = text.substring(0, text.length() - 1).strip();
+        }
+        return text;
+    }
+
+    private static String simpleName(String qualifiedName) {
+        String name = unquote(qualifiedName);
+        int dot = name.lastIndexOf('.');
+        return dot >= 0 ? name.substring(dot + 1) : name;
+    }
+
+    private static String unquote(String identifier) {
+        return identifier.replace("`", "").replace("\"", "").replace("[", "").replace("]", "");
+    }
+
+    private static String rootMessage(Throwable e) {
+        Throwable root = e;
+        while (root.getCause() != null) {
+            root = root.getCause();
+        }
+        String message = root.getMessage() != null ? root.getMessage() : e.getMessage();
+        // JavaCC 的错误信息会列出所有期望的记号，只保留第一行
+        int newline = message.indexOf('\n');
+        return newline > 0 ? message.substring(0, newline) : message;
+    }
+
+    /**
+     * 在查找表名的同时收集字段引用、表别名和 SELECT 列别名
+     */
+    private static class ReferenceCollector extends TablesNamesFinder {
+
+        private final List<Column> columns = new ArrayList<>();
+        // 小写别名 -> 小写表名
+        private final Map<String, String> aliases = new HashMap<>();
+        private final Set<String> selectAliases = new HashSet<>();
+
+        @Override
+        public void visit(Table table) {
+            if (table.getAlias() != null && table.getName() != null) {
+                aliases.put(unquote(table.getAlias().getName()).toLowerCase(Locale.ROOT),
+                        simpleName(table.getName()).toLowerCase(Locale.ROOT));
+            }
+            super.visit(table);
+        }
+
+        @Override
+        public void visit(Column column) {
+            columns.add(column);
+            super.visit(column);
+        }
+
+        @Override
+        public void visit(PlainSelect plainSelect) {
+            if (plainSelect.getSelectItems() != null) {
+                for (SelectItem<?> item : plainSelect.getSelectItems()) {
+                    if (item.getAlias() != null) {
+                        selectAliases.add(unquote(item.getAlias().getName()).toLowerCase(Locale.ROOT));
+                    }
+                }
+            }
+            super.visit(plainSelect);
+        }
+    }
+
+    /**
+     * 校验结果
+     *
+     * @param sql 规范化后的 SQL（已补充行数限制），校验失败时为 null
+     * @param error 校验失败原因
+     */
+    public record ValidationResult(boolean valid, String sql, String error) {
+
+        static ValidationResult valid(String sql) {
+            return new ValidationResult(true, sql, null);
+        }
+
+        static ValidationResult invalid(String error) {
+            return new ValidationResult(false, null, error);
+        }
+    }
+}
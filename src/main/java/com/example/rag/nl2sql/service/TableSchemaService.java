@@ -3,12 +3,15 @@ package com.example.rag.nl2sql.service;
 import com.example.rag.nl2sql.dto.TableInfoRequest;
 import com.example.rag.nl2sql.entity.ColumnInfo;
 import com.example.rag.nl2sql.entity.TableInfo;
+import com.example.rag.nl2sql.event.TableSchemaChangedEvent;
+import com.example.rag.nl2sql.repository.TableSchemaRepository;
+import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.context.ApplicationEventPublisher;
 import org.springframework.stereotype.Service;
 
 import java.time.LocalDateTime;
 import java.util.*;
-import java.util.concurrent.ConcurrentHashMap;
 import java.util.stream.Collectors;
 
 /**
@@ -17,23 +20,26 @@ import java.util.stream.Collectors;
  */
 @Slf4j
 @Service
+@RequiredArgsConstructor
 public class TableSchemaService {
     
-    // 内存存储：表ID -> 表信息
-    private final Map<String, TableInfo> tableStore = new ConcurrentHashMap<>();
+    private final ApplicationEventPublisher eventPublisher;
     
-    // 内存存储：表名 -> 表ID
-    private final Map<String, String> tableNameIndex = new ConcurrentHashMap<>();
+    // 表结构存储，维护表名、数据库名、数据库类型索引
+    private final TableSchemaRepository repository;
     
     /**
      * 创建或更新表信息
+     * 按 (数据库名, schema名, 表名) 匹配已有表，不同 schema 下的同名表分别保存；
+     * 查找和写入在同一把锁内完成，并行导入时不会产生重复表
      */
-    public TableInfo saveTable(TableInfoRequest request) {
-        String tableId = tableNameIndex.get(request.getTableName());
+    public synchronized TableInfo saveTable(TableInfoRequest request) {
+        Optional<TableInfo> existing = repository.findByQualifiedName(request.getDatabaseName(),
+                request.getSchemaName(), request.getTableName());
         
-        if (tableId != null) {
+        if (existing.isPresent()) {
             // 更新现有表
-            return updateTable(tableId, request);
+            return updateTable(existing.get().getId(), request);
         } else {
             // 创建新表
             return createTable(request);
@@ -59,15 +65,17 @@ public class TableSchemaService {
                 .foreignKeys(request.getForeignKeys())
                 .indexes(request.getIndexes())
                 .metadata(request.getMetadata())
+                .estimatedRows(request.getEstimatedRows())
                 .createTime(LocalDateTime.now())
                 .updateTime(LocalDateTime.now())
                 .enabled(true)
                 .build();
         
-        tableStore.put(id, tableInfo);
-        tableNameIndex.put(request.getTableName(), id);
+        repository.save(tableInfo);
         
         log.info("Table created: {} ({})", request.getTableName(), id);
+        eventPublisher.publishEvent(new TableSchemaChangedEvent(id, tableInfo.getTableName(),
+                TableSchemaChangedEvent.ChangeType.CREATED));
         return tableInfo;
     }
     
@@ -75,17 +83,11 @@ public class TableSchemaService {
      * 更新表信息
      */
     private TableInfo updateTable(String id, TableInfoRequest request) {
-        TableInfo existing = tableStore.get(id);
+        TableInfo existing = repository.findById(id).orElse(null);
         if (existing == null) {
             throw new IllegalArgumentException("Table not found: " + id);
         }
         
-        // 如果表名变更，更新索引
-        if (!existing.getTableName().equals(request.getTableName())) {
-            tableNameIndex.remove(existing.getTableName());
-            tableNameIndex.put(request.getTableName(), id);
-        }
-        
         TableInfo updated = TableInfo.builder()
                 .id(id)
                 .tableName(request.getTableName())
@@ -94,18 +96,28 @@ public class TableSchemaService {
                 .dbType(request.getDbType())
                 .databaseName(request.getDatabaseName())
                 .schemaName(request.getSchemaName())
-                .columns(convertColumns(request.getColumns(), id))
+                .columns(convertColumns(request.getColumns(), id, existing.getColumns()))
                 .primaryKey(request.getPrimaryKey())
                 .foreignKeys(request.getForeignKeys())
                 .indexes(request.getIndexes())
                 .metadata(request.getMetadata())
+                .estimatedRows(request.getEstimatedRows() != null ? request.getEstimatedRows() : existing.getEstimatedRows())
                 .createTime(existing.getCreateTime())
-                .updateTime(LocalDateTime.now())
+                .updateTime(existing.getUpdateTime())
                 .enabled(existing.getEnabled())
                 .build();
         
-        tableStore.put(id, updated);
+        // 内容没有变化时保留原对象，不更新时间也不发布变更事件（SQL缓存和向量无需失效）
+        if (updated.equals(existing)) {
+            log.debug("Table unchanged: {} ({})", request.getTableName(), id);
+            return existing;
+        }
+        updated.setUpdateTime(LocalDateTime.now());
+        
+        repository.save(updated);
         log.info("Table updated: {} ({})", request.getTableName(), id);
+        eventPublisher.publishEvent(new TableSchemaChangedEvent(id, updated.getTableName(),
+                TableSchemaChangedEvent.ChangeType.UPDATED));
         return updated;
     }
     
@@ -113,13 +125,26 @@ public class TableSchemaService {
      * 转换字段请求为字段实体
      */
     private List<ColumnInfo> convertColumns(List<TableInfoRequest.ColumnInfoRequest> columnRequests, String tableId) {
+        return convertColumns(columnRequests, tableId, null);
+    }
+    
+    /**
+     * 转换字段请求为字段实体，同名字段沿用原有的字段ID
+     */
+    private List<ColumnInfo> convertColumns(List<TableInfoRequest.ColumnInfoRequest> columnRequests, String tableId,
+                                            List<ColumnInfo> existingColumns) {
         if (columnRequests == null) {
             return new ArrayList<>();
         }
         
+        Map<String, String> existingIds = new HashMap<>();
+        if (existingColumns != null) {
+            existingColumns.forEach(column -> existingIds.put(column.getColumnName(), column.getId()));
+        }
+        
         return columnRequests.stream()
                 .map(colReq -> ColumnInfo.builder()
-                        .id(UUID.randomUUID().toString())
+                        .id(existingIds.getOrDefault(colReq.getColumnName(), UUID.randomUUID().toString()))
                         .tableId(tableId)
                         .columnName(colReq.getColumnName())
                         .columnAlias(colReq.getColumnAlias())
@@ -143,50 +168,53 @@ public class TableSchemaService {
      * 根据ID获取表信息
      */
     public TableInfo getTableById(String id) {
-        return tableStore.get(id);
+        return repository.findById(id).orElse(null);
     }
     
     /**
      * 根据表名获取表信息
      */
     public TableInfo getTableByName(String tableName) {
-        String id = tableNameIndex.get(tableName);
-        return id != null ? tableStore.get(id) : null;
+        return repository.findByName(tableName).orElse(null);
+    }
+    
+    /**
+     * 按 (数据库名, schema名, 表名) 获取表信息
+     */
+    public TableInfo getTableByQualifiedName(String databaseName, String schemaName, String tableName) {
+        return repository.findByQualifiedName(databaseName, schemaName, tableName).orElse(null);
     }
     
     /**
      * 获取所有表信息
      */
     public List<TableInfo> getAllTables() {
-        return new ArrayList<>(tableStore.values());
+        return repository.findAll();
     }
     
     /**
      * 根据数据库名称获取表列表
      */
     public List<TableInfo> getTablesByDatabase(String databaseName) {
-        return tableStore.values().stream()
-                .filter(t -> databaseName.equals(t.getDatabaseName()))
-                .collect(Collectors.toList());
+        return repository.findByDatabase(databaseName);
     }
     
     /**
      * 根据数据库类型获取表列表
      */
     public List<TableInfo> getTablesByDbType(String dbType) {
-        return tableStore.values().stream()
-                .filter(t -> dbType.equalsIgnoreCase(t.getDbType()))
-                .collect(Collectors.toList());
+        return repository.findByDbType(dbType);
     }
     
     /**
      * 删除表信息
      */
     public void deleteTable(String id) {
-        TableInfo table = tableStore.remove(id);
+        TableInfo table = repository.delete(id).orElse(null);
         if (table != null) {
-            tableNameIndex.remove(table.getTableName());
             log.info("Table deleted: {} ({})", table.getTableName(), id);
+            eventPublisher.publishEvent(new TableSchemaChangedEvent(id, table.getTableName(),
+                    TableSchemaChangedEvent.ChangeType.DELETED));
         }
     }
     
@@ -194,11 +222,7 @@ public class TableSchemaService {
      * 根据表名删除表信息
      */
     public void deleteTableByName(String tableName) {
-        String id = tableNameIndex.remove(tableName);
-        if (id != null) {
-            TableInfo table = tableStore.remove(id);
-            log.info("Table deleted: {} ({})", tableName, id);
-        }
+        repository.findByName(tableName).ifPresent(table -> deleteTable(table.getId()));
     }
     
     /**
@@ -214,14 +238,14 @@ public class TableSchemaService {
      * 检查表是否存在
      */
     public boolean exists(String tableName) {
-        return tableNameIndex.containsKey(tableName);
+        return repository.findByName(tableName).isPresent();
     }
     
     /**
      * 获取表总数
      */
     public int getTableCount() {
-        return tableStore.size();
+        return repository.count();
     }
     
     /**
@@ -229,7 +253,7 @@ public class TableSchemaService {
      */
     public List<TableInfo> getTablesByIds(List<String> ids) {
         return ids.stream()
-                .map(tableStore::get)
+                .map(this::getTableById)
                 .filter(Objects::nonNull)
                 .collect(Collectors.toList());
     }
@@ -0,0 +1,89 @@
+package com.example.rag.prompt;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.ai.chat.metadata.Usage;
+import org.springframework.ai.chat.model.ChatResponse;
+import org.springframework.ai.openai.api.OpenAiApi;
+import org.springframework.stereotype.Component;
+
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * 提示词前缀缓存命中统计
+ * 从 OpenAI 客户端解析出的原生 usage 中读取 prompt_tokens_details.cached_tokens，按调用方分别累计。
+ * 客户端只解析固定字段，DeepSeek 特有的 prompt_cache_hit_tokens 会被丢弃，
+ * 因此 DeepSeek 的命中只有在其同时返回 prompt_tokens_details.cached_tokens 时才会被统计，否则命中数为 0。
+ * 流式调用只有在请求 stream_options.include_usage（spring.ai.openai.chat.options.stream-usage=true）时
+ * 才会在最后一个分片返回 usage，未开启时流式调用不计入统计
+ */
+@Slf4j
+@Component
+public class PromptCacheMetrics {
+
+    private final Map<String, Counters> counters = new ConcurrentHashMap<>();
+
+    /**
+     * 记录一次模型调用，没有 usage 的响应（如流式输出的中间片段）会被忽略
+     *
+     * @param caller 调用方，如 rag、field-extractor、sql-generator
+     */
+    public void record(String caller, ChatResponse response) {
+        if (response == null || response.getMetadata() == null) {
+            return;
+        }
+        Usage usage = response.getMetadata().getUsage();
+        Number promptTokens = usage != null ? usage.getPromptTokens() : null;
+        if (promptTokens == null || promptTokens.longValue() <= 0) {
+            return;
+        }
+        long cached = cachedTokens(usage);
+        Counters totals = counters.computeIfAbsent(caller, k -> new Counters());
+        totals.calls.increment();
+        totals.promptTokens.add(promptTokens.longValue());
+        totals.cachedTokens.add(cached);
+        log.debug("{} prompt tokens: {}, cached: {}", caller, promptTokens, cached);
+    }
+
+    private static long cachedTokens(Usage usage) {
+        if (usage.getNativeUsage() instanceof OpenAiApi.Usage openAiUsage
+                && openAiUsage.promptTokensDetails() != null
+                && openAiUsage.promptTokensDetails().cachedTokens() != null) {
+            return openAiUsage.promptTokensDetails().cachedTokens();
+        }
+        return 0;
+    }
+
+    /**
+     * 各调用方的统计，按调用方名称排序
+     */
+    public Map<String, CallerStats> getStats() {
+        Map<String, CallerStats> stats = new TreeMap<>();
+        counters.forEach((caller, c) -> {
+            long prompt = c.promptTokens.sum();
+            long cached = c.cachedTokens.sum();
+            stats.put(caller, new CallerStats(c.calls.sum(), prompt, cached,
+                    prompt == 0 ? 0.0 : (double) cached / prompt));
+        });
+        return stats;
+    }
+
+    public void reset() {
+        counters.clear();
+    }
+
+    private static final class Counters {
+        final LongAdder calls = new LongAdder();
+        final LongAdder promptTokens = new LongAdder();
+        final LongAdder cachedTokens = new LongAdder();
+    }
+
+    /**
+     * 调用方统计
+     *
+     * @param cachedRatio 命中前缀缓存的 token 占输入 token 的比例
+     */
+    public record CallerStats(long calls, long promptTokens, long cachedPromptTokens, double cachedRatio) {}
+}
@@ -0,0 +1,114 @@
+package com.example.rag.prompt;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * 预编译的提示词模板
+ * 占位符写作 {name}（字母开头，可含字母、数字、下划线和连字符），其余花括号（如 JSON 示例）按原文输出。
+ * 加载时切分为固定文本段和变量，渲染时只做一次按预估长度分配的拼接
+ */
+public final class PromptTemplate {
+
+    private final String name;
+    // literals.length == variables.length + 1，渲染结果为 literals[0] + var[0] + literals[1] + ...
+    private final String[] literals;
+    private final String[] variables;
+    private final int literalLength;
+
+    private PromptTemplate(String name, String[] literals, String[] variables) {
+        this.name = name;
+        this.literals = literals;
+        this.variables = variables;
+        int length = 0;
+        for (String literal : literals) {
+            length += literal.length();
+        }
+        this.literalLength = length;
+    }
+
+    /**
+     * 编译模板文本
+     */
+    public static PromptTemplate compile(String name, String text) {
+        List<String> literals = new ArrayList<>();
+        List<String> variables = new ArrayList<>();
+        int literalStart = 0;
+        int i = 0;
+        while (i < text.length()) {
+            int end = text.charAt(i) == '{' ? placeholderEnd(text, i) : -1;
+            if (end < 0) {
+                i++;
+                continue;
+            }
+            literals.add(text.substring(literalStart, i));
+            variables.add(text.substring(i + 1, end));
+            literalStart = end + 1;
+            i = literalStart;
+        }
+        literals.add(text.substring(literalStart));
+        return new PromptTemplate(name, literals.toArray(String[]::new), variables.toArray(String[]::new));
+    }
+
+    // 返回占位符右花括号的位置，不是占位符时返回 -1
+    private static int placeholderEnd(String text, int open) {
+        int i = open + 1;
+        if (i >= text.length() || !Character.isLetter(text.charAt(i))) {
+            return -1;
+        }
+        while (i < text.length()) {
+            char c = text.charAt(i);
+            if (c == '}') {
+                return i;
+            }
+            if (!Character.isLetterOrDigit(c) && c != '_' && c != '-') {
+                return -1;
+            }
+            i++;
+        }
+        return -1;
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    /**
+     * 模板中的变量名（按出现顺序，可重复）
+     */
+    public List<String> getVariables() {
+        return List.of(variables);
+    }
+
+    /**
+     * 第一个变量之前的固定文本，对所有调用都相同
+     */
+    public String staticPrefix() {
+        return literals[0];
+    }
+
+    /**
+     * 渲染模板，缺少变量时抛出 IllegalArgumentException
+     */
+    public String render(Map<String, ?> values) {
+        if (variables.length == 0) {
+            return literals[0];
+        }
+        String[] rendered = new String[variables.length];
+        int length = literalLength;
+        for (int i = 0; i < variables.length; i++) {
+            Object value = values.get(variables[i]);
+            if (value == null && !values.containsKey(variables[i])) {
+                throw new IllegalArgumentException("Missing variable '" + variables[i] + "' for prompt template " + name);
+            }
+            rendered[i] = value != null ? value.toString() : "";
+            length += rendered[i].length();
+        }
+        StringBuilder out = new StringBuilder(length);
+        for (int i = 0; i < variables.length; i++) {
+            out.append(literals[i]).append(rendered[i]);
+        }
+        return out.append(literals[variables.length]).toString();
+    }
+}
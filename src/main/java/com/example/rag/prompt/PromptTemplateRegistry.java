@@ -0,0 +1,207 @@
+package com.example.rag.prompt;
+
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.core.io.Resource;
+import org.springframework.core.io.support.PathMatchingResourcePatternResolver;
+import org.springframework.stereotype.Component;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.ClosedWatchServiceException;
+import java.nio.file.FileSystems;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardWatchEventKinds;
+import java.nio.file.WatchKey;
+import java.nio.file.WatchService;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.stream.Stream;
+
+/**
+ * 提示词模板注册表
+ * 启动时加载 rag.prompts.location 下所有 .st 文件并预编译，模板名为去掉 .st 的相对路径（如 nl2sql/sql-generator-prompt）。
+ * 只依赖固定参数（如方言）的渲染结果会被缓存；模板目录位于文件系统时监听文件变化并整体重新加载，
+ * 新模板连同一份空的渲染缓存一次性替换，不会读到按旧模板渲染的结果
+ */
+@Slf4j
+@Component
+public class PromptTemplateRegistry {
+
+    private static final String SUFFIX = ".st";
+
+    private final PathMatchingResourcePatternResolver resolver = new PathMatchingResourcePatternResolver();
+
+    @Value("${rag.prompts.location:classpath:/prompts/}")
+    private String location;
+
+    @Value("${rag.prompts.hot-reload:true}")
+    private boolean hotReload;
+
+    // 模板和对应的渲染缓存作为一个整体替换，重新加载期间旧模板渲染的结果只会写入旧缓存
+    private volatile Generation generation = new Generation(Map.of());
+
+    private WatchService watchService;
+
+    @PostConstruct
+    void init() throws IOException {
+        if (!location.endsWith("/")) {
+            location = location + "/";
+        }
+        generation = new Generation(load());
+        log.info("Loaded {} prompt templates from {}", generation.templates().size(), location);
+        if (hotReload) {
+            startWatcher();
+        }
+    }
+
+    @PreDestroy
+    void stop() throws IOException {
+        if (watchService != null) {
+            watchService.close();
+        }
+    }
+
+    /**
+     * 获取模板，不存在时抛出 IllegalArgumentException
+     */
+    public PromptTemplate get(String name) {
+        return generation.get(name);
+    }
+
+    public boolean contains(String name) {
+        return generation.templates().containsKey(name);
+    }
+
+    public String render(String name, Map<String, ?> values) {
+        return get(name).render(values);
+    }
+
+    /**
+     * 渲染只依赖固定参数的模板并缓存结果，相同参数返回同一个字符串
+     */
+    public String renderStatic(String name, Map<String, String> values) {
+        Generation current = generation;
+        return current.staticRenders().computeIfAbsent(new StaticKey(name, Map.copyOf(values)),
+                key -> current.get(key.name()).render(key.values()));
+    }
+
+    /**
+     * 模板第一个变量之前的固定文本
+     */
+    public String staticPrefix(String name) {
+        return get(name).staticPrefix();
+    }
+
+    /**
+     * 重新加载全部模板，加载失败时保留原有模板
+     */
+    public void reload() {
+        try {
+            Map<String, PromptTemplate> templates = load();
+            generation = new Generation(templates);
+            log.info("Reloaded {} prompt templates", templates.size());
+        } catch (IOException | UncheckedIOException e) {
+            log.warn("Failed to reload prompt templates, keeping previous version: {}", e.getMessage());
+        }
+    }
+
+    private Map<String, PromptTemplate> load() throws IOException {
+        String root = resolver.getResource(location).getURL().toString();
+        Map<String, PromptTemplate> loaded = new HashMap<>();
+        for (Resource resource : resolver.getResources(location + "**/*" + SUFFIX)) {
+            String url = resource.getURL().toString();
+            int rootIndex = url.indexOf(root);
+            String relative = rootIndex >= 0 ? url.substring(rootIndex + root.length()) : resource.getFilename();
+            String name = relative.substring(0, relative.length() - SUFFIX.length());
+            try (InputStream in = resource.getInputStream()) {
+                loaded.put(name, PromptTemplate.compile(name, new String(in.readAllBytes(), StandardCharsets.UTF_8)));
+            }
+        }
+        return Map.copyOf(loaded);
+    }
+
+    // ========== 热加载 ==========
+
+    private void startWatcher() throws IOException {
+        Resource root = resolver.getResource(location);
+        if (!root.isFile()) {
+            log.debug("Prompt location {} is not on the file system, hot reload disabled", location);
+            return;
+        }
+        Path dir = root.getFile().toPath();
+        watchService = FileSystems.getDefault().newWatchService();
+        registerTree(dir);
+        Thread watcher = new Thread(this::watch, "prompt-watcher");
+        watcher.setDaemon(true);
+        watcher.start();
+        log.info("Watching {} for prompt template changes", dir);
+    }
+
+    private void registerTree(Path dir) throws IOException {
+        try (Stream<Path> paths = Files.walk(dir)) {
+            for (Path path : (Iterable<Path>) paths.filter(Files::isDirectory)::iterator) {
+                path.register(watchService, StandardWatchEventKinds.ENTRY_CREATE,
+                        StandardWatchEventKinds.ENTRY_MODIFY, StandardWatchEventKinds.ENTRY_DELETE);
+            }
+        }
+    }
+
+    private void watch() {
+        try {
+            while (true) {
+                WatchKey key = watchService.take();
+                Path dir = (Path) key.watchable();
+                boolean changed = false;
+                for (var event : key.pollEvents()) {
+                    if (!(event.context() instanceof Path path)) {
+                        continue;
+                    }
+                    Path child = dir.resolve(path);
+                    if (event.kind() == StandardWatchEventKinds.ENTRY_CREATE && Files.isDirectory(child)) {
+                        registerTree(child);
+                        changed = true;
+                    } else if (path.toString().endsWith(SUFFIX)) {
+                        changed = true;
+                    }
+                }
+                key.reset();
+                if (changed) {
+                    reload();
+                }
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } catch (ClosedWatchServiceException e) {
+            // 关闭时退出
+        } catch (IOException e) {
+            log.warn("Prompt template watcher stopped: {}", e.getMessage());
+        }
+    }
+
+    private record StaticKey(String name, Map<String, String> values) {}
+
+    /**
+     * 一次加载的模板及其渲染缓存（模板名 + 固定参数 -> 渲染结果）
+     */
+    private record Generation(Map<String, PromptTemplate> templates, Map<StaticKey, String> staticRenders) {
+
+        Generation(Map<String, PromptTemplate> templates) {
+            this(templates, new ConcurrentHashMap<>());
+        }
+
+        PromptTemplate get(String name) {
+            PromptTemplate template = templates.get(name);
+            if (template == null) {
+                throw new IllegalArgumentException("Unknown prompt template: " + name);
+            }
+            return template;
+        }
+    }
+}
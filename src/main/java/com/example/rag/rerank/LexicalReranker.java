@@ -0,0 +1,195 @@
+package com.example.rag.rerank;
+
+import com.example.rag.util.TermAnalyzer;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.ai.document.Document;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.scheduling.concurrent.CustomizableThreadFactory;
+import org.springframework.stereotype.Component;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.function.Function;
+
+/**
+ * 本地词法重排序器
+ * 在候选集内计算 BM25 分数并叠加问题词覆盖率，归一化后与第一阶段召回分数按权重相加，不调用任何远程模型；
+ * 候选文档按 CPU 核数分片并行打分。需通过 rag.rerank.enabled=true 显式开启
+ */
+@Slf4j
+@Component
+@ConditionalOnProperty(name = "rag.rerank.enabled", havingValue = "true")
+public class LexicalReranker implements Reranker {
+
+    private static final double K1 = 1.2;
+    private static final double B = 0.75;
+
+    @Value("${rag.rerank.coverage-weight:1.0}")
+    private double coverageWeight;
+
+    @Value("${rag.rerank.first-stage-weight:1.0}")
+    private double firstStageWeight;
+
+    @Value("${rag.rerank.parallelism:0}")
+    private int parallelism;
+
+    private ExecutorService scoringExecutor;
+
+    @PostConstruct
+    void initExecutor() {
+        if (parallelism <= 0) {
+            parallelism = Runtime.getRuntime().availableProcessors();
+        }
+        scoringExecutor = Executors.newFixedThreadPool(parallelism, new CustomizableThreadFactory("rerank-"));
+    }
+
+    @PreDestroy
+    void shutdownExecutor() {
+        scoringExecutor.shutdown();
+    }
+
+    @Override
+    public List<Document> rerank(String query, List<Document> candidates, int topK) {
+        if (candidates.size() <= 1) {
+            return candidates;
+        }
+
+        Set<String> queryTerms = new LinkedHashSet<>(TermAnalyzer.analyze(query));
+        if (queryTerms.isEmpty()) {
+            return candidates.subList(0, Math.min(topK, candidates.size()));
+        }
+
+        // 1. 并行分词并统计词频
+        List<TermStats> stats = parallelMap(candidates, doc -> TermStats.of(doc.getContent(), queryTerms));
+
+        // 2. 在候选集内计算文档频率和平均长度
+        Map<String, Integer> documentFrequency = new HashMap<>();
+        double totalLength = 0;
+        for (TermStats stat : stats) {
+            stat.frequencies().keySet().forEach(term -> documentFrequency.merge(term, 1, Integer::sum));
+            totalLength += stat.length();
+        }
+        double averageLength = Math.max(totalLength / stats.size(), 1);
+        int n = stats.size();
+
+        // 3. 并行打分
+        List<Integer> indexes = new ArrayList<>(n);
+        for (int i = 0; i < n; i++) {
+            indexes.add(i);
+        }
+        List<Double> lexicalScores = parallelMap(indexes, i ->
+                score(stats.get(i), queryTerms, documentFrequency, n, averageLength));
+
+        // 4. 词法分数按最大值归一化，与归一化后的第一阶段分数加权相加
+        double maxLexical = lexicalScores.stream().mapToDouble(Double::doubleValue).max().orElse(0);
+        double[] firstStage = firstStageScores(candidates);
+        List<Double> scores = new ArrayList<>(n);
+        for (int i = 0; i < n; i++) {
+            double lexical = maxLexical > 0 ? lexicalScores.get(i) / maxLexical : 0;
+            scores.add(lexical + firstStageWeight * firstStage[i]);
+        }
+
+        List<Document> reranked = indexes.stream()
+                .sorted(Comparator.comparingDouble((Integer i) -> scores.get(i)).reversed())
+                .limit(topK)
+                .map(i -> withScore(candidates.get(i), scores.get(i)))
+                .toList();
+        log.debug("Reranked {} candidates to top {}", n, reranked.size());
+        return reranked;
+    }
+
+    private double score(TermStats stat, Set<String> queryTerms, Map<String, Integer> documentFrequency,
+                         int n, double averageLength) {
+        double bm25 = 0;
+        int matched = 0;
+        for (String term : queryTerms) {
+            int tf = stat.frequencies().getOrDefault(term, 0);
+            if (tf == 0) {
+                continue;
+            }
+            matched++;
+            int df = documentFrequency.getOrDefault(term, 0);
+            double idf = Math.log(1 + (n - df + 0.5) / (df + 0.5));
+            bm25 += idf * tf * (K1 + 1) / (tf + K1 * (1 - B + B * stat.length() / averageLength));
+        }
+        double coverage = (double) matched / queryTerms.size();
+        return bm25 + coverageWeight * coverage;
+    }
+
+    /**
+     * 第一阶段的相关度，按候选集 min-max 归一化到 [0, 1]
+     * 关键词/混合检索取 score（BM25 或 RRF 分数），向量检索取 1 - distance，都没有时按召回排名
+     */
+    private static double[] firstStageScores(List<Document> candidates) {
+        double[] scores = new double[candidates.size()];
+        double min = Double.MAX_VALUE;
+        double max = -Double.MAX_VALUE;
+        for (int i = 0; i < scores.length; i++) {
+            Map<String, Object> metadata = candidates.get(i).getMetadata();
+            if (metadata.get("score") instanceof Number score) {
+                scores[i] = score.doubleValue();
+            } else if (metadata.get("distance") instanceof Number distance) {
+                scores[i] = 1 - distance.doubleValue();
+            } else {
+                scores[i] = 1.0 / (i + 1);
+            }
+            min = Math.min(min, scores[i]);
+            max = Math.max(max, scores[i]);
+        }
+        double range = max - min;
+        for (int i = 0; i < scores.length; i++) {
+            scores[i] = range > 0 ? (scores[i] - min) / range : 1;
+        }
+        return scores;
+    }
+
+    /**
+     * 按并行度分片执行，保持结果顺序与输入一致
+     */
+    private <T, R> List<R> parallelMap(List<T> items, Function<T, R> mapper) {
+        int slices = Math.min(parallelism, items.size());
+        int sliceSize = (items.size() + slices - 1) / slices;
+        List<CompletableFuture<List<R>>> futures = new ArrayList<>(slices);
+        for (int start = 0; start < items.size(); start += sliceSize) {
+            List<T> slice = items.subList(start, Math.min(start + sliceSize, items.size()));
+            futures.add(CompletableFuture.supplyAsync(() -> slice.stream().map(mapper).toList(), scoringExecutor));
+        }
+        List<R> results = new ArrayList<>(items.size());
+        futures.forEach(future -> results.addAll(future.join()));
+        return results;
+    }
+
+    private static Document withScore(Document document, double score) {
+        Map<String, Object> metadata = new HashMap<>(document.getMetadata());
+        metadata.put(SCORE_KEY, score);
+        return new Document(document.getId(), document.getContent(), metadata);
+    }
+
+    /**
+     * 候选文档的词频统计，只保留问题中出现的词
+     */
+    private record TermStats(Map<String, Integer> frequencies, int length) {
+
+        static TermStats of(String content, Set<String> queryTerms) {
+            List<String> terms = TermAnalyzer.analyze(content);
+            Map<String, Integer> frequencies = new HashMap<>();
+            for (String term : terms) {
+                if (queryTerms.contains(term)) {
+                    frequencies.merge(term, 1, Integer::sum);
+                }
+            }
+            return new TermStats(frequencies, terms.size());
+        }
+    }
+}
@@ -0,0 +1,27 @@
+package com.example.rag.rerank;
+
+import org.springframework.ai.document.Document;
+
+import java.util.List;
+
+/**
+ * 重排序器
+ * 对第一阶段检索召回的候选文档重新打分，只保留最相关的 topK 个
+ */
+public interface Reranker {
+
+    /**
+     * 元数据中的重排序分数字段
+     */
+    String SCORE_KEY = "rerankScore";
+
+    /**
+     * 重排序
+     *
+     * @param query 用户问题
+     * @param candidates 第一阶段召回的候选文档（按召回排序）
+     * @param topK 保留的文档数
+     * @return 按相关性从高到低排列的文档，最多 topK 个
+     */
+    List<Document> rerank(String query, List<Document> candidates, int topK);
+}
@@ -1,12 +1,18 @@
 package com.example.rag.service;
 
+import com.example.rag.cache.SemanticAnswerCache;
+import com.example.rag.chunking.ChunkingService;
+import com.example.rag.chunking.TextChunk;
 import com.example.rag.entity.Document;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.stereotype.Service;
 
 import java.time.LocalDateTime;
+import java.util.ArrayList;
 import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
 import java.util.Map;
 import java.util.UUID;
 
@@ -16,6 +22,8 @@ import java.util.UUID;
 public class DocumentService {
 
     private final EmbeddingService embeddingService;
+    private final SemanticAnswerCache answerCache;
+    private final ChunkingService chunkingService;
 
     /**
      * 保存文档并生成向量嵌入
@@ -28,8 +36,10 @@ public class DocumentService {
         metadata.put("source", source);
         metadata.put("createdAt", LocalDateTime.now().toString());
 
-        // 保存到向量数据库
-        embeddingService.addDocument(id, content, metadata);
+        // 分块后保存到向量数据库
+        ChunkWriter writer = new ChunkWriter();
+        writer.write(id, content, metadata);
+        EmbeddingService.BulkIndexResult result = writer.flush();
 
         Document document = Document.builder()
                 .id(id)
@@ -40,15 +50,82 @@ public class DocumentService {
                 .updatedAt(LocalDateTime.now())
                 .build();
 
-        log.info("Document saved: {}", id);
+        log.info("Document saved: {} ({} chunks)", id, result.indexed());
         return document;
     }
 
+    /**
+     * 批量保存文档并生成向量嵌入
+     * 文档已带ID时沿用该ID，否则生成新ID
+     */
+    public BulkSaveResult saveDocuments(List<Document> documents) {
+        LocalDateTime now = LocalDateTime.now();
+        List<Document> saved = new ArrayList<>(documents.size());
+        ChunkWriter writer = new ChunkWriter();
+
+        for (Document request : documents) {
+            String id = request.getId() != null ? request.getId() : UUID.randomUUID().toString();
+
+            Map<String, Object> metadata = new HashMap<>();
+            metadata.put("title", request.getTitle());
+            metadata.put("source", request.getSource());
+            metadata.put("createdAt", now.toString());
+            writer.write(id, request.getContent(), metadata);
+
+            saved.add(Document.builder()
+                    .id(id)
+                    .title(request.getTitle())
+                    .content(request.getContent())
+                    .source(request.getSource())
+                    .createdAt(now)
+                    .updatedAt(now)
+                    .build());
+        }
+
+        EmbeddingService.BulkIndexResult result = writer.flush();
+        log.info("Documents saved in bulk: {} documents, {}/{} chunks indexed",
+                saved.size(), result.indexed(), result.total());
+        return new BulkSaveResult(saved, result);
+    }
+
     /**
      * 删除文档
      */
     public void deleteDocument(String id) {
         embeddingService.deleteDocument(id);
+        answerCache.invalidateSource(id);
         log.info("Document deleted: {}", id);
     }
+
+    /**
+     * 分块写入器：把文档切分为分块，逐个送入同一条批量写入流水线，
+     * 在途批次数有上限，大文档的分块不会全部驻留内存
+     */
+    private final class ChunkWriter {
+
+        private final EmbeddingService.BulkIndexer indexer = embeddingService.bulkIndexer();
+
+        void write(String parentId, String content, Map<String, Object> metadata) {
+            Iterator<TextChunk> chunks = chunkingService.split(content != null ? content : "");
+            while (chunks.hasNext()) {
+                TextChunk chunk = chunks.next();
+                Map<String, Object> chunkMetadata = new HashMap<>(metadata);
+                chunkMetadata.put(EmbeddingService.PARENT_ID_KEY, parentId);
+                chunkMetadata.put("chunkIndex", chunk.index());
+                chunkMetadata.put("startOffset", chunk.startOffset());
+                chunkMetadata.put("endOffset", chunk.endOffset());
+                indexer.add(new org.springframework.ai.document.Document(
+                        parentId + "_" + chunk.index(), chunk.text(), chunkMetadata));
+            }
+        }
+
+        EmbeddingService.BulkIndexResult flush() {
+            return indexer.finish();
+        }
+    }
+
+    /**
+     * 批量保存结果
+     */
+    public record BulkSaveResult(List<Document> documents, EmbeddingService.BulkIndexResult indexResult) {}
 }
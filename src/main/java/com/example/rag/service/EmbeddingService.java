@@ -1,23 +1,101 @@
 package com.example.rag.service;
 
+import co.elastic.clients.elasticsearch.ElasticsearchClient;
+import co.elastic.clients.elasticsearch.core.BulkRequest;
+import co.elastic.clients.elasticsearch.core.BulkResponse;
+import co.elastic.clients.elasticsearch.core.DeleteByQueryResponse;
+import co.elastic.clients.elasticsearch.core.MsearchResponse;
+import co.elastic.clients.elasticsearch.core.SearchResponse;
+import co.elastic.clients.elasticsearch.core.bulk.BulkResponseItem;
+import co.elastic.clients.elasticsearch.core.msearch.MultiSearchResponseItem;
+import co.elastic.clients.elasticsearch.core.search.Hit;
+import co.elastic.clients.elasticsearch._types.query_dsl.Query;
+import com.example.rag.nl2sql.service.SchemaEmbeddingService;
+import com.example.rag.vectorstore.HnswVectorStore;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.ai.document.Document;
 import org.springframework.ai.embedding.EmbeddingModel;
-import org.springframework.ai.vectorstore.ElasticsearchVectorStore;
+import org.springframework.ai.tokenizer.JTokkitTokenCountEstimator;
+import org.springframework.ai.tokenizer.TokenCountEstimator;
 import org.springframework.ai.vectorstore.SearchRequest;
+import org.springframework.ai.vectorstore.VectorStore;
+import org.springframework.ai.vectorstore.filter.Filter;
+import org.springframework.ai.vectorstore.filter.FilterExpressionBuilder;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.concurrent.CustomizableThreadFactory;
 import org.springframework.stereotype.Service;
 
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Semaphore;
 
 @Slf4j
 @Service
 @RequiredArgsConstructor
 public class EmbeddingService {
 
-    private final ElasticsearchVectorStore vectorStore;
+    // 分块的父文档ID元数据字段
+    public static final String PARENT_ID_KEY = "parentId";
+
+    // 表结构文档（SchemaEmbeddingService）与文档共用 Elasticsearch 索引，RAG 检索时排除
+    private static final Filter.Expression EXCLUDE_SCHEMA_DOCS = new FilterExpressionBuilder()
+            .nin(SchemaEmbeddingService.TYPE_KEY, SchemaEmbeddingService.TYPE_TABLE, SchemaEmbeddingService.TYPE_COLUMN)
+            .build();
+    private static final Query EXCLUDE_SCHEMA_QUERY = Query.of(q -> q.bool(b -> b
+            .mustNot(mn -> mn.match(m -> m.field("metadata." + SchemaEmbeddingService.TYPE_KEY)
+                    .query(SchemaEmbeddingService.TYPE_TABLE)))
+            .mustNot(mn -> mn.match(m -> m.field("metadata." + SchemaEmbeddingService.TYPE_KEY)
+                    .query(SchemaEmbeddingService.TYPE_COLUMN)))));
+
+    private final VectorStore vectorStore;
     private final EmbeddingModel embeddingModel;
+    private final ElasticsearchClient elasticsearchClient;
+
+    private final TokenCountEstimator tokenCountEstimator = new JTokkitTokenCountEstimator();
+
+    @Value("${spring.ai.vectorstore.elasticsearch.index-name:rag-documents}")
+    private String indexName;
+
+    @Value("${rag.retrieval.rrf-k:60}")
+    private int rrfK;
+
+    @Value("${rag.retrieval.hybrid-candidate-factor:4}")
+    private int hybridCandidateFactor;
+
+    @Value("${rag.ingestion.batch-size:64}")
+    private int batchSize;
+
+    @Value("${rag.ingestion.max-batch-tokens:8000}")
+    private int maxBatchTokens;
+
+    @Value("${rag.ingestion.concurrency:2}")
+    private int concurrency;
+
+    private ExecutorService embeddingExecutor;
+    private ExecutorService indexingExecutor;
+
+    @PostConstruct
+    void initExecutors() {
+        embeddingExecutor = Executors.newFixedThreadPool(concurrency, new CustomizableThreadFactory("ingest-embed-"));
+        indexingExecutor = Executors.newFixedThreadPool(concurrency, new CustomizableThreadFactory("ingest-index-"));
+    }
+
+    @PreDestroy
+    void shutdownExecutors() {
+        embeddingExecutor.shutdown();
+        indexingExecutor.shutdown();
+    }
 
     /**
      * 添加文档到向量数据库
@@ -28,6 +106,147 @@ public class EmbeddingService {
         log.info("Document added to vector store: {}", id);
     }
 
+    /**
+     * 批量添加文档到向量数据库
+     * 按条数和 token 数分批，每批一次 embedding 调用、一次 ES bulk 写入；
+     * 当前批次写入 ES 的同时，下一批次已经在做 embedding
+     */
+    public BulkIndexResult addDocuments(List<Document> documents) {
+        BulkIndexer indexer = bulkIndexer();
+        documents.forEach(indexer::add);
+        return indexer.finish();
+    }
+
+    /**
+     * 打开一条批量写入流水线，文档逐条加入、攒满一批即提交，调用 finish() 时等待全部批次完成。
+     * 整个请求共用一条流水线，批次之间的 embedding 和写入始终重叠，不会在中途排空
+     */
+    public BulkIndexer bulkIndexer() {
+        return new BulkIndexer();
+    }
+
+    /**
+     * 批量写入流水线，非线程安全，由单个调用方顺序使用
+     */
+    public final class BulkIndexer {
+
+        private final long start = System.currentTimeMillis();
+        // 允许 concurrency 个批次在 embedding、concurrency 个批次在写入，已加入但未完成的文档数因此有上限
+        private final Semaphore inFlight = new Semaphore(concurrency * 2);
+        private final List<CompletableFuture<List<Document>>> futures = new ArrayList<>();
+        private List<Document> current = new ArrayList<>();
+        private int currentTokens;
+        private int total;
+
+        private BulkIndexer() {
+        }
+
+        /**
+         * 加入一条文档，当前批次达到条数或 token 上限时先提交当前批次
+         */
+        public void add(Document document) {
+            int tokens = tokenCountEstimator.estimate(document.getContent());
+            boolean full = current.size() >= batchSize || currentTokens + tokens > maxBatchTokens;
+            if (!current.isEmpty() && full) {
+                submit();
+            }
+            current.add(document);
+            currentTokens += tokens;
+            total++;
+        }
+
+        /**
+         * 提交剩余文档并等待所有批次完成
+         */
+        public BulkIndexResult finish() {
+            if (!current.isEmpty()) {
+                submit();
+            }
+
+            // 按父文档统计失败的分块数，未分块的文档取自身ID
+            Map<String, Integer> failedByDocument = new LinkedHashMap<>();
+            int failed = 0;
+            for (CompletableFuture<List<Document>> future : futures) {
+                for (Document document : future.join()) {
+                    Object parentId = document.getMetadata().getOrDefault(PARENT_ID_KEY, document.getId());
+                    failedByDocument.merge(String.valueOf(parentId), 1, Integer::sum);
+                    failed++;
+                }
+            }
+            int indexed = total - failed;
+            long elapsed = System.currentTimeMillis() - start;
+            log.info("Bulk ingestion finished: {}/{} documents indexed in {} batches, {} ms",
+                    indexed, total, futures.size(), elapsed);
+            return new BulkIndexResult(total, indexed, failed, futures.size(), elapsed, failedByDocument);
+        }
+
+        private void submit() {
+            List<Document> batch = current;
+            current = new ArrayList<>();
+            currentTokens = 0;
+            inFlight.acquireUninterruptibly();
+            futures.add(CompletableFuture
+                    .supplyAsync(() -> embedBatch(batch), embeddingExecutor)
+                    .thenApplyAsync(embeddings -> bulkIndex(batch, embeddings), indexingExecutor)
+                    .exceptionally(e -> {
+                        log.error("Failed to ingest batch of {} documents: {}", batch.size(), e.getMessage(), e);
+                        return batch;
+                    })
+                    .whenComplete((failed, e) -> inFlight.release()));
+        }
+    }
+
+    /**
+     * 一次调用为整批文档生成向量
+     */
+    private List<float[]> embedBatch(List<Document> batch) {
+        List<String> texts = batch.stream().map(Document::getContent).toList();
+        return embeddingModel.embed(texts);
+    }
+
+    /**
+     * 使用 ES bulk 请求写入一批文档，返回写入失败的文档
+     */
+    private List<Document> bulkIndex(List<Document> batch, List<float[]> embeddings) {
+        if (vectorStore instanceof HnswVectorStore hnsw) {
+            hnsw.add(batch, embeddings);
+            return List.of();
+        }
+
+        BulkRequest.Builder bulk = new BulkRequest.Builder();
+        for (int i = 0; i < batch.size(); i++) {
+            Document document = batch.get(i);
+            Map<String, Object> source = new LinkedHashMap<>();
+            source.put("id", document.getId());
+            source.put("content", document.getContent());
+            source.put("metadata", document.getMetadata());
+            source.put("embedding", embeddings.get(i));
+            bulk.operations(op -> op.index(idx -> idx
+                    .index(indexName)
+                    .id(document.getId())
+                    .document(source)));
+        }
+
+        try {
+            BulkResponse response = elasticsearchClient.bulk(bulk.build());
+            if (!response.errors()) {
+                return List.of();
+            }
+            // bulk 响应的 items 与请求中的操作一一对应
+            List<Document> failed = new ArrayList<>();
+            for (int i = 0; i < response.items().size(); i++) {
+                BulkResponseItem item = response.items().get(i);
+                if (item.error() != null) {
+                    failed.add(batch.get(i));
+                    log.warn("Failed to index document {}: {}", item.id(), item.error().reason());
+                }
+            }
+            return failed;
+        } catch (IOException e) {
+            throw new UncheckedIOException("Bulk index request failed", e);
+        }
+    }
+
     /**
      * 搜索相似文档
      */
@@ -35,16 +254,157 @@ public class EmbeddingService {
         SearchRequest searchRequest = SearchRequest.builder()
                 .query(query)
                 .topK(topK)
+                .filterExpression(EXCLUDE_SCHEMA_DOCS)
                 .build();
-        
+
         return vectorStore.similaritySearch(searchRequest);
     }
 
     /**
-     * 删除文档
+     * 按指定模式检索文档
+     */
+    public List<Document> search(String query, int topK, RetrievalMode mode) {
+        // 进程内 HNSW 索引没有倒排索引，只支持向量检索
+        if (mode != RetrievalMode.VECTOR && vectorStore instanceof HnswVectorStore) {
+            log.warn("Retrieval mode {} is not supported by the HNSW vector store, falling back to VECTOR", mode);
+            return searchSimilarDocuments(query, topK);
+        }
+        return switch (mode) {
+            case VECTOR -> searchSimilarDocuments(query, topK);
+            case KEYWORD -> searchKeyword(query, topK);
+            case HYBRID -> searchHybrid(query, topK);
+        };
+    }
+
+    /**
+     * BM25 关键词检索
+     */
+    public List<Document> searchKeyword(String query, int topK) {
+        try {
+            SearchResponse<Map> response = elasticsearchClient.search(s -> s
+                    .index(indexName)
+                    .size(topK)
+                    .source(src -> src.filter(f -> f.excludes("embedding")))
+                    .query(q -> q.bool(b -> b
+                            .must(mu -> mu.match(m -> m.field("content").query(query)))
+                            .filter(EXCLUDE_SCHEMA_QUERY))), Map.class);
+            return response.hits().hits().stream()
+                    .map(hit -> toDocument(hit, hit.score()))
+                    .toList();
+        } catch (IOException e) {
+            throw new UncheckedIOException("Keyword search failed", e);
+        }
+    }
+
+    /**
+     * 混合检索
+     * 在一次 msearch 请求中同时执行 BM25 和 kNN 查询，再用倒数排名融合（RRF）合并两路结果
+     */
+    public List<Document> searchHybrid(String query, int topK) {
+        int candidates = Math.max(topK * hybridCandidateFactor, topK);
+        List<Float> queryVector = toFloatList(embeddingModel.embed(query));
+
+        MsearchResponse<Map> response;
+        try {
+            response = elasticsearchClient.msearch(m -> m
+                    .index(indexName)
+                    .searches(s -> s
+                            .header(h -> h.index(indexName))
+                            .body(b -> b
+                                    .size(candidates)
+                                    .source(src -> src.filter(f -> f.excludes("embedding")))
+                                    .query(q -> q.bool(bq -> bq
+                                            .must(mu -> mu.match(mt -> mt.field("content").query(query)))
+                                            .filter(EXCLUDE_SCHEMA_QUERY)))))
+                    .searches(s -> s
+                            .header(h -> h.index(indexName))
+                            .body(b -> b
+                                    .size(candidates)
+                                    .source(src -> src.filter(f -> f.excludes("embedding")))
+                                    .knn(k -> k
+                                            .field("embedding")
+                                            .queryVector(queryVector)
+                                            .k(candidates)
+                                            .filter(EXCLUDE_SCHEMA_QUERY)
+                                            .numCandidates(Math.max(candidates * 2, 100))))), Map.class);
+        } catch (IOException e) {
+            throw new UncheckedIOException("Hybrid search failed", e);
+        }
+
+        // RRF: score(d) = Σ 1 / (k + rank)
+        Map<String, Double> fusedScores = new HashMap<>();
+        Map<String, Hit<Map>> hitsById = new HashMap<>();
+        for (MultiSearchResponseItem<Map> item : response.responses()) {
+            if (item.isFailure()) {
+                log.warn("Hybrid sub-search failed: {}", item.failure().error().reason());
+                continue;
+            }
+            List<Hit<Map>> hits = item.result().hits().hits();
+            for (int rank = 0; rank < hits.size(); rank++) {
+                Hit<Map> hit = hits.get(rank);
+                fusedScores.merge(hit.id(), 1.0 / (rrfK + rank + 1), Double::sum);
+                hitsById.putIfAbsent(hit.id(), hit);
+            }
+        }
+
+        return fusedScores.entrySet().stream()
+                .sorted(Map.Entry.<String, Double>comparingByValue().reversed())
+                .limit(topK)
+                .map(entry -> toDocument(hitsById.get(entry.getKey()), entry.getValue()))
+                .toList();
+    }
+
+    @SuppressWarnings("unchecked")
+    private Document toDocument(Hit<Map> hit, Double score) {
+        Map<String, Object> source = hit.source() != null ? hit.source() : Map.of();
+        Map<String, Object> metadata = new HashMap<>();
+        if (source.get("metadata") instanceof Map<?, ?> storedMetadata) {
+            metadata.putAll((Map<String, Object>) storedMetadata);
+        }
+        if (score != null) {
+            metadata.put("score", score);
+        }
+        String content = (String) source.getOrDefault("content", "");
+        return new Document(hit.id(), content, metadata);
+    }
+
+    private static List<Float> toFloatList(float[] vector) {
+        List<Float> values = new ArrayList<>(vector.length);
+        for (float v : vector) {
+            values.add(v);
+        }
+        return values;
+    }
+
+    /**
+     * 删除文档及其所有分块
+     * 一次 delete-by-query 同时匹配分块的 parentId 和未分块的旧文档ID
      */
     public void deleteDocument(String id) {
-        vectorStore.delete(List.of(id));
-        log.info("Document deleted from vector store: {}", id);
+        if (vectorStore instanceof HnswVectorStore hnsw) {
+            int deleted = hnsw.deleteByMetadata(PARENT_ID_KEY, id);
+            hnsw.delete(List.of(id));
+            log.info("Document deleted from vector store: {} ({} vectors)", id, deleted);
+            return;
+        }
+        try {
+            DeleteByQueryResponse response = elasticsearchClient.deleteByQuery(d -> d
+                    .index(indexName)
+                    .query(q -> q.bool(b -> b
+                            .should(s -> s.term(t -> t.field("metadata." + PARENT_ID_KEY + ".keyword").value(id)))
+                            .should(s -> s.ids(i -> i.values(id)))))
+                    .refresh(true));
+            log.info("Document deleted from vector store: {} ({} vectors)", id, response.deleted());
+        } catch (IOException e) {
+            throw new UncheckedIOException("Failed to delete document " + id, e);
+        }
     }
+
+    /**
+     * 批量写入结果
+     *
+     * @param failedByDocument 父文档ID（未分块的文档为自身ID） -> 写入失败的分块数
+     */
+    public record BulkIndexResult(int total, int indexed, int failed, int batches, long elapsedMs,
+                                  Map<String, Integer> failedByDocument) {}
 }
@@ -1,85 +1,162 @@
 package com.example.rag.service;
 
+import com.example.rag.cache.SemanticAnswerCache;
+import com.example.rag.context.ContextBuilder;
+import com.example.rag.prompt.PromptCacheMetrics;
+import com.example.rag.prompt.PromptTemplateRegistry;
+import com.example.rag.rerank.Reranker;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.ai.chat.client.ChatClient;
 import org.springframework.ai.chat.messages.Message;
 import org.springframework.ai.chat.messages.SystemMessage;
 import org.springframework.ai.chat.messages.UserMessage;
+import org.springframework.ai.chat.model.ChatResponse;
 import org.springframework.ai.chat.prompt.Prompt;
 import org.springframework.ai.document.Document;
+import org.springframework.ai.embedding.EmbeddingModel;
 import org.springframework.beans.factory.annotation.Value;
-import org.springframework.core.io.Resource;
 import org.springframework.stereotype.Service;
+import reactor.core.publisher.Flux;
 
 import java.util.ArrayList;
 import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+import java.util.stream.Collectors;
 
 @Slf4j
 @Service
 @RequiredArgsConstructor
 public class RagService {
 
+    private static final String SYSTEM_TEMPLATE = "rag-system-prompt";
+    private static final String USER_TEMPLATE = "rag-user-prompt";
+    private static final String CALLER = "rag";
+
     private final ChatClient chatClient;
     private final EmbeddingService embeddingService;
+    private final EmbeddingModel embeddingModel;
+    private final SemanticAnswerCache answerCache;
+    private final Optional<Reranker> reranker;
+    private final ContextBuilder contextBuilder;
+    private final PromptTemplateRegistry promptTemplates;
+    private final PromptCacheMetrics promptCacheMetrics;
+
+    @Value("${rag.retrieval.default-mode:VECTOR}")
+    private RetrievalMode defaultRetrievalMode;
 
-    @Value("classpath:/prompts/rag-system-prompt.st")
-    private Resource ragSystemPrompt;
+    @Value("${rag.rerank.candidates:50}")
+    private int rerankCandidates;
 
     /**
      * RAG 问答
+     *
+     * @param maxContextTokens 上下文 token 预算，为空时按模型配置
      */
-    public String query(String question, int topK) {
-        // 1. 检索相关文档
-        List<Document> relevantDocs = embeddingService.searchSimilarDocuments(question, topK);
-        
-        // 2. 构建上下文
-        String context = buildContext(relevantDocs);
-        
-        // 3. 构建提示词
-        String systemPrompt = buildSystemPrompt(context);
-        
-        // 4. 调用大模型
-        List<Message> messages = new ArrayList<>();
-        messages.add(new SystemMessage(systemPrompt));
-        messages.add(new UserMessage(question));
-        
-        Prompt prompt = new Prompt(messages);
-        
-        return chatClient.prompt(prompt)
+    public RagAnswer query(String question, int topK, RetrievalMode mode, Integer maxContextTokens) {
+        RetrievedPrompt retrieved = retrieve(question, topK, mode, maxContextTokens);
+
+        // 命中语义缓存时跳过大模型调用
+        float[] questionVector = embeddingModel.embed(question);
+        List<String> sourceIds = sourceIds(retrieved.documents());
+        Optional<String> cached = answerCache.lookup(questionVector, sourceIds);
+        if (cached.isPresent()) {
+            return new RagAnswer(cached.get(), retrieved.documents(), retrieved.contextTokens());
+        }
+
+        ChatResponse response = chatClient.prompt(retrieved.prompt())
                 .call()
-                .content();
+                .chatResponse();
+        promptCacheMetrics.record(CALLER, response);
+        String answer = response.getResult().getOutput().getContent();
+        answerCache.put(question, questionVector, answer, sourceIds, parentIds(retrieved.documents()));
+        return new RagAnswer(answer, retrieved.documents(), retrieved.contextTokens());
     }
 
     /**
-     * 构建上下文
+     * RAG 流式问答
+     * 检索完成后立即返回来源文档，回答 token 随模型输出逐个下发
      */
-    private String buildContext(List<Document> documents) {
-        if (documents.isEmpty()) {
-            return "无相关文档";
+    public StreamingAnswer queryStream(String question, int topK, RetrievalMode mode, Integer maxContextTokens) {
+        RetrievedPrompt retrieved = retrieve(question, topK, mode, maxContextTokens);
+
+        float[] questionVector = embeddingModel.embed(question);
+        List<String> sourceIds = sourceIds(retrieved.documents());
+        Optional<String> cached = answerCache.lookup(questionVector, sourceIds);
+        if (cached.isPresent()) {
+            return new StreamingAnswer(retrieved.documents(), retrieved.contextTokens(), Flux.just(cached.get()));
         }
+
+        // 流结束后把完整回答写入缓存
+        StringBuilder fullAnswer = new StringBuilder();
+        Flux<String> tokens = chatClient.prompt(retrieved.prompt())
+                .stream()
+                .chatResponse()
+                .doOnNext(response -> promptCacheMetrics.record(CALLER, response))
+                .mapNotNull(response -> response.getResult() != null ? response.getResult().getOutput().getContent() : null)
+                .doOnNext(fullAnswer::append)
+                .doOnComplete(() -> answerCache.put(question, questionVector, fullAnswer.toString(), sourceIds,
+                        parentIds(retrieved.documents())));
+        return new StreamingAnswer(retrieved.documents(), retrieved.contextTokens(), tokens);
+    }
+
+    /**
+     * 检索相关文档并构建提示词
+     *
+     * @param mode 检索模式，为空时使用 rag.retrieval.default-mode
+     * @param maxContextTokens 上下文 token 预算，为空时按模型配置
+     */
+    private RetrievedPrompt retrieve(String question, int topK, RetrievalMode mode, Integer maxContextTokens) {
+        // 1. 检索相关文档，启用重排序时先多召回候选，再重排保留 topK
+        RetrievalMode retrievalMode = mode != null ? mode : defaultRetrievalMode;
+        List<Document> relevantDocs = reranker
+                .map(r -> r.rerank(question,
+                        embeddingService.search(question, Math.max(rerankCandidates, topK), retrievalMode), topK))
+                .orElseGet(() -> embeddingService.search(question, topK, retrievalMode));
+
+        // 2. 按 token 预算构建上下文
+        ContextBuilder.BuiltContext context = contextBuilder.build(relevantDocs,
+                contextBuilder.resolveBudget(maxContextTokens));
         
-        StringBuilder context = new StringBuilder();
-        for (int i = 0; i < documents.size(); i++) {
-            Document doc = documents.get(i);
-            context.append("[文档").append(i + 1).append("]\n");
-            context.append(doc.getContent()).append("\n\n");
-        }
-        return context.toString();
+        // 3. 组装消息：系统提示词固定不变，便于模型服务复用前缀缓存；检索上下文和问题放在用户消息中
+        List<Message> messages = new ArrayList<>();
+        messages.add(new SystemMessage(promptTemplates.renderStatic(SYSTEM_TEMPLATE, Map.of())));
+        messages.add(new UserMessage(buildUserPrompt(context.text(), question)));
+        
+        return new RetrievedPrompt(context.documents(), context.tokens(), new Prompt(messages));
+    }
+
+    private List<String> sourceIds(List<Document> documents) {
+        return documents.stream().map(Document::getId).toList();
+    }
+
+    private Set<String> parentIds(List<Document> documents) {
+        return documents.stream()
+                .map(doc -> (String) doc.getMetadata().getOrDefault(EmbeddingService.PARENT_ID_KEY, doc.getId()))
+                .collect(Collectors.toSet());
     }
 
     /**
-     * 构建系统提示词
+     * 构建用户提示词：参考文档在前，问题在后
      */
-    private String buildSystemPrompt(String context) {
-        return String.format("""
-                你是一个专业的问答助手。请基于以下参考文档回答用户的问题。
-                如果参考文档中没有相关信息，请明确告知用户。
-                
-                参考文档：
-                %s
-                
-                请根据以上文档内容回答问题，保持回答准确、简洁。
-                """, context);
+    private String buildUserPrompt(String context, String question) {
+        return promptTemplates.render(USER_TEMPLATE, Map.of("context", context, "question", question));
     }
+
+    private record RetrievedPrompt(List<Document> documents, int contextTokens, Prompt prompt) {}
+
+    /**
+     * 问答结果
+     *
+     * @param sources 放入上下文的分块
+     * @param contextTokens 上下文 token 数
+     */
+    public record RagAnswer(String answer, List<Document> sources, int contextTokens) {}
+
+    /**
+     * 流式回答：来源文档 + token 流
+     */
+    public record StreamingAnswer(List<Document> sources, int contextTokens, Flux<String> tokens) {}
 }
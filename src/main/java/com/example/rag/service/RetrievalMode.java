@@ -0,0 +1,36 @@
+package com.example.rag.service;
+
+/**
+ * 检索模式
+ */
+public enum RetrievalMode {
+
+    /**
+     * 纯向量检索（kNN）
+     */
+    VECTOR,
+
+    /**
+     * 纯关键词检索（BM25）
+     */
+    KEYWORD,
+
+    /**
+     * BM25 + kNN 混合检索，使用倒数排名融合（RRF）合并结果
+     */
+    HYBRID;
+
+    /**
+     * 解析检索模式，为空时返回默认值
+     */
+    public static RetrievalMode from(String value, RetrievalMode defaultMode) {
+        if (value == null || value.isBlank()) {
+            return defaultMode;
+        }
+        try {
+            return RetrievalMode.valueOf(value.trim().toUpperCase());
+        } catch (IllegalArgumentException e) {
+            throw new IllegalArgumentException("Unknown retrieval mode: " + value);
+        }
+    }
+}
@@ -0,0 +1,69 @@
+package com.example.rag.util;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * 轻量分词器
+ * 连续的字母数字切为一个词（转小写），CJK 字符切为相邻二元组（单字时保留单字），其他字符作为分隔符；
+ * 不依赖词典，适合在本地做相关性打分
+ */
+public final class TermAnalyzer {
+
+    private TermAnalyzer() {
+    }
+
+    /**
+     * 分词，保留重复词以便统计词频
+     */
+    public static List<String> analyze(String text) {
+        List<String> terms = new ArrayList<>();
+        if (text == null || text.isEmpty()) {
+            return terms;
+        }
+
+        StringBuilder word = new StringBuilder();
+        StringBuilder cjk = new StringBuilder();
+        for (int i = 0; i < text.length(); i++) {
+            char c = text.charAt(i);
+            if (isCjk(c)) {
+                flushWord(word, terms);
+                cjk.append(c);
+            } else if (Character.isLetterOrDigit(c)) {
+                flushCjk(cjk, terms);
+                word.append(Character.toLowerCase(c));
+            } else {
+                flushWord(word, terms);
+                flushCjk(cjk, terms);
+            }
+        }
+        flushWord(word, terms);
+        flushCjk(cjk, terms);
+        return terms;
+    }
+
+    private static void flushWord(StringBuilder word, List<String> terms) {
+        if (!word.isEmpty()) {
+            terms.add(word.toString());
+            word.setLength(0);
+        }
+    }
+
+    private static void flushCjk(StringBuilder run, List<String> terms) {
+        if (run.length() == 1) {
+            terms.add(run.toString());
+        }
+        for (int i = 0; i + 1 < run.length(); i++) {
+            terms.add(run.substring(i, i + 2));
+        }
+        run.setLength(0);
+    }
+
+    private static boolean isCjk(char c) {
+        Character.UnicodeScript script = Character.UnicodeScript.of(c);
+        return script == Character.UnicodeScript.HAN
+                || script == Character.UnicodeScript.HIRAGANA
+                || script == Character.UnicodeScript.KATAKANA
+                || script == Character.UnicodeScript.HANGUL;
+    }
+}
@@ -0,0 +1,62 @@
+package com.example.rag.util;
+
+/**
+ * 向量运算
+ * 缓存和向量索引中的余弦相似度统一为：写入时归一化，比较时求点积
+ */
+public final class VectorMath {
+
+    private VectorMath() {
+    }
+
+    /**
+     * 归一化为单位向量，返回新数组；零向量返回全零数组
+     */
+    public static float[] normalize(float[] vector) {
+        double norm = 0;
+        for (float v : vector) {
+            norm += v * v;
+        }
+        norm = Math.sqrt(norm);
+        float[] normalized = new float[vector.length];
+        if (norm == 0) {
+            return normalized;
+        }
+        for (int i = 0; i < vector.length; i++) {
+            normalized[i] = (float) (vector[i] / norm);
+        }
+        return normalized;
+    }
+
+    /**
+     * 点积，两个单位向量的点积即余弦相似度；维度不同时返回 0
+     */
+    public static double dot(float[] a, float[] b) {
+        if (a.length != b.length) {
+            return 0;
+        }
+        double sum = 0;
+        for (int i = 0; i < a.length; i++) {
+            sum += a[i] * b[i];
+        }
+        return sum;
+    }
+
+    /**
+     * 未归一化向量的余弦相似度；维度不同或存在零向量时返回 0
+     */
+    public static double cosine(float[] a, float[] b) {
+        if (a.length != b.length) {
+            return 0;
+        }
+        double dot = 0;
+        double normA = 0;
+        double normB = 0;
+        for (int i = 0; i < a.length; i++) {
+            dot += a[i] * b[i];
+            normA += a[i] * a[i];
+            normB += b[i] * b[i];
+        }
+        return normA == 0 || normB == 0 ? 0 : dot / Math.sqrt(normA * normB);
+    }
+}
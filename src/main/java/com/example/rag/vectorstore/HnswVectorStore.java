@@ -0,0 +1,755 @@
+package com.example.rag.vectorstore;
+
+import com.example.rag.util.VectorMath;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.ai.document.Document;
+import org.springframework.ai.embedding.EmbeddingModel;
+import org.springframework.ai.vectorstore.SearchRequest;
+import org.springframework.ai.vectorstore.VectorStore;
+import org.springframework.beans.factory.DisposableBean;
+import org.springframework.scheduling.concurrent.CustomizableThreadFactory;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Optional;
+import java.util.PriorityQueue;
+import java.util.Random;
+import java.util.Set;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.function.Consumer;
+
+/**
+ * 进程内 HNSW 向量库
+ * 向量存放在堆外内存段中，图结构使用原始 int 数组；相似度为余弦（写入时归一化后求点积）。
+ * 数据定期及关闭时持久化到本地文件（.vec 向量、.graph 图结构、.docs 文档），启动时整体加载，无需重建索引。
+ * 每次持久化写出一组新版本文件，再原子替换 .manifest 指向新版本，并保留上一版本；当前版本损坏时回退到上一版本加载。
+ * 删除采用墓碑标记，被删除节点仍参与图遍历但不会出现在结果中；墓碑占比超过阈值时用有效节点重建索引
+ */
+@Slf4j
+public class HnswVectorStore implements VectorStore, DisposableBean {
+
+    private static final int MAGIC = 0x484E5357;
+    private static final int FORMAT_VERSION = 1;
+    private static final String MANIFEST = ".manifest";
+
+    private final EmbeddingModel embeddingModel;
+    private final int m;
+    private final int efConstruction;
+    private final int efSearch;
+    private final double compactTombstoneRatio;
+    private final double levelMultiplier;
+    private final Path basePath;
+    private final ObjectMapper objectMapper = new ObjectMapper();
+    private final Random random = new Random(42);
+    private final ReadWriteLock lock = new ReentrantReadWriteLock();
+    private final ScheduledExecutorService flusher;
+
+    private OffHeapVectorStorage vectors;
+    // links.get(node)[level] = {count, neighbor1, neighbor2, ...}
+    private final List<int[][]> links = new ArrayList<>();
+    private final List<String> ids = new ArrayList<>();
+    private final List<String> contents = new ArrayList<>();
+    private final List<Map<String, Object>> metadata = new ArrayList<>();
+    private final Map<String, Integer> idToNode = new HashMap<>();
+    private final BitSet deleted = new BitSet();
+    private int entryPoint = -1;
+    private int maxLevel = -1;
+    private volatile boolean dirty;
+    // 已持久化的当前版本和上一版本，-1 表示没有；版本 0 为不带版本号的旧文件名
+    private long generation = -1;
+    private long previousGeneration = -1;
+
+    /**
+     * @param embeddingModel 向量模型
+     * @param m 每层最大连接数（第0层为 2m）
+     * @param efConstruction 构建时的候选集大小
+     * @param efSearch 查询时的候选集大小
+     * @param basePath 持久化文件路径前缀，为 null 时只在内存中
+     * @param flushIntervalSeconds 有修改时自动持久化的间隔，0 表示只在关闭时持久化
+     * @param compactTombstoneRatio 已删除节点占比超过该值时重建索引，0 表示不自动重建
+     */
+    public HnswVectorStore(EmbeddingModel embeddingModel, int m, int efConstruction, int efSearch,
+                           Path basePath, long flushIntervalSeconds, double compactTombstoneRatio) {
+        this.embeddingModel = embeddingModel;
+        this.m = m;
+        this.efConstruction = efConstruction;
+        this.efSearch = efSearch;
+        this.compactTombstoneRatio = compactTombstoneRatio;
+        this.levelMultiplier = 1 / Math.log(m);
+        this.basePath = basePath;
+
+        if (basePath != null) {
+            load();
+            compactIfNeeded();
+        }
+
+        if (basePath != null && flushIntervalSeconds > 0) {
+            flusher = Executors.newSingleThreadScheduledExecutor(new CustomizableThreadFactory("hnsw-flush-"));
+            flusher.scheduleWithFixedDelay(this::flushIfDirty, flushIntervalSeconds, flushIntervalSeconds, TimeUnit.SECONDS);
+        } else {
+            flusher = null;
+        }
+    }
+
+    @Override
+    public void add(List<Document> documents) {
+        if (documents.isEmpty()) {
+            return;
+        }
+        List<float[]> embeddings = embeddingModel.embed(documents.stream().map(Document::getContent).toList());
+        add(documents, embeddings);
+    }
+
+    /**
+     * 使用已计算好的向量写入文档，避免重复调用向量模型
+     */
+    public void add(List<Document> documents, List<float[]> embeddings) {
+        lock.writeLock().lock();
+        try {
+            for (int i = 0; i < documents.size(); i++) {
+                Document document = documents.get(i);
+                float[] vector = VectorMath.normalize(embeddings.get(i));
+                if (vectors == null) {
+                    vectors = new OffHeapVectorStorage(vector.length);
+                }
+
+                // 相同ID视为覆盖写入
+                Integer previous = idToNode.get(document.getId());
+                if (previous != null) {
+                    deleted.set(previous);
+                }
+
+                int node = vectors.add(vector);
+                ids.add(document.getId());
+                contents.add(document.getContent());
+                metadata.add(new HashMap<>(document.getMetadata()));
+                idToNode.put(document.getId(), node);
+                insert(node, vector);
+            }
+            dirty = true;
+            compactIfNeeded();
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    @Override
+    public Optional<Boolean> delete(List<String> idList) {
+        lock.writeLock().lock();
+        try {
+            boolean removed = false;
+            for (String id : idList) {
+                Integer node = idToNode.remove(id);
+                if (node != null) {
+                    deleted.set(node);
+                    removed = true;
+                }
+            }
+            dirty |= removed;
+            compactIfNeeded();
+            return Optional.of(removed);
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * 删除元数据字段等于指定值的所有文档，返回删除条数
+     */
+    public int deleteByMetadata(String key, Object value) {
+        return deleteByMetadata(key, value, Set.of());
+    }
+
+    /**
+     * 删除元数据字段等于指定值、且ID不在 keepIds 中的文档，返回删除条数
+     */
+    public int deleteByMetadata(String key, Object value, Set<String> keepIds) {
+        lock.writeLock().lock();
+        try {
+            int removed = 0;
+            for (int node = 0; node < ids.size(); node++) {
+                if (!deleted.get(node) && Objects.equals(metadata.get(node).get(key), value)
+                        && !keepIds.contains(ids.get(node))) {
+                    deleted.set(node);
+                    idToNode.remove(ids.get(node));
+                    removed++;
+                }
+            }
+            dirty |= removed > 0;
+            compactIfNeeded();
+            return removed;
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    @Override
+    public List<Document> similaritySearch(SearchRequest request) {
+        float[] query = VectorMath.normalize(embeddingModel.embed(request.getQuery()));
+        int topK = request.getTopK();
+        boolean filtered = request.getFilterExpression() != null;
+
+        lock.readLock().lock();
+        try {
+            if (entryPoint < 0) {
+                return List.of();
+            }
+            // 有过滤条件时扩大候选集，并按墓碑占比放大，降低过滤后结果不足的概率
+            int ef = Math.max(efSearch, filtered ? topK * 10 : topK);
+            int live = idToNode.size();
+            if (live > 0 && live < links.size()) {
+                ef = (int) Math.min((long) ef * links.size() / live, links.size());
+            }
+
+            int ep = entryPoint;
+            for (int level = maxLevel; level > 0; level--) {
+                ep = greedySearch(query, ep, level);
+            }
+            PriorityQueue<Candidate> found = searchLayer(query, ep, ef, 0);
+
+            List<Candidate> sorted = new ArrayList<>(found);
+            sorted.sort(Comparator.comparingDouble(Candidate::similarity).reversed());
+
+            List<Document> results = new ArrayList<>(topK);
+            for (Candidate candidate : sorted) {
+                if (results.size() >= topK) {
+                    break;
+                }
+                if (deleted.get(candidate.node()) || candidate.similarity() < request.getSimilarityThreshold()) {
+                    continue;
+                }
+                Map<String, Object> docMetadata = metadata.get(candidate.node());
+                if (filtered && !MetadataFilterEvaluator.matches(request.getFilterExpression(), docMetadata)) {
+                    continue;
+                }
+                Map<String, Object> resultMetadata = new HashMap<>(docMetadata);
+                resultMetadata.put("distance", 1.0 - candidate.similarity());
+                results.add(new Document(ids.get(candidate.node()), contents.get(candidate.node()), resultMetadata));
+            }
+            return results;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * 按节点顺序分页读取有效文档的元数据（不做向量计算）
+     * 翻页期间发生重建时节点会重新编号，调用方应避免边翻页边写入
+     *
+     * @return 下一页的起始节点，没有更多数据时返回 -1
+     */
+    public int scanMetadata(int fromNode, int limit, Consumer<Map<String, Object>> consumer) {
+        List<Map<String, Object>> page = new ArrayList<>(limit);
+        int next;
+        lock.readLock().lock();
+        try {
+            int node = fromNode;
+            while (node < ids.size() && page.size() < limit) {
+                if (!deleted.get(node)) {
+                    page.add(new HashMap<>(metadata.get(node)));
+                }
+                node++;
+            }
+            next = node < ids.size() ? node : -1;
+        } finally {
+            lock.readLock().unlock();
+        }
+        page.forEach(consumer);
+        return next;
+    }
+
+    /**
+     * 用有效节点重建索引，去掉所有墓碑；节点编号会重新分配
+     */
+    public void compact() {
+        lock.writeLock().lock();
+        try {
+            rebuild();
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    private void compactIfNeeded() {
+        int tombstones = deleted.cardinality();
+        if (compactTombstoneRatio > 0 && tombstones > 0 && tombstones >= links.size() * compactTombstoneRatio) {
+            rebuild();
+        }
+    }
+
+    private void rebuild() {
+        int tombstones = deleted.cardinality();
+        if (tombstones == 0) {
+            return;
+        }
+        long start = System.currentTimeMillis();
+        OffHeapVectorStorage oldVectors = vectors;
+        List<String> oldIds = new ArrayList<>(ids);
+        List<String> oldContents = new ArrayList<>(contents);
+        List<Map<String, Object>> oldMetadata = new ArrayList<>(metadata);
+        BitSet oldDeleted = (BitSet) deleted.clone();
+
+        clear();
+        for (int node = oldDeleted.nextClearBit(0); node < oldIds.size(); node = oldDeleted.nextClearBit(node + 1)) {
+            float[] vector = oldVectors.get(node);
+            if (vectors == null) {
+                vectors = new OffHeapVectorStorage(vector.length);
+            }
+            int newNode = vectors.add(vector);
+            ids.add(oldIds.get(node));
+            contents.add(oldContents.get(node));
+            metadata.add(oldMetadata.get(node));
+            idToNode.put(oldIds.get(node), newNode);
+            insert(newNode, vector);
+        }
+        dirty = true;
+        log.info("HNSW index compacted: {} tombstones removed, {} nodes rebuilt in {} ms",
+                tombstones, ids.size(), System.currentTimeMillis() - start);
+    }
+
+    /**
+     * 当前有效文档数
+     */
+    public int size() {
+        lock.readLock().lock();
+        try {
+            return idToNode.size();
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    // ========== HNSW ==========
+
+    private void insert(int node, float[] vector) {
+        int level = (int) (-Math.log(1 - random.nextDouble()) * levelMultiplier);
+        int[][] nodeLinks = new int[level + 1][];
+        for (int l = 0; l <= level; l++) {
+            nodeLinks[l] = new int[maxConnections(l) + 1];
+        }
+        links.add(nodeLinks);
+
+        if (entryPoint < 0) {
+            entryPoint = node;
+            maxLevel = level;
+            return;
+        }
+
+        int ep = entryPoint;
+        for (int l = maxLevel; l > level; l--) {
+            ep = greedySearch(vector, ep, l);
+        }
+
+        for (int l = Math.min(level, maxLevel); l >= 0; l--) {
+            List<Candidate> candidates = new ArrayList<>(searchLayer(vector, ep, efConstruction, l));
+            candidates.sort(Comparator.comparingDouble(Candidate::similarity).reversed());
+
+            for (Candidate neighbor : selectNeighbors(candidates, maxConnections(l))) {
+                appendLink(node, neighbor.node(), l);
+                connectWithPruning(neighbor.node(), node, l);
+            }
+            ep = candidates.get(0).node();
+        }
+
+        if (level > maxLevel) {
+            maxLevel = level;
+            entryPoint = node;
+        }
+    }
+
+    private int maxConnections(int level) {
+        return level == 0 ? m * 2 : m;
+    }
+
+    /**
+     * 在单层上贪心移动到离查询最近的节点
+     */
+    private int greedySearch(float[] query, int ep, int level) {
+        int current = ep;
+        float best = vectors.dot(current, query);
+        boolean improved = true;
+        while (improved) {
+            improved = false;
+            int[] neighbors = links.get(current)[level];
+            for (int i = 1; i <= neighbors[0]; i++) {
+                float similarity = vectors.dot(neighbors[i], query);
+                if (similarity > best) {
+                    best = similarity;
+                    current = neighbors[i];
+                    improved = true;
+                }
+            }
+        }
+        return current;
+    }
+
+    /**
+     * 单层 best-first 搜索，返回以相似度为序的小顶堆（最多 ef 个）
+     */
+    private PriorityQueue<Candidate> searchLayer(float[] query, int ep, int ef, int level) {
+        BitSet visited = new BitSet(links.size());
+        PriorityQueue<Candidate> candidates = new PriorityQueue<>(
+                Comparator.comparingDouble(Candidate::similarity).reversed());
+        PriorityQueue<Candidate> results = new PriorityQueue<>(Comparator.comparingDouble(Candidate::similarity));
+
+        Candidate start = new Candidate(ep, vectors.dot(ep, query));
+        visited.set(ep);
+        candidates.add(start);
+        results.add(start);
+
+        while (!candidates.isEmpty()) {
+            Candidate current = candidates.poll();
+            if (results.size() >= ef && current.similarity() < results.peek().similarity()) {
+                break;
+            }
+            int[] neighbors = links.get(current.node())[level];
+            for (int i = 1; i <= neighbors[0]; i++) {
+                int neighbor = neighbors[i];
+                if (visited.get(neighbor)) {
+                    continue;
+                }
+                visited.set(neighbor);
+                float similarity = vectors.dot(neighbor, query);
+                if (results.size() < ef || similarity > results.peek().similarity()) {
+                    Candidate candidate = new Candidate(neighbor, similarity);
+                    candidates.add(candidate);
+                    results.add(candidate);
+                    if (results.size() > ef) {
+                        results.poll();
+                    }
+                }
+            }
+        }
+        return results;
+    }
+
+    /**
+     * 启发式邻居选择：候选与已选邻居的相似度高于与新节点的相似度时跳过，保持图的连通多样性；
+     * 不足时用剩余最近候选补齐
+     */
+    private List<Candidate> selectNeighbors(List<Candidate> sortedCandidates, int limit) {
+        List<Candidate> selected = new ArrayList<>(limit);
+        List<Candidate> skipped = new ArrayList<>();
+        for (Candidate candidate : sortedCandidates) {
+            if (selected.size() >= limit) {
+                break;
+            }
+            boolean diverse = true;
+            for (Candidate chosen : selected) {
+                if (vectors.dot(candidate.node(), chosen.node()) > candidate.similarity()) {
+                    diverse = false;
+                    break;
+                }
+            }
+            if (diverse) {
+                selected.add(candidate);
+            } else {
+                skipped.add(candidate);
+            }
+        }
+        for (int i = 0; i < skipped.size() && selected.size() < limit; i++) {
+            selected.add(skipped.get(i));
+        }
+        return selected;
+    }
+
+    private void appendLink(int from, int to, int level) {
+        int[] neighbors = links.get(from)[level];
+        neighbors[++neighbors[0]] = to;
+    }
+
+    /**
+     * 为已有节点增加反向连接，连接数已满时替换掉最远的邻居
+     */
+    private void connectWithPruning(int from, int to, int level) {
+        int[] neighbors = links.get(from)[level];
+        int capacity = neighbors.length - 1;
+        if (neighbors[0] < capacity) {
+            neighbors[++neighbors[0]] = to;
+            return;
+        }
+
+        float newSimilarity = vectors.dot(from, to);
+        int weakest = -1;
+        float weakestSimilarity = newSimilarity;
+        for (int i = 1; i <= neighbors[0]; i++) {
+            float similarity = vectors.dot(from, neighbors[i]);
+            if (similarity < weakestSimilarity) {
+                weakestSimilarity = similarity;
+                weakest = i;
+            }
+        }
+        if (weakest > 0) {
+            neighbors[weakest] = to;
+        }
+    }
+
+    private record Candidate(int node, float similarity) {}
+
+    // ========== 持久化 ==========
+
+    /**
+     * 持久化到本地文件
+     * 新版本的三个文件写完后才原子替换 manifest，中途崩溃时 manifest 仍指向完整的旧版本；之后删除更早的版本
+     */
+    public void save() {
+        if (basePath == null) {
+            return;
+        }
+        lock.readLock().lock();
+        try {
+            Files.createDirectories(basePath.toAbsolutePath().getParent());
+            long next = Math.max(generation, 0) + 1;
+            writeVectors(file(next, ".vec"));
+            writeDocuments(file(next, ".docs"));
+            writeGraph(file(next, ".graph"));
+            writeManifest(next, generation);
+            if (previousGeneration >= 0) {
+                deleteGeneration(previousGeneration);
+            }
+            previousGeneration = generation;
+            generation = next;
+            dirty = false;
+            log.info("HNSW index saved: {} generation {} ({} nodes)", basePath, next, ids.size());
+        } catch (IOException e) {
+            throw new UncheckedIOException("Failed to save HNSW index to " + basePath, e);
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    private void flushIfDirty() {
+        if (dirty) {
+            try {
+                save();
+            } catch (Exception e) {
+                log.error("Failed to flush HNSW index: {}", e.getMessage(), e);
+            }
+        }
+    }
+
+    @Override
+    public void destroy() {
+        if (flusher != null) {
+            flusher.shutdown();
+        }
+        flushIfDirty();
+    }
+
+    private void writeVectors(Path path) throws IOException {
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.CREATE,
+                StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.WRITE)) {
+            if (vectors != null) {
+                vectors.writeTo(channel);
+            }
+        }
+    }
+
+    private void writeDocuments(Path path) throws IOException {
+        try (BufferedWriter writer = Files.newBufferedWriter(path, StandardCharsets.UTF_8)) {
+            for (int node = 0; node < ids.size(); node++) {
+                Map<String, Object> entry = new LinkedHashMap<>();
+                entry.put("id", ids.get(node));
+                entry.put("content", contents.get(node));
+                entry.put("metadata", metadata.get(node));
+                writer.write(objectMapper.writeValueAsString(entry));
+                writer.newLine();
+            }
+        }
+    }
+
+    private void writeGraph(Path path) throws IOException {
+        try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(path)))) {
+            out.writeInt(MAGIC);
+            out.writeInt(FORMAT_VERSION);
+            out.writeInt(vectors != null ? vectors.dimensions() : 0);
+            out.writeInt(links.size());
+            out.writeInt(entryPoint);
+            out.writeInt(maxLevel);
+            for (int[][] nodeLinks : links) {
+                out.writeInt(nodeLinks.length);
+                for (int[] neighbors : nodeLinks) {
+                    out.writeInt(neighbors.length);
+                    for (int i = 0; i <= neighbors[0]; i++) {
+                        out.writeInt(neighbors[i]);
+                    }
+                }
+            }
+            out.writeInt(deleted.cardinality());
+            for (int node = deleted.nextSetBit(0); node >= 0; node = deleted.nextSetBit(node + 1)) {
+                out.writeInt(node);
+            }
+        }
+    }
+
+    private void writeManifest(long current, long previous) throws IOException {
+        Map<String, Object> manifest = new LinkedHashMap<>();
+        manifest.put("generation", current);
+        manifest.put("previous", previous);
+        Path temp = Path.of(basePath + MANIFEST + ".tmp");
+        try (FileChannel channel = FileChannel.open(temp, StandardOpenOption.CREATE,
+                StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.WRITE)) {
+            channel.write(ByteBuffer.wrap(objectMapper.writeValueAsBytes(manifest)));
+            channel.force(true);
+        }
+        Files.move(temp, Path.of(basePath + MANIFEST), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    }
+
+    private void deleteGeneration(long gen) {
+        for (String suffix : List.of(".vec", ".docs", ".graph")) {
+            try {
+                Files.deleteIfExists(file(gen, suffix));
+            } catch (IOException e) {
+                log.warn("Failed to delete old HNSW file {}: {}", file(gen, suffix), e.getMessage());
+            }
+        }
+    }
+
+    /**
+     * 按 manifest 加载当前版本，失败时回退到上一版本；没有 manifest 时加载旧版不带版本号的文件
+     */
+    private void load() {
+        Path manifestFile = Path.of(basePath + MANIFEST);
+        long current;
+        long previous;
+        try {
+            if (Files.exists(manifestFile)) {
+                Map<?, ?> manifest = objectMapper.readValue(manifestFile.toFile(), Map.class);
+                current = ((Number) manifest.get("generation")).longValue();
+                previous = ((Number) manifest.get("previous")).longValue();
+            } else if (Files.exists(file(0, ".graph"))) {
+                current = 0;
+                previous = -1;
+            } else {
+                return;
+            }
+        } catch (IOException | RuntimeException e) {
+            throw new IllegalStateException("Failed to read HNSW manifest " + manifestFile, e);
+        }
+
+        try {
+            loadGeneration(current);
+            generation = current;
+            previousGeneration = previous;
+            return;
+        } catch (IOException | RuntimeException e) {
+            if (previous < 0) {
+                throw new IllegalStateException("Failed to load HNSW index from " + basePath, e);
+            }
+            log.warn("Failed to load HNSW index {} generation {}, falling back to generation {}: {}",
+                    basePath, current, previous, e.getMessage());
+            clear();
+        }
+
+        try {
+            loadGeneration(previous);
+            // 下次持久化会覆盖损坏的版本
+            generation = previous;
+            previousGeneration = -1;
+        } catch (IOException | RuntimeException e) {
+            throw new IllegalStateException("Failed to load HNSW index from " + basePath
+                    + " (generations " + current + " and " + previous + ")", e);
+        }
+    }
+
+    private void clear() {
+        vectors = null;
+        links.clear();
+        ids.clear();
+        contents.clear();
+        metadata.clear();
+        idToNode.clear();
+        deleted.clear();
+        entryPoint = -1;
+        maxLevel = -1;
+    }
+
+    @SuppressWarnings("unchecked")
+    private void loadGeneration(long gen) throws IOException {
+        long start = System.currentTimeMillis();
+        Path graphFile = file(gen, ".graph");
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(Files.newInputStream(graphFile)))) {
+            if (in.readInt() != MAGIC || in.readInt() != FORMAT_VERSION) {
+                throw new IOException("Unsupported HNSW index format: " + graphFile);
+            }
+            int dimensions = in.readInt();
+            int count = in.readInt();
+            entryPoint = in.readInt();
+            maxLevel = in.readInt();
+
+            for (int node = 0; node < count; node++) {
+                int[][] nodeLinks = new int[in.readInt()][];
+                for (int level = 0; level < nodeLinks.length; level++) {
+                    int[] neighbors = new int[in.readInt()];
+                    neighbors[0] = in.readInt();
+                    for (int i = 1; i <= neighbors[0]; i++) {
+                        neighbors[i] = in.readInt();
+                    }
+                    nodeLinks[level] = neighbors;
+                }
+                links.add(nodeLinks);
+            }
+            int deletedCount = in.readInt();
+            for (int i = 0; i < deletedCount; i++) {
+                deleted.set(in.readInt());
+            }
+
+            if (count > 0) {
+                try (FileChannel channel = FileChannel.open(file(gen, ".vec"), StandardOpenOption.READ)) {
+                    vectors = OffHeapVectorStorage.readFrom(channel, dimensions, count);
+                }
+            }
+
+            try (BufferedReader reader = Files.newBufferedReader(file(gen, ".docs"), StandardCharsets.UTF_8)) {
+                String line;
+                while ((line = reader.readLine()) != null) {
+                    Map<String, Object> entry = objectMapper.readValue(line, Map.class);
+                    int node = ids.size();
+                    String id = (String) entry.get("id");
+                    ids.add(id);
+                    contents.add((String) entry.get("content"));
+                    Map<String, Object> docMetadata = (Map<String, Object>) entry.get("metadata");
+                    metadata.add(docMetadata != null ? docMetadata : new HashMap<>());
+                    if (!deleted.get(node)) {
+                        idToNode.put(id, node);
+                    }
+                }
+            }
+            if (ids.size() != count) {
+                throw new IOException("HNSW document file has " + ids.size() + " entries, expected " + count);
+            }
+            log.info("HNSW index loaded: {} generation {} ({} nodes, {} live) in {} ms",
+                    basePath, gen, count, idToNode.size(), System.currentTimeMillis() - start);
+        }
+    }
+
+    private Path file(long gen, String suffix) {
+        return Path.of(gen == 0 ? basePath + suffix : basePath + "." + gen + suffix);
+    }
+}
@@ -0,0 +1,82 @@
+package com.example.rag.vectorstore;
+
+import org.springframework.ai.vectorstore.filter.Filter;
+
+import java.util.Collection;
+import java.util.Map;
+import java.util.Objects;
+
+/**
+ * 在内存中对文档元数据求值 Spring AI 过滤表达式
+ */
+final class MetadataFilterEvaluator {
+
+    private MetadataFilterEvaluator() {
+    }
+
+    static boolean matches(Filter.Operand operand, Map<String, Object> metadata) {
+        if (operand == null) {
+            return true;
+        }
+        if (operand instanceof Filter.Group group) {
+            return matches(group.content(), metadata);
+        }
+        if (!(operand instanceof Filter.Expression expression)) {
+            throw new IllegalArgumentException("Unsupported filter operand: " + operand);
+        }
+
+        return switch (expression.type()) {
+            case AND -> matches(expression.left(), metadata) && matches(expression.right(), metadata);
+            case OR -> matches(expression.left(), metadata) || matches(expression.right(), metadata);
+            case NOT -> !matches(expression.left(), metadata);
+            default -> compare(expression, metadata);
+        };
+    }
+
+    private static boolean compare(Filter.Expression expression, Map<String, Object> metadata) {
+        String key = stripQuotes(((Filter.Key) expression.left()).key());
+        Object expected = ((Filter.Value) expression.right()).value();
+        Object actual = metadata.get(key);
+
+        return switch (expression.type()) {
+            case EQ -> valueEquals(actual, expected);
+            case NE -> !valueEquals(actual, expected);
+            case IN -> expected instanceof Collection<?> values && values.stream().anyMatch(v -> valueEquals(actual, v));
+            case NIN -> !(expected instanceof Collection<?> values && values.stream().anyMatch(v -> valueEquals(actual, v)));
+            case GT -> compareTo(actual, expected) > 0;
+            case GTE -> compareTo(actual, expected) >= 0;
+            case LT -> compareTo(actual, expected) < 0;
+            case LTE -> compareTo(actual, expected) <= 0;
+            default -> throw new IllegalArgumentException("Unsupported filter operator: " + expression.type());
+        };
+    }
+
+    private static boolean valueEquals(Object actual, Object expected) {
+        if (actual instanceof Number a && expected instanceof Number b) {
+            return Double.compare(a.doubleValue(), b.doubleValue()) == 0;
+        }
+        return Objects.equals(actual, expected) || (actual != null && expected != null
+                && actual.toString().equals(expected.toString()));
+    }
+
+    @SuppressWarnings({"unchecked", "rawtypes"})
+    private static int compareTo(Object actual, Object expected) {
+        if (actual == null || expected == null) {
+            return actual == null ? -1 : 1;
+        }
+        if (actual instanceof Number a && expected instanceof Number b) {
+            return Double.compare(a.doubleValue(), b.doubleValue());
+        }
+        if (actual instanceof Comparable comparable && actual.getClass().isInstance(expected)) {
+            return comparable.compareTo(expected);
+        }
+        return actual.toString().compareTo(expected.toString());
+    }
+
+    private static String stripQuotes(String key) {
+        if (key.length() >= 2 && (key.startsWith("'") || key.startsWith("\"")) && key.endsWith(key.substring(0, 1))) {
+            return key.substring(1, key.length() - 1);
+        }
+        return key;
+    }
+}
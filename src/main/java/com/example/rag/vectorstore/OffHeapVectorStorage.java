@@ -0,0 +1,136 @@
+package com.example.rag.vectorstore;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * 堆外向量存储
+ * 向量以 float 原始值连续存放在固定大小的直接内存段中，不产生每个向量一个对象的堆开销；
+ * 持久化格式与内存布局一致（小端 float），加载时直接从内存映射文件整段拷贝
+ */
+final class OffHeapVectorStorage {
+
+    private static final int VECTORS_PER_SEGMENT = 4096;
+
+    private final int dimensions;
+    private final int segmentBytes;
+    private final List<ByteBuffer> segments = new ArrayList<>();
+    private int size;
+
+    OffHeapVectorStorage(int dimensions) {
+        this.dimensions = dimensions;
+        this.segmentBytes = VECTORS_PER_SEGMENT * dimensions * Float.BYTES;
+    }
+
+    int dimensions() {
+        return dimensions;
+    }
+
+    int size() {
+        return size;
+    }
+
+    /**
+     * 追加向量，返回节点编号
+     */
+    int add(float[] vector) {
+        if (vector.length != dimensions) {
+            throw new IllegalArgumentException("Expected " + dimensions + " dimensions but got " + vector.length);
+        }
+        if (size % VECTORS_PER_SEGMENT == 0) {
+            segments.add(ByteBuffer.allocateDirect(segmentBytes).order(ByteOrder.LITTLE_ENDIAN));
+        }
+        ByteBuffer segment = segments.get(size / VECTORS_PER_SEGMENT);
+        int base = (size % VECTORS_PER_SEGMENT) * dimensions * Float.BYTES;
+        for (int i = 0; i < dimensions; i++) {
+            segment.putFloat(base + i * Float.BYTES, vector[i]);
+        }
+        return size++;
+    }
+
+    /**
+     * 节点向量与查询向量的点积
+     */
+    float dot(int node, float[] query) {
+        ByteBuffer segment = segments.get(node / VECTORS_PER_SEGMENT);
+        int base = (node % VECTORS_PER_SEGMENT) * dimensions * Float.BYTES;
+        float sum = 0;
+        for (int i = 0; i < dimensions; i++) {
+            sum += segment.getFloat(base + i * Float.BYTES) * query[i];
+        }
+        return sum;
+    }
+
+    /**
+     * 两个节点向量的点积
+     */
+    float dot(int a, int b) {
+        ByteBuffer segmentA = segments.get(a / VECTORS_PER_SEGMENT);
+        ByteBuffer segmentB = segments.get(b / VECTORS_PER_SEGMENT);
+        int baseA = (a % VECTORS_PER_SEGMENT) * dimensions * Float.BYTES;
+        int baseB = (b % VECTORS_PER_SEGMENT) * dimensions * Float.BYTES;
+        float sum = 0;
+        for (int i = 0; i < dimensions; i++) {
+            int offset = i * Float.BYTES;
+            sum += segmentA.getFloat(baseA + offset) * segmentB.getFloat(baseB + offset);
+        }
+        return sum;
+    }
+
+    float[] get(int node) {
+        ByteBuffer segment = segments.get(node / VECTORS_PER_SEGMENT);
+        int base = (node % VECTORS_PER_SEGMENT) * dimensions * Float.BYTES;
+        float[] vector = new float[dimensions];
+        for (int i = 0; i < dimensions; i++) {
+            vector[i] = segment.getFloat(base + i * Float.BYTES);
+        }
+        return vector;
+    }
+
+    /**
+     * 写出所有向量
+     */
+    void writeTo(FileChannel channel) throws IOException {
+        int remaining = size;
+        for (ByteBuffer segment : segments) {
+            int vectors = Math.min(remaining, VECTORS_PER_SEGMENT);
+            ByteBuffer used = segment.duplicate();
+            used.position(0).limit(vectors * dimensions * Float.BYTES);
+            while (used.hasRemaining()) {
+                channel.write(used);
+            }
+            remaining -= vectors;
+        }
+    }
+
+    /**
+     * 从文件加载 count 个向量
+     */
+    static OffHeapVectorStorage readFrom(FileChannel channel, int dimensions, int count) throws IOException {
+        OffHeapVectorStorage storage = new OffHeapVectorStorage(dimensions);
+        long bytes = (long) count * dimensions * Float.BYTES;
+        if (channel.size() < bytes) {
+            throw new IOException("Vector file truncated: expected " + bytes + " bytes but found " + channel.size());
+        }
+
+        long position = 0;
+        int remaining = count;
+        while (remaining > 0) {
+            int vectors = Math.min(remaining, VECTORS_PER_SEGMENT);
+            int length = vectors * dimensions * Float.BYTES;
+            MappedByteBuffer mapped = channel.map(FileChannel.MapMode.READ_ONLY, position, length);
+            ByteBuffer segment = ByteBuffer.allocateDirect(storage.segmentBytes).order(ByteOrder.LITTLE_ENDIAN);
+            segment.put(0, mapped, 0, length);
+            storage.segments.add(segment);
+            position += length;
+            remaining -= vectors;
+        }
+        storage.size = count;
+        return storage;
+    }
+}
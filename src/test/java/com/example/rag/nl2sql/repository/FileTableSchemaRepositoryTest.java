@@ -0,0 +1,76 @@
+package com.example.rag.nl2sql.repository;
+
+import com.example.rag.nl2sql.entity.ColumnInfo;
+import com.example.rag.nl2sql.entity.TableInfo;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class FileTableSchemaRepositoryTest {
+
+    private static final int COMPACT_THRESHOLD = 3;
+
+    private final ObjectMapper objectMapper = new ObjectMapper().findAndRegisterModules();
+
+    @TempDir
+    Path directory;
+
+    @Test
+    void writeThatTriggersCompactionSurvivesRestart() throws Exception {
+        try (FileTableSchemaRepository repository = open()) {
+            for (int i = 1; i <= COMPACT_THRESHOLD; i++) {
+                repository.save(table("t" + i));
+            }
+            // 第三次写入触发快照重写，日志被清空
+            assertThat(Files.size(directory.resolve("tables.log"))).isZero();
+        }
+
+        try (FileTableSchemaRepository repository = open()) {
+            assertThat(repository.count()).isEqualTo(COMPACT_THRESHOLD);
+            assertThat(repository.findById("t3")).isPresent();
+            assertThat(repository.findByName("table_t3")).isPresent();
+        }
+    }
+
+    @Test
+    void restartReplaysSnapshotAndLogAcrossSeveralCompactions() throws Exception {
+        try (FileTableSchemaRepository repository = open()) {
+            for (int i = 1; i <= 7; i++) {
+                repository.save(table("t" + i));
+            }
+            repository.delete("t2");
+            repository.save(table("t1").toBuilder().description("updated").build());
+        }
+
+        try (FileTableSchemaRepository repository = open()) {
+            assertThat(repository.count()).isEqualTo(6);
+            assertThat(repository.findById("t2")).isEmpty();
+            assertThat(repository.findById("t1")).get()
+                    .extracting(TableInfo::getDescription).isEqualTo("updated");
+            assertThat(repository.findById("t7").orElseThrow().getColumns())
+                    .extracting(ColumnInfo::getColumnName).containsExactly("id");
+        }
+    }
+
+    private FileTableSchemaRepository open() {
+        return new FileTableSchemaRepository(directory, COMPACT_THRESHOLD, false, objectMapper);
+    }
+
+    private static TableInfo table(String id) {
+        return TableInfo.builder()
+                .id(id)
+                .tableName("table_" + id)
+                .databaseName("test")
+                .dbType("h2")
+                .description("table " + id)
+                .columns(List.of(ColumnInfo.builder().id(id + "_id").tableId(id).columnName("id")
+                        .dataType("BIGINT").isPrimaryKey(true).build()))
+                .build();
+    }
+}
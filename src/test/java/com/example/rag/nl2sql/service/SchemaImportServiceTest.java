@@ -0,0 +1,126 @@
+package com.example.rag.nl2sql.service;
+
+import com.example.rag.nl2sql.dto.SchemaImportRequest;
+import com.example.rag.nl2sql.entity.ColumnInfo;
+import com.example.rag.nl2sql.entity.TableInfo;
+import com.example.rag.nl2sql.repository.InMemoryTableSchemaRepository;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.mock.env.MockEnvironment;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.List;
+import java.util.Map;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.anyList;
+import static org.mockito.Mockito.atLeastOnce;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.verify;
+
+class SchemaImportServiceTest {
+
+    private SqlExecutionService sqlExecutionService;
+    private TableSchemaService tableSchemaService;
+    private SchemaEmbeddingService schemaEmbeddingService;
+    private SchemaImportService importService;
+
+    @BeforeEach
+    void setUp() {
+        MockEnvironment environment = TestDatabases.environment()
+                .withProperty("nl2sql.import.row-estimate-queries.h2",
+                        "SELECT TABLE_NAME, ROW_COUNT_ESTIMATE FROM INFORMATION_SCHEMA.TABLES WHERE TABLE_SCHEMA = ?");
+        sqlExecutionService = TestDatabases.sqlExecutionService(environment);
+        tableSchemaService = new TableSchemaService(event -> { }, new InMemoryTableSchemaRepository());
+        schemaEmbeddingService = mock(SchemaEmbeddingService.class);
+        importService = new SchemaImportService(sqlExecutionService, tableSchemaService, schemaEmbeddingService,
+                environment);
+        ReflectionTestUtils.setField(importService, "parallelism", 2);
+        ReflectionTestUtils.setField(importService, "batchSize", 2);
+        importService.start();
+    }
+
+    @AfterEach
+    void tearDown() {
+        importService.stop();
+        sqlExecutionService.closeDataSources();
+    }
+
+    @Test
+    void importsTablesColumnsKeysIndexesAndRowEstimates() throws Exception {
+        SchemaImportJob job = runImport();
+
+        assertThat(job.getStatus()).isEqualTo(SchemaImportJob.Status.COMPLETED);
+        assertThat(job.getTablesSaved().get()).isEqualTo(5);
+        assertThat(tableSchemaService.getAllTables()).extracting(TableInfo::getTableName)
+                .containsExactlyInAnyOrder("users", "categories", "products", "orders", "order_items");
+
+        TableInfo users = tableSchemaService.getTableByName("users");
+        assertThat(users.getDatabaseName()).isEqualTo(TestDatabases.DATABASE);
+        assertThat(users.getSchemaName()).isEqualTo("public");
+        assertThat(users.getDescription()).isEqualTo("用户表，存储注册用户的基本信息");
+        assertThat(users.getColumns()).hasSize(15);
+        ColumnInfo userId = column(users, "user_id");
+        assertThat(userId.getIsPrimaryKey()).isTrue();
+        assertThat(userId.getDescription()).isEqualTo("用户ID");
+        assertThat(column(users, "username").getNullable()).isFalse();
+        assertThat(column(users, "username").getDataLength()).isEqualTo(50);
+        assertThat(users.getPrimaryKey()).isEqualTo("user_id");
+        assertThat(users.getIndexes()).extracting(index -> index.get("name"))
+                .contains("idx_users_email", "idx_users_created_at", "idx_users_status");
+        assertThat(users.getEstimatedRows()).isPositive();
+
+        TableInfo orderItems = tableSchemaService.getTableByName("order_items");
+        assertThat(orderItems.getForeignKeys())
+                .containsEntry("order_id", "orders.order_id")
+                .containsEntry("product_id", "products.product_id");
+        ColumnInfo productId = column(orderItems, "product_id");
+        assertThat(productId.getIsForeignKey()).isTrue();
+        assertThat(productId.getForeignKeyTable()).isEqualTo("products");
+        assertThat(productId.getForeignKeyColumn()).isEqualTo("product_id");
+
+        TableInfo products = tableSchemaService.getTableByName("products");
+        assertThat(column(products, "price").getDecimalScale()).isEqualTo(2);
+        Map<String, Object> categoryIndex = products.getIndexes().stream()
+                .filter(index -> "idx_products_category".equals(index.get("name")))
+                .findFirst().orElseThrow();
+        assertThat(categoryIndex).containsEntry("unique", false).containsEntry("columns", List.of("category_id"));
+
+        verify(schemaEmbeddingService, atLeastOnce()).addTableEmbeddings(anyList());
+    }
+
+    @Test
+    void reimportUpdatesTablesInPlace() throws Exception {
+        runImport();
+        String usersId = tableSchemaService.getTableByName("users").getId();
+
+        SchemaImportJob second = runImport();
+
+        assertThat(second.getStatus()).isEqualTo(SchemaImportJob.Status.COMPLETED);
+        assertThat(tableSchemaService.getTableCount()).isEqualTo(5);
+        assertThat(tableSchemaService.getTableByName("users").getId()).isEqualTo(usersId);
+    }
+
+    private SchemaImportJob runImport() throws InterruptedException {
+        SchemaImportJob job = importService.startImport(SchemaImportRequest.builder()
+                .databaseName(TestDatabases.DATABASE)
+                .build());
+        Instant deadline = Instant.now().plus(Duration.ofSeconds(30));
+        while (job.getStatus() == SchemaImportJob.Status.RUNNING && Instant.now().isBefore(deadline)) {
+            Thread.sleep(20);
+        }
+        assertThat(job.getError()).isNull();
+        assertThat(job.getWarnings()).isEmpty();
+        return job;
+    }
+
+    private static ColumnInfo column(TableInfo table, String name) {
+        return table.getColumns().stream()
+                .filter(column -> column.getColumnName().equals(name))
+                .findFirst()
+                .orElseThrow(() -> new AssertionError("Missing column " + table.getTableName() + "." + name));
+    }
+}
@@ -0,0 +1,114 @@
+package com.example.rag.nl2sql.service;
+
+import com.example.rag.nl2sql.entity.ColumnarResult;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.math.BigDecimal;
+import java.util.List;
+import java.util.Map;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.assertj.core.api.Assertions.catchThrowable;
+
+class SqlExecutionServiceTest {
+
+    private static final String DB = TestDatabases.DATABASE;
+
+    private SqlExecutionService service;
+
+    @BeforeEach
+    void setUp() {
+        service = TestDatabases.sqlExecutionService(TestDatabases.environment());
+    }
+
+    @AfterEach
+    void tearDown() {
+        service.closeDataSources();
+    }
+
+    @Test
+    void rejectsWritesAndMultipleStatements() {
+        assertThatThrownBy(() -> service.query(DB, "INSERT INTO categories (category_id, category_name) VALUES (99, 'x')", 10))
+                .isInstanceOf(IllegalArgumentException.class);
+        assertThatThrownBy(() -> service.query(DB, "UPDATE users SET status = 0", 10))
+                .isInstanceOf(IllegalArgumentException.class);
+        assertThatThrownBy(() -> service.query(DB, "SELECT 1; DELETE FROM users", 10))
+                .isInstanceOf(IllegalArgumentException.class)
+                .hasMessageContaining("Multiple");
+        assertThatThrownBy(() -> service.query("unknown", "SELECT 1", 10))
+                .isInstanceOf(IllegalArgumentException.class);
+
+        assertThat(service.query(DB, "SELECT COUNT(*) AS c FROM users", 10).rows())
+                .containsExactly(Map.of("c", 8L));
+    }
+
+    @Test
+    void acceptsSemicolonsInsideLiteralsAndTrailingComments() {
+        assertThat(service.query(DB, "SELECT user_id FROM users WHERE email LIKE '%;%'", 10).rows()).isEmpty();
+        assertThat(service.query(DB, "SELECT 'a;b' AS \"x;y\"", 10).rows())
+                .containsExactly(Map.of("x;y", "a;b"));
+        assertThat(service.query(DB, "-- 用户数\nSELECT COUNT(*) AS c FROM users; -- done", 10).rows())
+                .containsExactly(Map.of("c", 8L));
+    }
+
+    @Test
+    void capsRowsAtMaxRows() {
+        SqlExecutionService.QueryResult result = service.query(DB, "SELECT user_id FROM users ORDER BY user_id", 3);
+
+        assertThat(result.rows()).extracting(row -> row.get("user_id")).containsExactly(1L, 2L, 3L);
+        assertThat(service.queryColumnar(DB, "SELECT * FROM categories", 4).getRowCount()).isEqualTo(4);
+    }
+
+    @Test
+    void rejectsDataModifyingCte() {
+        assertThatThrownBy(() -> service.query(DB,
+                "WITH d AS (DELETE FROM categories WHERE category_id = 1 RETURNING category_id) SELECT * FROM d", 10))
+                .isInstanceOf(IllegalArgumentException.class);
+        assertThat(service.query(DB, "WITH c AS (SELECT category_id FROM categories) SELECT COUNT(*) AS n FROM c", 10).rows())
+                .containsExactly(Map.of("n", 10L));
+    }
+
+    @Test
+    void rollsBackWritesHiddenInsideSelect() {
+        // H2 的数据变更表可以在 SELECT 中写入：要么被拒绝，要么执行后回滚
+        Throwable thrown = catchThrowable(() -> service.query(DB,
+                "SELECT category_id FROM FINAL TABLE (INSERT INTO categories (category_id, category_name) VALUES (99, 'x'))",
+                10));
+
+        if (thrown != null) {
+            assertThat(thrown).isInstanceOfAny(IllegalArgumentException.class,
+                    SqlExecutionService.SqlExecutionException.class);
+        }
+        assertThat(service.query(DB, "SELECT COUNT(*) AS c FROM categories WHERE category_id = 99", 10).rows())
+                .containsExactly(Map.of("c", 0L));
+        assertThat(service.query(DB, "SELECT COUNT(*) AS c FROM categories", 10).rows())
+                .containsExactly(Map.of("c", 10L));
+    }
+
+    @Test
+    void mapsColumnarTypesAndNulls() {
+        ColumnarResult result = service.queryColumnar(DB,
+                "SELECT category_id, category_name, CAST(NULL AS INT) AS missing, CAST(1.5 AS DOUBLE PRECISION) AS ratio,"
+                        + " TRUE AS flag, CAST(9.99 AS DECIMAL(10, 2)) AS price"
+                        + " FROM categories WHERE category_id <= 2 ORDER BY category_id",
+                100);
+
+        assertThat(result.getColumns()).containsExactly("category_id", "category_name", "missing", "ratio", "flag", "price");
+        assertThat(result.getRowCount()).isEqualTo(2);
+        assertThat(List.of(result.getType(0), result.getType(1), result.getType(2), result.getType(3), result.getType(4),
+                result.getType(5)))
+                .containsExactly(ColumnarResult.ColumnType.LONG, ColumnarResult.ColumnType.OBJECT,
+                        ColumnarResult.ColumnType.LONG, ColumnarResult.ColumnType.DOUBLE,
+                        ColumnarResult.ColumnType.BOOLEAN, ColumnarResult.ColumnType.OBJECT);
+        assertThat(result.getLong(0, 1)).isEqualTo(2L);
+        assertThat(result.getObject(1, 1)).isEqualTo("手机");
+        assertThat(result.isNull(2, 0)).isTrue();
+        assertThat(result.isNull(0, 0)).isFalse();
+        assertThat(result.getDouble(3, 0)).isEqualTo(1.5);
+        assertThat(result.getBoolean(4, 0)).isTrue();
+        assertThat(result.getObject(5, 0)).isEqualTo(new BigDecimal("9.99"));
+    }
+}
@@ -0,0 +1,39 @@
+package com.example.rag.nl2sql.service;
+
+import org.springframework.core.io.DefaultResourceLoader;
+import org.springframework.mock.env.MockEnvironment;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.util.UUID;
+
+/**
+ * 测试用的 H2 内存库，加载示例表结构和数据
+ */
+final class TestDatabases {
+
+    static final String DATABASE = "ecommerce";
+
+    private TestDatabases() {
+    }
+
+    /**
+     * 每次调用使用新的内存库，互不影响
+     */
+    static MockEnvironment environment() {
+        return new MockEnvironment()
+                .withProperty("nl2sql.datasources." + DATABASE + ".url", "jdbc:h2:mem:" + UUID.randomUUID()
+                        + ";MODE=MySQL;DATABASE_TO_LOWER=TRUE;DB_CLOSE_DELAY=-1")
+                .withProperty("nl2sql.datasources." + DATABASE + ".username", "sa")
+                .withProperty("nl2sql.datasources." + DATABASE + ".password", "")
+                .withProperty("nl2sql.datasources." + DATABASE + ".init-scripts[0]", "classpath:sql/sample-schema.sql")
+                .withProperty("nl2sql.datasources." + DATABASE + ".init-scripts[1]", "classpath:sql/sample-data.sql");
+    }
+
+    static SqlExecutionService sqlExecutionService(MockEnvironment environment) {
+        SqlExecutionService service = new SqlExecutionService(environment, new DefaultResourceLoader());
+        ReflectionTestUtils.setField(service, "queryTimeoutSeconds", 30);
+        ReflectionTestUtils.setField(service, "fetchSize", 500);
+        service.initDataSources();
+        return service;
+    }
+}